@@ -0,0 +1,63 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.benchmarks;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link QueryBenchmark} and {@link RawNativeBenchmark} and reports for each operation which
+ * part of the time is spent inside libgraphannis and which part in the Java wrapper (marshalling of
+ * arguments and results, error list allocation and decoding of strings).
+ */
+public class BoundarySplit {
+
+  private static final String[] OPERATIONS =
+      {"count", "countExtra", "findFirstPage", "findAll", "frequency", "subgraph"};
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(QueryBenchmark.class.getSimpleName() + "\\.(" + String.join("|", OPERATIONS)
+            + ")$")
+        .include(RawNativeBenchmark.class.getSimpleName() + "\\.(" + String.join("|", OPERATIONS)
+            + ")$")
+        .build();
+    Collection<RunResult> results = new Runner(opt).run();
+
+    Map<String, Double> scores = new HashMap<>();
+    for (RunResult r : results) {
+      scores.put(r.getParams().getBenchmark(), r.getPrimaryResult().getScore());
+    }
+
+    System.out.println();
+    System.out.printf("%-16s %14s %14s %10s%n", "operation", "native (us)", "wrapper (us)",
+        "overhead");
+    for (String op : OPERATIONS) {
+      Double total = scores.get(QueryBenchmark.class.getName() + "." + op);
+      Double nativeTime = scores.get(RawNativeBenchmark.class.getName() + "." + op);
+      if (total == null || nativeTime == null) {
+        continue;
+      }
+      double wrapper = Math.max(0.0, total - nativeTime);
+      System.out.printf("%-16s %14.2f %14.2f %9.1f%%%n", op, nativeTime, wrapper,
+          100.0 * wrapper / total);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.benchmarks;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.corpus_tools.graphannis.CorpusStorageManager;
+import org.corpus_tools.graphannis.GraphUpdate;
+import org.corpus_tools.graphannis.model.ComponentType;
+import org.corpus_tools.graphannis.model.Edge;
+import org.corpus_tools.graphannis.model.Graph;
+import org.corpus_tools.graphannis.model.Node;
+import org.corpus_tools.graphannis.model.QName;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Iterating over the nodes and edges of a subgraph, where each node and edge is mapped from the
+ * native graph on access.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBenchmark {
+
+  @Param({"500"})
+  public int tokens;
+
+  private File dbDir;
+  private CorpusStorageManager storage;
+  private Graph graph;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    dbDir = SyntheticCorpus.createTempDir();
+    storage = new CorpusStorageManager(dbDir.getAbsolutePath());
+    SyntheticCorpus corpus = new SyntheticCorpus(1, tokens);
+    try (GraphUpdate u = corpus.createUpdate()) {
+      storage.applyUpdate(SyntheticCorpus.CORPUS_NAME, u);
+    }
+    graph = storage.subcorpusGraph(SyntheticCorpus.CORPUS_NAME,
+        Arrays.asList(corpus.documentName(0)));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    graph.close();
+    storage.close();
+    SyntheticCorpus.deleteRecursively(dbDir);
+  }
+
+  @Benchmark
+  public void iterateNodes(Blackhole bh) throws Exception {
+    for (Node n : graph.getNodesByType("node")) {
+      bh.consume(n);
+    }
+  }
+
+  @Benchmark
+  public void iterateNodesTokenLabel(Blackhole bh) throws Exception {
+    for (Node n : graph.getNodesByType("node", Collections.singleton(Graph.TOK))) {
+      bh.consume(n.getLabels().get(Graph.TOK));
+    }
+  }
+
+  @Benchmark
+  public void iterateNodesAllLabels(Blackhole bh) throws Exception {
+    for (Node n : graph.getNodesByType("node")) {
+      for (Map.Entry<QName, String> l : n.getLabels().entrySet()) {
+        bh.consume(l.getValue());
+      }
+    }
+  }
+
+  @Benchmark
+  public void outgoingEdgesAllComponents(Blackhole bh) throws Exception {
+    for (Node n : graph.getNodesByType("node")) {
+      for (Edge e : graph.getOutgoingEdges(n)) {
+        bh.consume(e);
+      }
+    }
+  }
+
+  @Benchmark
+  public void outgoingEdgesByType(Blackhole bh) throws Exception {
+    for (Node n : graph.getNodesByType("node")) {
+      for (Edge e : graph.getOutgoingEdges(n, ComponentType.Coverage)) {
+        bh.consume(e);
+      }
+    }
+  }
+
+  @Benchmark
+  public void ingoingEdgesByType(Blackhole bh) throws Exception {
+    for (Node n : graph.getNodesByType("node")) {
+      for (Edge e : graph.getIngoingEdges(n, ComponentType.Coverage)) {
+        bh.consume(e);
+      }
+    }
+  }
+
+  @Benchmark
+  public Object snapshot() throws Exception {
+    return graph.snapshot();
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.corpus_tools.graphannis.CorpusStorageManager;
+import org.corpus_tools.graphannis.GraphUpdate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Constructing a {@link GraphUpdate} for a single document and applying it to a corpus.
+ *
+ * Each invocation adds a new document, so the corpus grows during the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphUpdateBenchmark {
+
+  @Param({"1000"})
+  public int tokensPerDocument;
+
+  private File dbDir;
+  private CorpusStorageManager storage;
+  private SyntheticCorpus corpus;
+  private int nextDocument;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    dbDir = SyntheticCorpus.createTempDir();
+    storage = new CorpusStorageManager(dbDir.getAbsolutePath());
+    corpus = new SyntheticCorpus(0, tokensPerDocument);
+    try (GraphUpdate u = corpus.createUpdate()) {
+      storage.applyUpdate(SyntheticCorpus.CORPUS_NAME, u);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    storage.close();
+    SyntheticCorpus.deleteRecursively(dbDir);
+  }
+
+  /** Only builds the update, which is a native call for each event. */
+  @Benchmark
+  public GraphUpdate construct() throws Exception {
+    GraphUpdate u = new GraphUpdate();
+    corpus.addDocument(u, nextDocument++);
+    u.close();
+    return u;
+  }
+
+  /** Builds the update and applies it to the corpus. */
+  @Benchmark
+  public void constructAndApply() throws Exception {
+    try (GraphUpdate u = new GraphUpdate()) {
+      corpus.addDocument(u, nextDocument++);
+      storage.applyUpdate(SyntheticCorpus.CORPUS_NAME, u);
+    }
+  }
+}
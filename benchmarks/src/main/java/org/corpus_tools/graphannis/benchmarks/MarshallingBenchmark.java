@@ -0,0 +1,111 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.benchmarks;
+
+import com.sun.jna.Memory;
+import com.sun.jna.NativeLong;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.corpus_tools.graphannis.capi.AnnisErrorListRef;
+import org.corpus_tools.graphannis.capi.CAPI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The costs of the marshalling steps the wrapper performs around each native call, without any
+ * query execution in libgraphannis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarshallingBenchmark {
+
+  @Param({"1000"})
+  public int vectorSize;
+
+  private CAPI.AnnisVec_AnnisCString vec;
+  private final String match =
+      "default_ns::pos::synthetic/doc0#t42 default_ns::phrase::synthetic/doc0#s43";
+
+  @Setup(Level.Trial)
+  public void setup() {
+    vec = CAPI.annis_vec_str_new();
+    for (int i = 0; i < vectorSize; i++) {
+      CAPI.annis_vec_str_push(vec, match + i);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    vec.dispose();
+  }
+
+  /** Allocating, checking and freeing the error list that is passed to every fallible call. */
+  @Benchmark
+  public void errorListRef() throws Exception {
+    AnnisErrorListRef err = new AnnisErrorListRef();
+    err.checkErrors();
+  }
+
+  @Benchmark
+  public NativeLong nativeLongBoxing() {
+    return new NativeLong(vectorSize);
+  }
+
+  /** Decoding each string of a result vector with a boxed index for each element. */
+  @Benchmark
+  public void decodeVectorBoxedIndex(Blackhole bh) {
+    long size = CAPI.annis_vec_str_size(vec).longValue();
+    for (long i = 0; i < size; i++) {
+      bh.consume(CAPI.annis_vec_str_get(vec, new NativeLong(i)));
+    }
+  }
+
+  /** Decoding the whole result vector with the primitive index accessor. */
+  @Benchmark
+  public String[] decodeVector() {
+    return vec.toArray();
+  }
+
+  /** Only the native calls of {@link #decodeVector()}, without creating the strings. */
+  @Benchmark
+  public long vectorSizeCall() {
+    return CAPI.annis_vec_str_size(vec).longValue();
+  }
+
+  /** Encoding a Java string into native memory, as done for each string argument. */
+  @Benchmark
+  public Memory encodeString() {
+    byte[] bytes = match.getBytes(StandardCharsets.UTF_8);
+    Memory m = new Memory(bytes.length + 1);
+    m.write(0, bytes, 0, bytes.length);
+    m.setByte(bytes.length, (byte) 0);
+    return m;
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.benchmarks;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.corpus_tools.graphannis.CorpusStorageManager;
+import org.corpus_tools.graphannis.CorpusStorageManager.CountResult;
+import org.corpus_tools.graphannis.CorpusStorageManager.QueryLanguage;
+import org.corpus_tools.graphannis.GraphUpdate;
+import org.corpus_tools.graphannis.model.FrequencyTableEntry;
+import org.corpus_tools.graphannis.model.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end costs of the query functions of the {@link CorpusStorageManager}, including both the
+ * time spent in the wrapper and in the native library. Compare with {@link RawNativeBenchmark} to
+ * get the share of the native library.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+  @Param({"10"})
+  public int documents;
+
+  @Param({"1000"})
+  public int tokensPerDocument;
+
+  private File dbDir;
+  private CorpusStorageManager storage;
+  private List<String> corpora;
+  private List<String> matchNodeIDs;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    dbDir = SyntheticCorpus.createTempDir();
+    storage = new CorpusStorageManager(dbDir.getAbsolutePath());
+    SyntheticCorpus corpus = new SyntheticCorpus(documents, tokensPerDocument);
+    try (GraphUpdate u = corpus.createUpdate()) {
+      storage.applyUpdate(SyntheticCorpus.CORPUS_NAME, u);
+    }
+    corpora = Arrays.asList(SyntheticCorpus.CORPUS_NAME);
+    matchNodeIDs = Arrays.asList(corpus.tokenName(0, tokensPerDocument / 2));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    storage.close();
+    SyntheticCorpus.deleteRecursively(dbDir);
+  }
+
+  @Benchmark
+  public long count() throws Exception {
+    return storage.count(corpora, "pos=\"NN\"", QueryLanguage.AQL);
+  }
+
+  @Benchmark
+  public CountResult countExtra() throws Exception {
+    return storage.countExtra(corpora, "pos=\"NN\"", QueryLanguage.AQL);
+  }
+
+  @Benchmark
+  public String[] findFirstPage() throws Exception {
+    return storage.find(corpora, "pos=\"NN\"", QueryLanguage.AQL, 0, Optional.of(20L));
+  }
+
+  @Benchmark
+  public String[] findAll() throws Exception {
+    return storage.find(corpora, "tok", QueryLanguage.AQL, 0, Optional.empty());
+  }
+
+  @Benchmark
+  public List<FrequencyTableEntry<String>> frequency() throws Exception {
+    return storage.frequency(corpora, "pos . pos", QueryLanguage.AQL, "1:pos,2:pos");
+  }
+
+  @Benchmark
+  public int subgraph() throws Exception {
+    try (Graph g = storage.subgraph(SyntheticCorpus.CORPUS_NAME, matchNodeIDs, 5, 5,
+        Optional.empty())) {
+      return g.hashCode();
+    }
+  }
+}
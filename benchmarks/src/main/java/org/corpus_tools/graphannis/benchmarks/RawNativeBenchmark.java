@@ -0,0 +1,152 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.benchmarks;
+
+import com.sun.jna.NativeLong;
+import com.sun.jna.ptr.LongByReference;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.corpus_tools.graphannis.CorpusStorageManager;
+import org.corpus_tools.graphannis.GraphUpdate;
+import org.corpus_tools.graphannis.capi.AnnisErrorListRef;
+import org.corpus_tools.graphannis.capi.AnnisQueryLanguage;
+import org.corpus_tools.graphannis.capi.AnnisResultOrder;
+import org.corpus_tools.graphannis.capi.CAPI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The same queries as {@link QueryBenchmark}, but calling the C API directly with a prepared
+ * corpus name vector, a reused error list and without decoding the results. The error list is
+ * still checked and freed after each call, like the wrapper does.
+ *
+ * This approximates the time spent inside libgraphannis. The difference to the corresponding
+ * {@link QueryBenchmark} is the overhead of the Java wrapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RawNativeBenchmark {
+
+  @Param({"10"})
+  public int documents;
+
+  @Param({"1000"})
+  public int tokensPerDocument;
+
+  private File dbDir;
+  private CAPI.AnnisCorpusStorage cs;
+  private CAPI.AnnisVec_AnnisCString corpusNames;
+  private CAPI.AnnisVec_AnnisCString matchNodeIDs;
+  private AnnisErrorListRef err;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    dbDir = SyntheticCorpus.createTempDir();
+    SyntheticCorpus corpus = new SyntheticCorpus(documents, tokensPerDocument);
+    try (CorpusStorageManager storage = new CorpusStorageManager(dbDir.getAbsolutePath());
+        GraphUpdate u = corpus.createUpdate()) {
+      storage.applyUpdate(SyntheticCorpus.CORPUS_NAME, u);
+    }
+
+    err = new AnnisErrorListRef();
+    cs = CAPI.annis_cs_with_auto_cache_size(dbDir.getAbsolutePath(), false, err);
+    err.checkErrors();
+
+    corpusNames = CAPI.annis_vec_str_new();
+    CAPI.annis_vec_str_push(corpusNames, SyntheticCorpus.CORPUS_NAME);
+
+    matchNodeIDs = CAPI.annis_vec_str_new();
+    CAPI.annis_vec_str_push(matchNodeIDs, corpus.tokenName(0, tokensPerDocument / 2));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    matchNodeIDs.dispose();
+    corpusNames.dispose();
+    cs.dispose();
+    err.close();
+    SyntheticCorpus.deleteRecursively(dbDir);
+  }
+
+  @Benchmark
+  public long count() throws Exception {
+    long result =
+        CAPI.annis_cs_count(cs, corpusNames, "pos=\"NN\"", AnnisQueryLanguage.AQL, err);
+    err.checkErrors();
+    return result;
+  }
+
+  @Benchmark
+  public Object countExtra() throws Exception {
+    Object result =
+        CAPI.annis_cs_count_extra(cs, corpusNames, "pos=\"NN\"", AnnisQueryLanguage.AQL, err);
+    err.checkErrors();
+    return result;
+  }
+
+  @Benchmark
+  public long findFirstPage() throws Exception {
+    CAPI.AnnisVec_AnnisCString result = CAPI.annis_cs_find(cs, corpusNames, "pos=\"NN\"",
+        AnnisQueryLanguage.AQL, 0, new LongByReference(20), AnnisResultOrder.Normal, err);
+    err.checkErrors();
+    long size = CAPI.annis_vec_str_size(result).longValue();
+    result.dispose();
+    return size;
+  }
+
+  @Benchmark
+  public long findAll() throws Exception {
+    CAPI.AnnisVec_AnnisCString result = CAPI.annis_cs_find(cs, corpusNames, "tok",
+        AnnisQueryLanguage.AQL, 0, null, AnnisResultOrder.Normal, err);
+    err.checkErrors();
+    long size = CAPI.annis_vec_str_size(result).longValue();
+    result.dispose();
+    return size;
+  }
+
+  @Benchmark
+  public long frequency() throws Exception {
+    CAPI.AnnisFrequencyTable_AnnisCString result = CAPI.annis_cs_frequency(cs, corpusNames,
+        "pos . pos", AnnisQueryLanguage.AQL, "1:pos,2:pos", err);
+    err.checkErrors();
+    long rows = CAPI.annis_freqtable_str_nrows(result).longValue();
+    result.dispose();
+    return rows;
+  }
+
+  @Benchmark
+  public int subgraph() throws Exception {
+    CAPI.AnnisGraph result = CAPI.annis_cs_subgraph(cs, SyntheticCorpus.CORPUS_NAME, matchNodeIDs,
+        new NativeLong(5), new NativeLong(5), null, err);
+    err.checkErrors();
+    int hash = result.hashCode();
+    result.dispose();
+    return hash;
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.corpus_tools.graphannis.GraphUpdate;
+import org.corpus_tools.graphannis.errors.GraphANNISException;
+
+/**
+ * Generates the updates for a synthetic corpus with a fixed number of documents and tokens.
+ *
+ * Each document has a single tokenization with a "pos" annotation on each token and a "phrase" span
+ * covering each pair of neighboring tokens.
+ */
+public class SyntheticCorpus {
+
+  public static final String CORPUS_NAME = "synthetic";
+
+  public static final String[] POS = {"NN", "VVFIN", "ART", "ADJA", "APPR", "$."};
+
+  private final int documents;
+  private final int tokensPerDocument;
+
+  public SyntheticCorpus(int documents, int tokensPerDocument) {
+    this.documents = documents;
+    this.tokensPerDocument = tokensPerDocument;
+  }
+
+  public String documentName(int doc) {
+    return CORPUS_NAME + "/doc" + doc;
+  }
+
+  public String tokenName(int doc, int tok) {
+    return documentName(doc) + "#t" + tok;
+  }
+
+  /**
+   * Create an update containing the whole corpus.
+   */
+  public GraphUpdate createUpdate() throws GraphANNISException {
+    GraphUpdate u = new GraphUpdate();
+    u.addNode(CORPUS_NAME, "corpus");
+    for (int d = 0; d < documents; d++) {
+      addDocument(u, d);
+    }
+    return u;
+  }
+
+  /**
+   * Add all nodes, annotations and edges of a single document to the update.
+   */
+  public void addDocument(GraphUpdate u, int doc) throws GraphANNISException {
+    String docName = documentName(doc);
+    u.addNode(docName, "corpus");
+    u.addNodeLabel(docName, "annis", "doc", "doc" + doc);
+    u.addEdge(docName, CORPUS_NAME, "annis", "PartOf", "");
+
+    for (int t = 0; t < tokensPerDocument; t++) {
+      String tokName = tokenName(doc, t);
+      u.addNode(tokName);
+      u.addNodeLabel(tokName, "annis", "tok", "token" + (t % 100));
+      u.addNodeLabel(tokName, "default_ns", "pos", POS[t % POS.length]);
+      u.addEdge(tokName, docName, "annis", "PartOf", "");
+      if (t > 0) {
+        u.addEdge(tokenName(doc, t - 1), tokName, "annis", "Ordering", "");
+      }
+      if (t % 2 == 1) {
+        String spanName = docName + "#s" + t;
+        u.addNode(spanName);
+        u.addNodeLabel(spanName, "default_ns", "phrase", "NP");
+        u.addEdge(spanName, docName, "annis", "PartOf", "");
+        u.addEdge(spanName, tokenName(doc, t - 1), "annis", "Coverage", "");
+        u.addEdge(spanName, tokName, "annis", "Coverage", "");
+      }
+    }
+  }
+
+  public static File createTempDir() throws IOException {
+    return Files.createTempDirectory("graphannis-benchmark").toFile();
+  }
+
+  public static void deleteRecursively(File dir) throws IOException {
+    try (Stream<Path> files = Files.walk(dir.toPath())) {
+      files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.corpus_tools.graphannis.CorpusStorageManager.CountResult;
+import org.corpus_tools.graphannis.CorpusStorageManager.ExportFormat;
+import org.corpus_tools.graphannis.CorpusStorageManager.ImportFormat;
+import org.corpus_tools.graphannis.CorpusStorageManager.NativeCall;
+import org.corpus_tools.graphannis.CorpusStorageManager.QueryLanguage;
+import org.corpus_tools.graphannis.CorpusStorageManager.ResultOrder;
+import org.corpus_tools.graphannis.model.FrequencyTableEntry;
+import org.corpus_tools.graphannis.model.Graph;
+
+/**
+ * Executes the functions of a {@link CorpusStorageManager} asynchronously.
+ *
+ * Each call is executed on a bounded executor, which limits the number of concurrent calls into the
+ * native library, and returns a {@link CompletableFuture}. If the function throws an exception, the
+ * future is completed exceptionally with this exception. If the executor is saturated or has been
+ * shut down, the future is completed exceptionally with a {@link RejectedExecutionException}.
+ *
+ * Dependent stages which are not registered with one of the {@code *Async} methods of the future are
+ * executed on the executor threads and block a slot for native calls. Long running or blocking
+ * continuations should therefore be executed on a different executor.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class AsyncCorpusStorageManager implements AutoCloseable {
+
+  private final CorpusStorageManager storage;
+  private final ExecutorService executor;
+  private final boolean ownsExecutor;
+
+  /**
+   * Create a new asynchronous wrapper with an unbounded queue of waiting calls.
+   *
+   * @param storage The corpus storage to execute the calls on.
+   * @param maxConcurrentCalls The maximum number of calls executed in parallel.
+   */
+  public AsyncCorpusStorageManager(CorpusStorageManager storage, int maxConcurrentCalls) {
+    this(storage, maxConcurrentCalls, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Create a new asynchronous wrapper.
+   *
+   * @param storage The corpus storage to execute the calls on.
+   * @param maxConcurrentCalls The maximum number of calls executed in parallel.
+   * @param maxQueuedCalls The maximum number of calls waiting for execution. Additional calls are
+   *        rejected.
+   */
+  public AsyncCorpusStorageManager(CorpusStorageManager storage, int maxConcurrentCalls,
+      int maxQueuedCalls) {
+    this(storage, createExecutor(maxConcurrentCalls, maxQueuedCalls), true);
+  }
+
+  /**
+   * Create a new asynchronous wrapper which uses an existing executor. The executor is not shut
+   * down when this wrapper is closed.
+   *
+   * @param storage The corpus storage to execute the calls on.
+   * @param executor The executor for the calls, which should have a bounded number of threads.
+   */
+  public AsyncCorpusStorageManager(CorpusStorageManager storage, ExecutorService executor) {
+    this(storage, executor, false);
+  }
+
+  private AsyncCorpusStorageManager(CorpusStorageManager storage, ExecutorService executor,
+      boolean ownsExecutor) {
+    this.storage = storage;
+    this.executor = executor;
+    this.ownsExecutor = ownsExecutor;
+  }
+
+  private static ExecutorService createExecutor(int maxConcurrentCalls, int maxQueuedCalls) {
+    if (maxConcurrentCalls <= 0) {
+      throw new IllegalArgumentException("Maximum number of concurrent calls must be positive");
+    }
+    if (maxQueuedCalls < 0) {
+      throw new IllegalArgumentException("Maximum number of queued calls must not be negative");
+    }
+    BlockingQueue<Runnable> queue;
+    if (maxQueuedCalls == Integer.MAX_VALUE) {
+      queue = new LinkedBlockingQueue<>();
+    } else if (maxQueuedCalls == 0) {
+      queue = new SynchronousQueue<>();
+    } else {
+      queue = new ArrayBlockingQueue<>(maxQueuedCalls);
+    }
+    ThreadPoolExecutor result = new ThreadPoolExecutor(maxConcurrentCalls, maxConcurrentCalls, 60L,
+        TimeUnit.SECONDS, queue, new NativeCallThreadFactory());
+    result.allowCoreThreadTimeOut(true);
+    return result;
+  }
+
+  /**
+   * @return The wrapped corpus storage.
+   */
+  public CorpusStorageManager getStorage() {
+    return storage;
+  }
+
+  /**
+   * @see CorpusStorageManager#count(Iterable, String, QueryLanguage)
+   */
+  public CompletableFuture<Long> count(Iterable<String> corpusNames, String query,
+      QueryLanguage queryLanguage) {
+    return submit(() -> storage.count(corpusNames, query, queryLanguage));
+  }
+
+  /**
+   * @see CorpusStorageManager#countExtra(Iterable, String, QueryLanguage)
+   */
+  public CompletableFuture<CountResult> countExtra(Iterable<String> corpusNames, String query,
+      QueryLanguage queryLanguage) {
+    return submit(() -> storage.countExtra(corpusNames, query, queryLanguage));
+  }
+
+  /**
+   * @see CorpusStorageManager#find(Iterable, String, QueryLanguage, long, Optional)
+   */
+  public CompletableFuture<String[]> find(Iterable<String> corpusNames, String query,
+      QueryLanguage queryLanguage, long offset, Optional<Long> limit) {
+    return submit(() -> storage.find(corpusNames, query, queryLanguage, offset, limit));
+  }
+
+  /**
+   * @see CorpusStorageManager#find(Iterable, String, QueryLanguage, long, Optional, ResultOrder)
+   */
+  public CompletableFuture<String[]> find(Iterable<String> corpusNames, String query,
+      QueryLanguage queryLanguage, long offset, Optional<Long> limit, ResultOrder order) {
+    return submit(() -> storage.find(corpusNames, query, queryLanguage, offset, limit, order));
+  }
+
+  /**
+   * @see CorpusStorageManager#subgraph(String, List, long, long, Optional)
+   */
+  public CompletableFuture<Graph> subgraph(String corpusName, List<String> nodeIDs, long ctxLeft,
+      long ctxRight, Optional<String> segmentation) {
+    return submit(() -> storage.subgraph(corpusName, nodeIDs, ctxLeft, ctxRight, segmentation));
+  }
+
+  /**
+   * @see CorpusStorageManager#subcorpusGraph(String, List)
+   */
+  public CompletableFuture<Graph> subcorpusGraph(String corpusName, List<String> documentIDs) {
+    return submit(() -> storage.subcorpusGraph(corpusName, documentIDs));
+  }
+
+  /**
+   * @see CorpusStorageManager#frequency(Iterable, String, QueryLanguage, String)
+   */
+  public CompletableFuture<List<FrequencyTableEntry<String>>> frequency(
+      Iterable<String> corpusNames, String query, QueryLanguage queryLanguage,
+      String frequencyQueryDefinition) {
+    return submit(
+        () -> storage.frequency(corpusNames, query, queryLanguage, frequencyQueryDefinition));
+  }
+
+  /**
+   * @see CorpusStorageManager#importFromFileSystem(String, ImportFormat, String, boolean, boolean)
+   */
+  public CompletableFuture<Void> importFromFileSystem(String path, ImportFormat format,
+      String corpusName, boolean diskBased, boolean overwriteExisting) {
+    return submit(() -> {
+      storage.importFromFileSystem(path, format, corpusName, diskBased, overwriteExisting);
+      return null;
+    });
+  }
+
+  /**
+   * @see CorpusStorageManager#exportToFileSystem(String[], String, ExportFormat)
+   */
+  public CompletableFuture<Void> exportToFileSystem(String[] corpora, String path,
+      ExportFormat format) {
+    return submit(() -> {
+      storage.exportToFileSystem(corpora, path, format);
+      return null;
+    });
+  }
+
+  /**
+   * @see CorpusStorageManager#applyUpdate(String, GraphUpdate)
+   */
+  public CompletableFuture<Void> applyUpdate(String corpusName, GraphUpdate update) {
+    return submit(() -> {
+      storage.applyUpdate(corpusName, update);
+      return null;
+    });
+  }
+
+  private <T> CompletableFuture<T> submit(NativeCall<T> call) {
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    try {
+      executor.execute(() -> {
+        if (result.isDone()) {
+          // cancelled while waiting for execution
+          return;
+        }
+        try {
+          result.complete(call.execute());
+        } catch (Throwable ex) {
+          result.completeExceptionally(ex);
+        }
+      });
+    } catch (RejectedExecutionException ex) {
+      result.completeExceptionally(ex);
+    }
+    return result;
+  }
+
+  /**
+   * Stop accepting new calls. Calls which have already been submitted are still executed. The
+   * wrapped corpus storage is not closed.
+   */
+  @Override
+  public void close() {
+    if (ownsExecutor) {
+      executor.shutdown();
+    }
+  }
+
+  private static class NativeCallThreadFactory implements ThreadFactory {
+
+    private static final AtomicInteger poolCounter = new AtomicInteger();
+
+    private final int poolNumber = poolCounter.incrementAndGet();
+    private final AtomicInteger threadCounter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r,
+          "graphANNIS-" + poolNumber + "-native-call-" + threadCounter.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+}
@@ -16,10 +16,35 @@ package org.corpus_tools.graphannis;
 import com.sun.jna.NativeLong;
 import com.sun.jna.ptr.LongByReference;
 import java.io.File;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import org.corpus_tools.graphannis.QueryScheduler.Priority;
 import org.corpus_tools.graphannis.capi.AnnisCountExtra;
 import org.corpus_tools.graphannis.capi.AnnisErrorListRef;
 import org.corpus_tools.graphannis.capi.AnnisExportFormat;
@@ -29,8 +54,11 @@ import org.corpus_tools.graphannis.capi.AnnisResultOrder;
 import org.corpus_tools.graphannis.capi.CAPI;
 import org.corpus_tools.graphannis.capi.CAPI.AnnisComponentConst;
 import org.corpus_tools.graphannis.capi.CharPointer;
+import org.corpus_tools.graphannis.capi.NativeAllocationStats;
 import org.corpus_tools.graphannis.capi.QueryAttributeDescription;
 import org.corpus_tools.graphannis.errors.GraphANNISException;
+import org.corpus_tools.graphannis.errors.QueryRejectedException;
+import org.corpus_tools.graphannis.errors.QueryTimeoutException;
 import org.corpus_tools.graphannis.errors.SetLoggerError;
 import org.corpus_tools.graphannis.model.AnnoKey;
 import org.corpus_tools.graphannis.model.Annotation;
@@ -38,6 +66,7 @@ import org.corpus_tools.graphannis.model.Component;
 import org.corpus_tools.graphannis.model.ComponentType;
 import org.corpus_tools.graphannis.model.FrequencyTableEntry;
 import org.corpus_tools.graphannis.model.Graph;
+import org.corpus_tools.graphannis.model.GraphSnapshot;
 import org.corpus_tools.graphannis.model.NodeDesc;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,6 +79,33 @@ import org.slf4j.LoggerFactory;
 public class CorpusStorageManager implements AutoCloseable {
   private final CAPI.AnnisCorpusStorage instance;
 
+  /** Native calls which currently use the corpus storage instance. */
+  private final NativeLeases leases = new NativeLeases();
+
+  private volatile long closeTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+
+  private volatile QueryCache queryCache;
+
+  private volatile DocumentGraphCache documentGraphCache;
+
+  private volatile SingleFlight singleFlight = new SingleFlight();
+
+  private volatile QueryScheduler scheduler;
+
+  /** The deadline of the call with a timeout executed by the current worker thread. */
+  private final ThreadLocal<Long> callDeadline = new ThreadLocal<>();
+
+  private volatile TimeoutTracker timeoutTracker =
+      new TimeoutTracker(3, TimeUnit.MINUTES.toNanos(10));
+
+  /** Workers for calls with a timeout, which are abandoned when the timeout is reached. */
+  private volatile ThreadPoolExecutor timeoutExecutor;
+
+  private volatile int maxTimeoutWorkers =
+      Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+  private volatile ForkJoinPool parallelCorpusPool;
+
   private final Logger log = LoggerFactory.getLogger(CorpusStorageManager.class);
 
   /** Contains the extended results of the count query. */
@@ -58,6 +114,25 @@ public class CorpusStorageManager implements AutoCloseable {
     public long matchCount;
     /** Number of documents with at least one match. */
     public long documentCount;
+
+    CountResult copy() {
+      CountResult result = new CountResult();
+      result.matchCount = matchCount;
+      result.documentCount = documentCount;
+      return result;
+    }
+  }
+
+  /** A call into the native library. */
+  @FunctionalInterface
+  interface NativeCall<T> {
+    T execute() throws GraphANNISException;
+  }
+
+  /** A call into the native library without a result. */
+  @FunctionalInterface
+  private interface NativeAction {
+    void execute() throws GraphANNISException;
   }
 
   /**
@@ -256,17 +331,11 @@ public class CorpusStorageManager implements AutoCloseable {
     checkNotClosed();
 
     AnnisErrorListRef err = new AnnisErrorListRef();
-    CAPI.AnnisVec_AnnisCString orig = CAPI.annis_cs_list(instance, err);
+    CAPI.AnnisVec_AnnisCString orig =
+        scheduled(Priority.Interactive, () -> CAPI.annis_cs_list(instance, err));
     err.checkErrors();
 
-    String[] copy = new String[CAPI.annis_vec_str_size(orig).intValue()];
-    for (int i = 0; i < copy.length; i++) {
-      copy[i] = CAPI.annis_vec_str_get(orig, new NativeLong(i));
-    }
-
-    orig.dispose();
-
-    return copy;
+    return orig.toArrayAndDispose();
   }
 
   /**
@@ -287,8 +356,9 @@ public class CorpusStorageManager implements AutoCloseable {
 
     AnnisErrorListRef err = new AnnisErrorListRef();
 
-    CAPI.AnnisMatrix_AnnisCString orig = CAPI.annis_cs_list_node_annotations(instance, corpusName,
-        listValues, onlyMostFrequentValues, err);
+    CAPI.AnnisMatrix_AnnisCString orig =
+        scheduled(Priority.Interactive, () -> CAPI.annis_cs_list_node_annotations(instance,
+            corpusName, listValues, onlyMostFrequentValues, err));
     err.checkErrors();
 
     final int nrows = CAPI.annis_matrix_str_nrows(orig).intValue();
@@ -297,8 +367,8 @@ public class CorpusStorageManager implements AutoCloseable {
       for (int i = 0; i < nrows; i++) {
         Annotation anno = new Annotation();
         AnnoKey key = new AnnoKey();
-        String ns = CAPI.annis_matrix_str_get(orig, new NativeLong(i), new NativeLong(0));
-        String name = CAPI.annis_matrix_str_get(orig, new NativeLong(i), new NativeLong(1));
+        String ns = CAPI.annis_matrix_str_get(orig, i, 0);
+        String name = CAPI.annis_matrix_str_get(orig, i, 1);
 
         if (!"".equals(ns)) {
           key.setNs(ns);
@@ -307,7 +377,7 @@ public class CorpusStorageManager implements AutoCloseable {
         anno.setKey(key);
 
         if (listValues) {
-          String val = CAPI.annis_matrix_str_get(orig, new NativeLong(i), new NativeLong(2));
+          String val = CAPI.annis_matrix_str_get(orig, i, 2);
           anno.setValue(val);
         }
 
@@ -344,8 +414,9 @@ public class CorpusStorageManager implements AutoCloseable {
     AnnisErrorListRef err = new AnnisErrorListRef();
 
     CAPI.AnnisMatrix_AnnisCString orig =
-        CAPI.annis_cs_list_edge_annotations(instance, corpusName, componentType.toInt(),
-            componentName, componentLayer, listValues, onlyMostFrequentValues, err);
+        scheduled(Priority.Interactive, () -> CAPI.annis_cs_list_edge_annotations(instance,
+            corpusName, componentType.toInt(), componentName, componentLayer, listValues,
+            onlyMostFrequentValues, err));
     err.checkErrors();
 
     final int nrows = CAPI.annis_matrix_str_nrows(orig).intValue();
@@ -354,8 +425,8 @@ public class CorpusStorageManager implements AutoCloseable {
       for (int i = 0; i < nrows; i++) {
         Annotation anno = new Annotation();
         AnnoKey key = new AnnoKey();
-        String ns = CAPI.annis_matrix_str_get(orig, new NativeLong(i), new NativeLong(0));
-        String name = CAPI.annis_matrix_str_get(orig, new NativeLong(i), new NativeLong(1));
+        String ns = CAPI.annis_matrix_str_get(orig, i, 0);
+        String name = CAPI.annis_matrix_str_get(orig, i, 1);
 
         if (!"".equals(ns)) {
           key.setNs(ns);
@@ -364,7 +435,7 @@ public class CorpusStorageManager implements AutoCloseable {
         anno.setKey(key);
 
         if (listValues) {
-          String val = CAPI.annis_matrix_str_get(orig, new NativeLong(i), new NativeLong(2));
+          String val = CAPI.annis_matrix_str_get(orig, i, 2);
           anno.setValue(val);
         }
         result.add(anno);
@@ -393,22 +464,25 @@ public class CorpusStorageManager implements AutoCloseable {
     AnnisErrorListRef err = new AnnisErrorListRef();
 
     CAPI.AnnisVec_AnnisComponent orig =
-        CAPI.annis_cs_list_components_by_type(instance, corpusName, componentType.toInt(), err);
+        scheduled(Priority.Interactive, () -> CAPI.annis_cs_list_components_by_type(instance,
+            corpusName, componentType.toInt(), err));
     err.checkErrors();
 
-    for (int i = 0; i < CAPI.annis_vec_component_size(orig).intValue(); i++) {
-      AnnisComponentConst cOrig = CAPI.annis_vec_component_get(orig, new NativeLong(i));
+    final int size = CAPI.annis_vec_component_size(orig).intValue();
+    for (int i = 0; i < size; i++) {
+      AnnisComponentConst cOrig = CAPI.annis_vec_component_get(orig, i);
       Component c = new Component();
       c.setType(componentType);
 
       CharPointer cname = CAPI.annis_component_name(cOrig);
-      c.setName(cname == null ? "" : cname.toString());
+      c.setName(cname == null ? "" : cname.toStringAndDispose());
 
       CharPointer clayer = CAPI.annis_component_layer(cOrig);
-      c.setLayer(clayer == null ? "" : clayer.toString());
+      c.setLayer(clayer == null ? "" : clayer.toStringAndDispose());
 
       result.add(c);
     }
+    orig.dispose();
 
     return result;
   }
@@ -425,6 +499,12 @@ public class CorpusStorageManager implements AutoCloseable {
    */
   public boolean validateQuery(Iterable<String> corpusNames, String query,
       QueryLanguage queryLanguage) throws GraphANNISException {
+    return cached(QueryCache.key("validateQuery", corpusNames, query, queryLanguage),
+        () -> validateQueryUncached(corpusNames, query, queryLanguage), v -> v);
+  }
+
+  private boolean validateQueryUncached(Iterable<String> corpusNames, String query,
+      QueryLanguage queryLanguage) throws GraphANNISException {
 
     checkNotClosed();
 
@@ -434,7 +514,8 @@ public class CorpusStorageManager implements AutoCloseable {
       CAPI.annis_vec_str_push(c_corpusNames, cn);
     }
     boolean result =
-        CAPI.annis_cs_validate_query(instance, c_corpusNames, query, queryLanguage.capiVal, err);
+        scheduled(Priority.Interactive, () -> CAPI.annis_cs_validate_query(instance, c_corpusNames,
+            query, queryLanguage.capiVal, err));
     c_corpusNames.dispose();
     err.checkErrors();
 
@@ -448,11 +529,15 @@ public class CorpusStorageManager implements AutoCloseable {
 
     AnnisErrorListRef err = new AnnisErrorListRef();
     QueryAttributeDescription desc =
-        CAPI.annis_cs_node_descriptions(instance, query, queryLanguage.capiVal, err);
+        scheduled(Priority.Interactive,
+            () -> CAPI.annis_cs_node_descriptions(instance, query, queryLanguage.capiVal, err));
     err.checkErrors();
 
-    return desc.getList();
-
+    try {
+      return desc.getList();
+    } finally {
+      desc.dispose();
+    }
   }
 
   /**
@@ -466,6 +551,43 @@ public class CorpusStorageManager implements AutoCloseable {
    */
   public long count(Iterable<String> corpusNames, String query, QueryLanguage queryLanguage)
       throws GraphANNISException {
+    return cached(QueryCache.key("count", corpusNames, query, queryLanguage),
+        () -> {
+          List<String> corpora = distinctCorpora(corpusNames);
+          if (isParallel(corpora)) {
+            long result = 0;
+            for (long c : executePerCorpus(corpora,
+                corpus -> countUncached(Collections.singletonList(corpus), query, queryLanguage))
+                    .values()) {
+              result += c;
+            }
+            return result;
+          }
+          return countUncached(corpora, query, queryLanguage);
+        }, v -> v);
+  }
+
+  /**
+   * Count the number of results for a query, but give up after the given timeout.
+   *
+   * @param corpusNames The name of the corpora to execute the query on.
+   * @param query The query as string.
+   * @param queryLanguage The query language of the query (e.g. AQL).
+   * @param timeout The maximum time to wait for the result.
+   * @return Returns the count as number.
+   * @throws QueryTimeoutException If the query did not finish in time.
+   * @throws QueryRejectedException If the query exceeded its deadline too often recently.
+   * @throws GraphANNISException
+   * @see #setTimeoutRejection(int, Duration)
+   */
+  public long count(Iterable<String> corpusNames, String query, QueryLanguage queryLanguage,
+      Duration timeout) throws GraphANNISException {
+    return withTimeout(timeout, queryShape(corpusNames, query, queryLanguage),
+        () -> count(corpusNames, query, queryLanguage), null);
+  }
+
+  private long countUncached(Iterable<String> corpusNames, String query,
+      QueryLanguage queryLanguage) throws GraphANNISException {
 
     checkNotClosed();
 
@@ -474,7 +596,8 @@ public class CorpusStorageManager implements AutoCloseable {
     for (String cn : corpusNames) {
       CAPI.annis_vec_str_push(c_corpusNames, cn);
     }
-    long result = CAPI.annis_cs_count(instance, c_corpusNames, query, queryLanguage.capiVal, err);
+    long result = scheduled(Priority.Interactive,
+        () -> CAPI.annis_cs_count(instance, c_corpusNames, query, queryLanguage.capiVal, err));
     c_corpusNames.dispose();
     err.checkErrors();
 
@@ -493,6 +616,23 @@ public class CorpusStorageManager implements AutoCloseable {
    */
   public CountResult countExtra(Iterable<String> corpusNames, String query,
       QueryLanguage queryLanguage) throws GraphANNISException {
+    return cached(QueryCache.key("countExtra", corpusNames, query, queryLanguage),
+        () -> {
+          List<String> corpora = distinctCorpora(corpusNames);
+          if (isParallel(corpora)) {
+            CountResult result = new CountResult();
+            for (CountResult c : countExtraByCorpus(corpora, query, queryLanguage).values()) {
+              result.matchCount += c.matchCount;
+              result.documentCount += c.documentCount;
+            }
+            return result;
+          }
+          return countExtraUncached(corpora, query, queryLanguage);
+        }, CountResult::copy);
+  }
+
+  private CountResult countExtraUncached(Iterable<String> corpusNames, String query,
+      QueryLanguage queryLanguage) throws GraphANNISException {
 
     checkNotClosed();
 
@@ -505,7 +645,8 @@ public class CorpusStorageManager implements AutoCloseable {
     }
     AnnisErrorListRef err = new AnnisErrorListRef();
     AnnisCountExtra resultForCorpus =
-        CAPI.annis_cs_count_extra(instance, c_corpusNames, query, queryLanguage.capiVal, err);
+        scheduled(Priority.Interactive, () -> CAPI.annis_cs_count_extra(instance, c_corpusNames,
+            query, queryLanguage.capiVal, err));
     c_corpusNames.dispose();
     err.checkErrors();
 
@@ -549,30 +690,258 @@ public class CorpusStorageManager implements AutoCloseable {
    */
   public String[] find(Iterable<String> corpusNames, String query, QueryLanguage queryLanguage,
       long offset, Optional<Long> limit, ResultOrder order) throws GraphANNISException {
+    if (order == ResultOrder.Randomized) {
+      // each execution is expected to return a different order
+      return findUncached(corpusNames, query, queryLanguage, offset, limit, order);
+    }
+    return cached(QueryCache.key("find", corpusNames, query, queryLanguage, offset, limit, order),
+        () -> findUncached(corpusNames, query, queryLanguage, offset, limit, order),
+        String[]::clone);
+  }
+
+  /**
+   * Find all results for a `query` and return the match ID for each result, but give up after the
+   * given timeout.
+   *
+   * @param corpusNames The name of the corpora to execute the query on.
+   * @param query The query as string.
+   * @param queryLanguage The query language of the query (e.g. AQL).
+   * @param offset Skip the `n` first results, where `n` is the offset.
+   * @param limit Return at most `n` matches, where `n` is the limit.
+   * @param order Specify the order of the matches.
+   * @param timeout The maximum time to wait for the result.
+   * @return An array of node identifiers
+   * @throws QueryTimeoutException If the query did not finish in time.
+   * @throws QueryRejectedException If the query exceeded its deadline too often recently.
+   * @throws GraphANNISException
+   * @see #setTimeoutRejection(int, Duration)
+   */
+  public String[] find(Iterable<String> corpusNames, String query, QueryLanguage queryLanguage,
+      long offset, Optional<Long> limit, ResultOrder order, Duration timeout)
+      throws GraphANNISException {
+    return withTimeout(timeout, queryShape(corpusNames, query, queryLanguage),
+        () -> find(corpusNames, query, queryLanguage, offset, limit, order), null);
+  }
+
+  /**
+   * Find all results for a `query` and return each result as parsed {@link Match}.
+   *
+   * @param corpusNames The name of the corpora to execute the query on.
+   * @param query The query as string.
+   * @param queryLanguage The query language of the query (e.g. AQL).
+   * @param offset Skip the `n` first results, where `n` is the offset.
+   * @param limit Return at most `n` matches, where `n` is the limit.
+   * @param order Specify the order of the matches.
+   * @return An array of matches
+   * @throws GraphANNISException
+   * @see #find(Iterable, String, QueryLanguage, long, Optional, ResultOrder)
+   */
+  public Match[] findMatches(Iterable<String> corpusNames, String query,
+      QueryLanguage queryLanguage, long offset, Optional<Long> limit, ResultOrder order)
+      throws GraphANNISException {
+    String[] matchLines = find(corpusNames, query, queryLanguage, offset, limit, order);
+    Match[] result = new Match[matchLines.length];
+    for (int i = 0; i < matchLines.length; i++) {
+      result[i] = Match.parse(matchLines[i]);
+    }
+    return result;
+  }
+
+  private String[] findUncached(Iterable<String> corpusNames, String query,
+      QueryLanguage queryLanguage, long offset, Optional<Long> limit, ResultOrder order)
+      throws GraphANNISException {
 
     checkNotClosed();
 
-    ArrayList<String> result = new ArrayList<>();
     CAPI.AnnisVec_AnnisCString c_corpusNames = CAPI.annis_vec_str_new();
     for (String cn : corpusNames) {
       CAPI.annis_vec_str_push(c_corpusNames, cn);
     }
     AnnisErrorListRef err = new AnnisErrorListRef();
     LongByReference limit_ref = limit.isPresent() ? new LongByReference(limit.get()) : null;
-    CAPI.AnnisVec_AnnisCString vec = CAPI.annis_cs_find(instance, c_corpusNames, query,
-        queryLanguage.capiVal, offset, limit_ref, order.capiVal, err);
+    CAPI.AnnisVec_AnnisCString vec = scheduled(Priority.Interactive,
+        () -> CAPI.annis_cs_find(instance, c_corpusNames, query, queryLanguage.capiVal, offset,
+            limit_ref, order.capiVal, err));
     c_corpusNames.dispose();
     err.checkErrors();
 
-    final int vecSize = CAPI.annis_vec_str_size(vec).intValue();
-    for (int i = 0; i < vecSize; i++) {
-      result.add(CAPI.annis_vec_str_get(vec, new NativeLong(i)));
+    return vec.toArrayAndDispose();
+  }
+
+  /**
+   * Find all results for a `query` and return the match ID for each result, executing the query
+   * for each corpus in parallel.
+   *
+   * The result is the same as for
+   * {@link #find(Iterable, String, QueryLanguage, long, Optional, ResultOrder) find}: the corpora
+   * are ordered by their name (in reverse for {@link ResultOrder#Inverted}) and the matches of a
+   * corpus follow the matches of all preceding corpora. Each corpus only fetches the first
+   * {@code offset + limit} matches and the offset and limit are applied to the merged result.
+   * Corpora whose matches are not needed anymore are not queried if their query has not already
+   * been started.
+   *
+   * The pool set with {@link #setParallelCorpusExecution(ForkJoinPool)} is used or the common
+   * fork-join pool if none is set. A {@link ResultOrder#Randomized} order can not be merged and is
+   * executed with a single native call.
+   *
+   * @param corpusNames The name of the corpora to execute the query on.
+   * @param query The query as string.
+   * @param queryLanguage The query language of the query (e.g. AQL).
+   * @param offset Skip the `n` first results, where `n` is the offset.
+   * @param limit Return at most `n` matches, where `n` is the limit.
+   * @param order Specify the order of the matches.
+   * @return An array of node identifiers
+   * @throws GraphANNISException
+   */
+  public String[] findParallel(Iterable<String> corpusNames, String query,
+      QueryLanguage queryLanguage, long offset, Optional<Long> limit, ResultOrder order)
+      throws GraphANNISException {
+    List<String> corpora = distinctCorpora(corpusNames);
+    if (order == ResultOrder.Randomized || corpora.size() <= 1) {
+      return find(corpora, query, queryLanguage, offset, limit, order);
+    }
+    // the result is identical to the one of find(), so both can share the cached entries
+    return cached(QueryCache.key("find", corpora, query, queryLanguage, offset, limit, order),
+        () -> findParallelUncached(corpora, query, queryLanguage, offset, limit, order),
+        String[]::clone);
+  }
+
+  private String[] findParallelUncached(List<String> corpora, String query,
+      QueryLanguage queryLanguage, long offset, Optional<Long> limit, ResultOrder order)
+      throws GraphANNISException {
+
+    // use the same corpus order as the native implementation, which compares the UTF-8 bytes
+    List<String> sorted = new ArrayList<>(corpora);
+    sorted.sort(CorpusStorageManager::compareCodePoints);
+    if (order == ResultOrder.Inverted) {
+      Collections.reverse(sorted);
+    }
+
+    // each corpus could contain all requested matches
+    final Optional<Long> limitPerCorpus;
+    if (limit.isPresent()) {
+      long sum = offset + limit.get();
+      limitPerCorpus = Optional.of(sum < 0 ? Long.MAX_VALUE : sum);
+    } else {
+      limitPerCorpus = Optional.empty();
     }
-    vec.dispose();
 
+    final ForkJoinPool configuredPool = this.parallelCorpusPool;
+    final ForkJoinPool pool = configuredPool == null ? ForkJoinPool.commonPool() : configuredPool;
+    List<ForkJoinTask<String[]>> tasks = submitPerCorpus(pool, sorted, corpus -> findUncached(
+        Collections.singletonList(corpus), query, queryLanguage, 0, limitPerCorpus, order));
+
+    // The matches are ordered by the rank of their corpus first and their position in the
+    // corpus stream second. Merging the streams by this key thus means to drain them in corpus
+    // order.
+    List<String> result = new ArrayList<>();
+    long toSkip = offset;
+    final long maxSize = limit.orElse(Long.MAX_VALUE);
+    try {
+      for (int i = 0; i < tasks.size() && result.size() < maxSize; i++) {
+        String[] matches = joinCorpusTask(tasks.get(i));
+        if (toSkip >= matches.length) {
+          toSkip -= matches.length;
+          continue;
+        }
+        for (int m = (int) toSkip; m < matches.length && result.size() < maxSize; m++) {
+          result.add(matches[m]);
+        }
+        toSkip = 0;
+      }
+    } finally {
+      cancelAll(tasks);
+    }
     return result.toArray(new String[0]);
   }
 
+  private static int compareCodePoints(String a, String b) {
+    int i = 0;
+    int j = 0;
+    while (i < a.length() && j < b.length()) {
+      int cpA = a.codePointAt(i);
+      int cpB = b.codePointAt(j);
+      if (cpA != cpB) {
+        return Integer.compare(cpA, cpB);
+      }
+      i += Character.charCount(cpA);
+      j += Character.charCount(cpB);
+    }
+    return Integer.compare(a.length() - i, b.length() - j);
+  }
+
+  /**
+   * Find all results for a `query` and iterate over the match IDs in default order.
+   *
+   * In contrast to {@link #find(Iterable, String, QueryLanguage, long, Optional)}, the matches are
+   * not copied into memory at once, but fetched page by page while iterating. The returned cursor
+   * must be closed after usage.
+   *
+   * @param corpusNames The name of the corpora to execute the query on.
+   * @param query The query as string.
+   * @param queryLanguage The query language of the query (e.g. AQL).
+   * @param pageSize The number of matches to fetch from the corpus storage at once.
+   * @return A cursor over the match IDs
+   * @throws GraphANNISException
+   */
+  public MatchCursor findCursor(Iterable<String> corpusNames, String query,
+      QueryLanguage queryLanguage, long pageSize) throws GraphANNISException {
+    return findCursor(corpusNames, query, queryLanguage, 0, pageSize, ResultOrder.Normal);
+  }
+
+  /**
+   * Find all results for a `query` and iterate over the match IDs.
+   *
+   * In contrast to {@link #find(Iterable, String, QueryLanguage, long, Optional, ResultOrder)},
+   * the matches are not copied into memory at once, but fetched page by page while iterating. The
+   * returned cursor must be closed after usage.
+   *
+   * Since each page is fetched with a separate query, only stable result orders can be used.
+   * {@link ResultOrder#NotSorted} is allowed, but it is not guaranteed that each match is returned
+   * exactly once.
+   *
+   * @param corpusNames The name of the corpora to execute the query on.
+   * @param query The query as string.
+   * @param queryLanguage The query language of the query (e.g. AQL).
+   * @param offset Skip the `n` first results, where `n` is the offset.
+   * @param pageSize The number of matches to fetch from the corpus storage at once.
+   * @param order Specify the order of the matches. {@link ResultOrder#Randomized} is not supported.
+   * @return A cursor over the match IDs
+   * @throws GraphANNISException
+   */
+  public MatchCursor findCursor(Iterable<String> corpusNames, String query,
+      QueryLanguage queryLanguage, long offset, long pageSize, ResultOrder order)
+      throws GraphANNISException {
+
+    checkNotClosed();
+
+    CAPI.AnnisVec_AnnisCString c_corpusNames = CAPI.annis_vec_str_new();
+    for (String cn : corpusNames) {
+      CAPI.annis_vec_str_push(c_corpusNames, cn);
+    }
+    try {
+      return new MatchCursor(this, c_corpusNames, query, queryLanguage, order, offset, pageSize);
+    } catch (IllegalArgumentException ex) {
+      c_corpusNames.dispose();
+      throw ex;
+    }
+  }
+
+  CAPI.AnnisVec_AnnisCString findPage(CAPI.AnnisVec_AnnisCString c_corpusNames, String query,
+      QueryLanguage queryLanguage, long offset, long limit, ResultOrder order)
+      throws GraphANNISException {
+
+    checkNotClosed();
+
+    AnnisErrorListRef err = new AnnisErrorListRef();
+    CAPI.AnnisVec_AnnisCString vec = scheduled(Priority.Interactive,
+        () -> CAPI.annis_cs_find(instance, c_corpusNames, query, queryLanguage.capiVal, offset,
+            new LongByReference(limit), order.capiVal, err));
+    err.checkErrors();
+
+    return vec;
+  }
+
   /**
    * Return the copy of a subgraph which includes the given list of node annotation identifiers, the
    * nodes that cover the same token as the given nodes and all nodes that cover the token which are
@@ -598,15 +967,188 @@ public class CorpusStorageManager implements AutoCloseable {
     }
 
     AnnisErrorListRef err = new AnnisErrorListRef();
-    CAPI.AnnisGraph graph = CAPI.annis_cs_subgraph(instance, corpusName, c_node_ids,
-        new NativeLong(ctxLeft), new NativeLong(ctxRight), segmentation.orElse(null), err);
-    err.checkErrors();
-
+    CAPI.AnnisGraph graph = scheduled(Priority.Interactive,
+        () -> CAPI.annis_cs_subgraph(instance, corpusName, c_node_ids, new NativeLong(ctxLeft),
+            new NativeLong(ctxRight), segmentation.orElse(null), err));
     c_node_ids.dispose();
+    err.checkErrors();
 
     return new Graph(graph);
   }
 
+  /**
+   * Return the copy of a subgraph like {@link #subgraph(String, List, long, long, Optional)}, but
+   * give up after the given timeout. If the native call finishes after the timeout, the subgraph
+   * is closed immediately.
+   *
+   * @param corpusName The name of the corpus for which the subgraph should be generated from.
+   * @param nodeIDs A set of node annotation identifiers describing the subgraph.
+   * @param ctxLeft Left context in token distance to be included in the subgraph.
+   * @param ctxRight Right context in token distance to be included in the subgraph.
+   * @param segmentation The name of the segmentation which should be used to as base for the
+   *        context. Use {@link Optional#empty()} to define the context in the default token layer.
+   * @param timeout The maximum time to wait for the result.
+   * @return The subgraph.
+   * @throws QueryTimeoutException If the subgraph could not be created in time.
+   * @throws QueryRejectedException If the subgraph exceeded its deadline too often recently.
+   * @throws GraphANNISException
+   * @see #setTimeoutRejection(int, Duration)
+   */
+  public Graph subgraph(String corpusName, List<String> nodeIDs, long ctxLeft, long ctxRight,
+      Optional<String> segmentation, Duration timeout) throws GraphANNISException {
+    return withTimeout(timeout,
+        subgraphShape(corpusName, nodeIDs, ctxLeft, ctxRight, segmentation),
+        () -> subgraph(corpusName, nodeIDs, ctxLeft, ctxRight, segmentation), Graph::close);
+  }
+
+  /**
+   * Return a Java copy of the subgraph which includes the given nodes and the context around them.
+   *
+   * If a {@link DocumentGraphCache} has been set with
+   * {@link #setDocumentGraphCache(DocumentGraphCache)}, the whole document of the nodes is fetched
+   * once and the subgraphs of all further matches in the same document are created from the cached
+   * document without calling the native library. Otherwise, and for contexts based on a
+   * segmentation or nodes of several documents, this is the same as a snapshot of
+   * {@link #subgraph(String, List, long, long, Optional)}.
+   *
+   * @param corpusName The name of the corpus for which the subgraph should be generated from.
+   * @param nodeIDs A set of node annotation identifiers describing the subgraph.
+   * @param ctxLeft Left context in token distance to be included in the subgraph.
+   * @param ctxRight Right context in token distance to be included in the subgraph.
+   * @param segmentation The name of the segmentation which should be used to as base for the
+   *        context. Use {@link Optional#empty()} to define the context in the default token layer.
+   * @return The subgraph.
+   * @throws GraphANNISException
+   */
+  public GraphSnapshot subgraphSnapshot(String corpusName, List<String> nodeIDs, long ctxLeft,
+      long ctxRight, Optional<String> segmentation) throws GraphANNISException {
+
+    checkNotClosed();
+
+    final DocumentGraphCache cache = this.documentGraphCache;
+    final String documentName = DocumentGraphCache.documentOf(nodeIDs);
+    if (cache != null && !segmentation.isPresent() && documentName != null) {
+      DocumentGraphCache.Document document = cache.get(corpusName, documentName);
+      if (document == null) {
+        long generation = cache.getGeneration();
+        try (Graph graph = subcorpusGraph(corpusName, Arrays.asList(documentName))) {
+          document = new DocumentGraphCache.Document(graph.snapshot());
+        }
+        cache.put(corpusName, documentName, document, generation);
+      }
+      GraphSnapshot result = document.subgraph(nodeIDs, ctxLeft, ctxRight);
+      if (result != null) {
+        return result;
+      }
+    }
+
+    try (Graph graph = subgraph(corpusName, nodeIDs, ctxLeft, ctxRight, segmentation)) {
+      return graph.snapshot();
+    }
+  }
+
+  /**
+   * Return the subgraphs for a list of matches, e.g. all matches of a result page.
+   *
+   * This is the same as calling {@link #subgraph(String, List, long, long, Optional)} for each
+   * match, but the subgraphs are retrieved in parallel on the pool set with
+   * {@link #setParallelCorpusExecution(ForkJoinPool)}, or one after another if no pool is set.
+   * Matches with the same set of node identifiers are only retrieved once. If one of the subgraphs
+   * can not be retrieved, all other subgraphs are closed before the exception is thrown.
+   *
+   * The caller owns every returned {@link Graph} and has to close each of them, even if several
+   * matches have the same nodes. The graphs of such matches are separate instances created with
+   * {@link Graph#share()}, so closing one of them does not affect the others.
+   *
+   * @param corpusName The name of the corpus for which the subgraphs should be generated from.
+   * @param matchNodeIDs For each match, the node annotation identifiers describing its subgraph.
+   * @param ctxLeft Left context in token distance to be included in each subgraph.
+   * @param ctxRight Right context in token distance to be included in each subgraph.
+   * @param segmentation The name of the segmentation which should be used to as base for the
+   *        context. Use {@link Optional#empty()} to define the context in the default token layer.
+   * @return The subgraph for each match, in the same order as the matches.
+   * @throws GraphANNISException
+   */
+  public List<Graph> subgraphs(String corpusName, List<List<String>> matchNodeIDs, long ctxLeft,
+      long ctxRight, Optional<String> segmentation) throws GraphANNISException {
+
+    checkNotClosed();
+
+    // the order of the node IDs does not influence the subgraph
+    Map<Set<String>, Integer> uniqueIndex = new HashMap<>();
+    List<List<String>> unique = new ArrayList<>();
+    int[] uniqueForMatch = new int[matchNodeIDs.size()];
+    for (int m = 0; m < uniqueForMatch.length; m++) {
+      List<String> nodeIDs = matchNodeIDs.get(m);
+      Set<String> key = new HashSet<>(nodeIDs);
+      Integer idx = uniqueIndex.get(key);
+      if (idx == null) {
+        idx = unique.size();
+        unique.add(nodeIDs);
+        uniqueIndex.put(key, idx);
+      }
+      uniqueForMatch[m] = idx;
+    }
+
+    final Graph[] graphs = new Graph[unique.size()];
+    final ForkJoinPool pool = this.parallelCorpusPool;
+    if (pool == null || graphs.length <= 1) {
+      try {
+        for (int i = 0; i < graphs.length; i++) {
+          graphs[i] = subgraph(corpusName, unique.get(i), ctxLeft, ctxRight, segmentation);
+        }
+      } catch (GraphANNISException | RuntimeException ex) {
+        closeAll(graphs);
+        throw ex;
+      }
+    } else {
+      // Tasks which are still running when another one fails can not be stopped. Each task stores
+      // its graph while holding the lock on the array, so either the task or the failing caller
+      // closes the graph.
+      final AtomicBoolean failed = new AtomicBoolean();
+      List<ForkJoinTask<Graph>> tasks = new ArrayList<>(graphs.length);
+      for (int i = 0; i < graphs.length; i++) {
+        final int idx = i;
+        final List<String> nodeIDs = unique.get(i);
+        tasks.add(pool.submit(() -> {
+          Graph g = subgraph(corpusName, nodeIDs, ctxLeft, ctxRight, segmentation);
+          synchronized (graphs) {
+            if (failed.get()) {
+              g.close();
+              return null;
+            }
+            graphs[idx] = g;
+          }
+          return g;
+        }));
+      }
+      try {
+        for (ForkJoinTask<Graph> t : tasks) {
+          joinCorpusTask(t);
+        }
+      } catch (GraphANNISException | RuntimeException ex) {
+        cancelAll(tasks);
+        synchronized (graphs) {
+          failed.set(true);
+          closeAll(graphs);
+        }
+        throw ex;
+      }
+    }
+
+    List<Graph> result = new ArrayList<>(uniqueForMatch.length);
+    boolean[] used = new boolean[graphs.length];
+    for (int idx : uniqueForMatch) {
+      if (used[idx]) {
+        result.add(graphs[idx].share());
+      } else {
+        used[idx] = true;
+        result.add(graphs[idx]);
+      }
+    }
+    return result;
+  }
+
   /**
    * Return the copy of a subgraph which includes all nodes that belong to any of the given list of
    * sub-corpus/document identifiers.
@@ -630,10 +1172,11 @@ public class CorpusStorageManager implements AutoCloseable {
     if (instance != null) {
       AnnisErrorListRef err = new AnnisErrorListRef();
       CAPI.AnnisGraph graph =
-          CAPI.annis_cs_subcorpus_graph(instance, corpusName, c_document_ids, err);
+          scheduled(Priority.Interactive,
+              () -> CAPI.annis_cs_subcorpus_graph(instance, corpusName, c_document_ids, err));
+      c_document_ids.dispose();
       err.checkErrors();
 
-      c_document_ids.dispose();
       result = new Graph(graph);
     }
 
@@ -651,7 +1194,8 @@ public class CorpusStorageManager implements AutoCloseable {
     checkNotClosed();
 
     AnnisErrorListRef err = new AnnisErrorListRef();
-    CAPI.AnnisGraph graph = CAPI.annis_cs_corpus_graph(instance, corpusName, err);
+    CAPI.AnnisGraph graph = scheduled(Priority.Interactive,
+        () -> CAPI.annis_cs_corpus_graph(instance, corpusName, err));
     err.checkErrors();
 
     return new Graph(graph);
@@ -673,12 +1217,12 @@ public class CorpusStorageManager implements AutoCloseable {
     checkNotClosed();
 
     AnnisErrorListRef err = new AnnisErrorListRef();
-    CAPI.AnnisGraph graph = CAPI.annis_cs_subgraph_for_query_with_ctype(instance, corpusName, query,
-        queryLanguage.capiVal, ComponentType.PartOf.toInt(), err);
+    CAPI.AnnisGraph graph = scheduled(Priority.Interactive,
+        () -> CAPI.annis_cs_subgraph_for_query_with_ctype(instance, corpusName, query,
+            queryLanguage.capiVal, ComponentType.PartOf.toInt(), err));
     err.checkErrors();
 
     return new Graph(graph);
-
   }
 
   /**
@@ -697,7 +1241,8 @@ public class CorpusStorageManager implements AutoCloseable {
 
     AnnisErrorListRef err = new AnnisErrorListRef();
     CAPI.AnnisGraph graph =
-        CAPI.annis_cs_subgraph_for_query(instance, corpusName, query, queryLanguage.capiVal, err);
+        scheduled(Priority.Interactive, () -> CAPI.annis_cs_subgraph_for_query(instance, corpusName,
+            query, queryLanguage.capiVal, err));
     err.checkErrors();
 
     return new Graph(graph);
@@ -720,11 +1265,49 @@ public class CorpusStorageManager implements AutoCloseable {
    * 
    *        would extract the token value for the nodes #1, the pos annotation for node #3 and the
    *        pos annotation in the tiger namespace for node #4.
-   * @return A list of frequency table entries.
+   * @return A list of frequency table entries, which is empty if there are no matches.
    * @throws GraphANNISException
    */
   public List<FrequencyTableEntry<String>> frequency(Iterable<String> corpusNames, String query,
       QueryLanguage queryLanguage, String frequencyQueryDefinition) throws GraphANNISException {
+    return cached(
+        QueryCache.key("frequency", corpusNames, query, queryLanguage, frequencyQueryDefinition),
+        () -> {
+          List<String> corpora = distinctCorpora(corpusNames);
+          if (isParallel(corpora)) {
+            return mergeFrequencyTables(
+                frequencyByCorpus(corpora, query, queryLanguage, frequencyQueryDefinition)
+                    .values());
+          }
+          return frequencyUncached(corpora, query, queryLanguage, frequencyQueryDefinition);
+        }, CorpusStorageManager::copyFrequencyTable);
+  }
+
+  /**
+   * Execute a frequency query, but give up after the given timeout.
+   *
+   * @param corpusNames The name of the corpora to execute the query on.
+   * @param query The query as string.
+   * @param queryLanguage The query language of the query (e.g. AQL).
+   * @param frequencyQueryDefinition A comma seperated list of single frequency definition items,
+   *        see {@link #frequency(Iterable, String, QueryLanguage, String)}.
+   * @param timeout The maximum time to wait for the result.
+   * @return A list of frequency table entries.
+   * @throws QueryTimeoutException If the query did not finish in time.
+   * @throws QueryRejectedException If the query exceeded its deadline too often recently.
+   * @throws GraphANNISException
+   * @see #setTimeoutRejection(int, Duration)
+   */
+  public List<FrequencyTableEntry<String>> frequency(Iterable<String> corpusNames, String query,
+      QueryLanguage queryLanguage, String frequencyQueryDefinition, Duration timeout)
+      throws GraphANNISException {
+    return withTimeout(timeout, queryShape(corpusNames, query, queryLanguage),
+        () -> frequency(corpusNames, query, queryLanguage, frequencyQueryDefinition), null);
+  }
+
+  private List<FrequencyTableEntry<String>> frequencyUncached(Iterable<String> corpusNames,
+      String query, QueryLanguage queryLanguage, String frequencyQueryDefinition)
+      throws GraphANNISException {
 
     checkNotClosed();
 
@@ -733,40 +1316,215 @@ public class CorpusStorageManager implements AutoCloseable {
     for (String cn : corpusNames) {
       CAPI.annis_vec_str_push(c_corpusNames, cn);
     }
-    CAPI.AnnisFrequencyTable_AnnisCString orig = CAPI.annis_cs_frequency(instance, c_corpusNames,
-        query, queryLanguage.capiVal, frequencyQueryDefinition, err);
+    CAPI.AnnisFrequencyTable_AnnisCString orig =
+        scheduled(Priority.Batch, () -> CAPI.annis_cs_frequency(instance, c_corpusNames, query,
+            queryLanguage.capiVal, frequencyQueryDefinition, err));
     c_corpusNames.dispose();
     err.checkErrors();
 
     if (orig != null) {
-      List<FrequencyTableEntry<String>> result = new ArrayList<>();
-
       final int nrows = CAPI.annis_freqtable_str_nrows(orig).intValue();
       final int ncols = CAPI.annis_freqtable_str_ncols(orig).intValue();
+
+      List<FrequencyTableEntry<String>> result = new ArrayList<>(nrows);
       for (int i = 0; i < nrows; i++) {
-        NativeLong count = CAPI.annis_freqtable_str_count(orig, new NativeLong(i));
+        long count = CAPI.annis_freqtable_str_count(orig, i).longValue();
         String[] tuple = new String[ncols];
         for (int c = 0; c < ncols; c++) {
-          tuple[c] = CAPI.annis_freqtable_str_get(orig, new NativeLong(i), new NativeLong(c));
+          tuple[c] = CAPI.annis_freqtable_str_get(orig, i, c);
         }
-        result.add(new FrequencyTableEntry<>(tuple, count.longValue()));
+        result.add(new FrequencyTableEntry<>(tuple, count));
       }
+      orig.dispose();
       return result;
     } else {
-      return null;
+      return new ArrayList<>();
     }
   }
 
   /**
-   * Import a corpus from an external location on the file system into this corpus storage.
-   * 
-   * This will not overwrite an existing corpus.
-   * 
-   * @param path The location on the file system where the corpus data is located.
-   * @param format The format in which this corpus data is stored.
-   * @param corpusName If not "null", override the name of the new corpus for file formats that
-   *        already provide a corpus name.
-   * @param diskBased If true, certain elements like the node annotation storage will be be
+   * Count the number of results for a query separately for each corpus.
+   *
+   * If parallel corpus execution is enabled, the corpora are queried in parallel.
+   *
+   * @param corpusNames The name of the corpora to execute the query on.
+   * @param query The query as string.
+   * @param queryLanguage The query language of the query (e.g. AQL).
+   * @return The match and document counts for each corpus, in the order of the given corpora.
+   * @throws GraphANNISException
+   * @see #setParallelCorpusExecution(ForkJoinPool)
+   */
+  public Map<String, CountResult> countExtraByCorpus(Iterable<String> corpusNames, String query,
+      QueryLanguage queryLanguage) throws GraphANNISException {
+    return executePerCorpus(corpusNames,
+        corpus -> countExtraUncached(Collections.singletonList(corpus), query, queryLanguage));
+  }
+
+  /**
+   * Execute a frequency query separately for each corpus.
+   *
+   * If parallel corpus execution is enabled, the corpora are queried in parallel.
+   *
+   * @param corpusNames The name of the corpora to execute the query on.
+   * @param query The query as string.
+   * @param queryLanguage The query language of the query (e.g. AQL).
+   * @param frequencyQueryDefinition A comma seperated list of single frequency definition items,
+   *        see {@link #frequency(Iterable, String, QueryLanguage, String)}.
+   * @return The frequency table for each corpus, in the order of the given corpora.
+   * @throws GraphANNISException
+   * @see #setParallelCorpusExecution(ForkJoinPool)
+   */
+  public Map<String, List<FrequencyTableEntry<String>>> frequencyByCorpus(
+      Iterable<String> corpusNames, String query, QueryLanguage queryLanguage,
+      String frequencyQueryDefinition) throws GraphANNISException {
+    return executePerCorpus(corpusNames, corpus -> frequencyUncached(
+        Collections.singletonList(corpus), query, queryLanguage, frequencyQueryDefinition));
+  }
+
+  /**
+   * Execute the native query once per corpus instead of once for all corpora. This affects
+   * {@link #count(Iterable, String, QueryLanguage) count},
+   * {@link #countExtra(Iterable, String, QueryLanguage) countExtra},
+   * {@link #frequency(Iterable, String, QueryLanguage, String) frequency} and the per corpus
+   * variants of these functions if more than one corpus is given. The pool is also used to retrieve
+   * the graphs of {@link #subgraphs(String, List, long, long, Optional) subgraphs} in parallel.
+   *
+   * The native calls are blocking, so the pool should not be used for other computations at the
+   * same time.
+   *
+   * @param pool The pool to execute the queries on or null to query all corpora with a single
+   *        native call.
+   */
+  public void setParallelCorpusExecution(ForkJoinPool pool) {
+    this.parallelCorpusPool = pool;
+  }
+
+  /**
+   * Enable or disable parallel execution for each corpus using the common fork-join pool.
+   *
+   * @param enabled Whether to execute the queries in parallel.
+   * @see #setParallelCorpusExecution(ForkJoinPool)
+   */
+  public void setParallelCorpusExecution(boolean enabled) {
+    this.parallelCorpusPool = enabled ? ForkJoinPool.commonPool() : null;
+  }
+
+  private boolean isParallel(List<String> corpora) {
+    return parallelCorpusPool != null && corpora.size() > 1;
+  }
+
+  private static List<String> distinctCorpora(Iterable<String> corpusNames) {
+    LinkedHashSet<String> result = new LinkedHashSet<>();
+    for (String c : corpusNames) {
+      result.add(c);
+    }
+    return new ArrayList<>(result);
+  }
+
+  /** A native call which is executed for a single corpus. */
+  @FunctionalInterface
+  private interface CorpusCall<T> {
+    T execute(String corpusName) throws GraphANNISException;
+  }
+
+  private <T> Map<String, T> executePerCorpus(Iterable<String> corpusNames, CorpusCall<T> call)
+      throws GraphANNISException {
+    List<String> corpora = distinctCorpora(corpusNames);
+    Map<String, T> result = new LinkedHashMap<>();
+
+    final ForkJoinPool pool = this.parallelCorpusPool;
+    if (pool == null || corpora.size() <= 1) {
+      for (String corpus : corpora) {
+        result.put(corpus, call.execute(corpus));
+      }
+      return result;
+    }
+
+    List<ForkJoinTask<T>> tasks = submitPerCorpus(pool, corpora, call);
+    try {
+      for (int i = 0; i < corpora.size(); i++) {
+        result.put(corpora.get(i), joinCorpusTask(tasks.get(i)));
+      }
+    } finally {
+      cancelAll(tasks);
+    }
+    return result;
+  }
+
+  private static <T> List<ForkJoinTask<T>> submitPerCorpus(ForkJoinPool pool,
+      List<String> corpora, CorpusCall<T> call) {
+    List<ForkJoinTask<T>> tasks = new ArrayList<>(corpora.size());
+    for (String corpus : corpora) {
+      tasks.add(pool.submit(() -> call.execute(corpus)));
+    }
+    return tasks;
+  }
+
+  private static <T> T joinCorpusTask(ForkJoinTask<T> task) throws GraphANNISException {
+    try {
+      return task.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new GraphANNISException("Interrupted while waiting for the query results", ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof GraphANNISException) {
+        throw (GraphANNISException) ex.getCause();
+      }
+      throw new GraphANNISException("Query execution failed", ex.getCause());
+    }
+  }
+
+  private static void closeAll(Graph[] graphs) {
+    for (Graph g : graphs) {
+      if (g != null) {
+        g.close();
+      }
+    }
+  }
+
+  /**
+   * Cancel all tasks which have not been started yet. Running native calls can not be interrupted
+   * and are finished in the background.
+   */
+  private static <T> void cancelAll(List<ForkJoinTask<T>> tasks) {
+    for (ForkJoinTask<T> t : tasks) {
+      t.cancel(false);
+    }
+  }
+
+  /**
+   * Sum up the counts of equal tuples and sort the merged table by count in descending order, as
+   * done by the native frequency query.
+   */
+  private static List<FrequencyTableEntry<String>> mergeFrequencyTables(
+      Collection<List<FrequencyTableEntry<String>>> tables) {
+    Map<List<String>, FrequencyTableEntry<String>> merged = new LinkedHashMap<>();
+    for (List<FrequencyTableEntry<String>> table : tables) {
+      for (FrequencyTableEntry<String> e : table) {
+        FrequencyTableEntry<String> existing = merged.get(Arrays.asList(e.getTuple()));
+        if (existing == null) {
+          merged.put(Arrays.asList(e.getTuple()),
+              new FrequencyTableEntry<>(e.getTuple(), e.getCount()));
+        } else {
+          existing.setCount(existing.getCount() + e.getCount());
+        }
+      }
+    }
+    List<FrequencyTableEntry<String>> result = new ArrayList<>(merged.values());
+    result.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+    return result;
+  }
+
+  /**
+   * Import a corpus from an external location on the file system into this corpus storage.
+   * 
+   * This will not overwrite an existing corpus.
+   * 
+   * @param path The location on the file system where the corpus data is located.
+   * @param format The format in which this corpus data is stored.
+   * @param corpusName If not "null", override the name of the new corpus for file formats that
+   *        already provide a corpus name.
+   * @param diskBased If true, certain elements like the node annotation storage will be be
    *        disk-based instead of using in-memory representations.
    * @throws GraphANNISException
    */
@@ -793,10 +1551,18 @@ public class CorpusStorageManager implements AutoCloseable {
     checkNotClosed();
 
     AnnisErrorListRef err = new AnnisErrorListRef();
-    CAPI.annis_cs_import_from_fs(instance, path, format.capiVal, corpusName, diskBased,
-        overwriteExisting, err);
-    err.checkErrors();
-
+    CharPointer importedName =
+        scheduled(Priority.Batch, () -> CAPI.annis_cs_import_from_fs(instance, path,
+            format.capiVal, corpusName, diskBased, overwriteExisting, err));
+    try {
+      err.checkErrors();
+    } finally {
+      if (importedName != null) {
+        invalidateCache(importedName.toStringAndDispose());
+      } else {
+        invalidateCache(corpusName);
+      }
+    }
   }
 
   /**
@@ -820,13 +1586,13 @@ public class CorpusStorageManager implements AutoCloseable {
 
     try {
       AnnisErrorListRef err = new AnnisErrorListRef();
-      CAPI.annis_cs_export_to_fs(instance, c_corpusNames, path, format.capiVal, err);
+      scheduled(Priority.Batch, () -> CAPI.annis_cs_export_to_fs(instance, c_corpusNames, path,
+          format.capiVal, err));
 
       err.checkErrors();
     } finally {
       c_corpusNames.dispose();
     }
-
   }
 
   /**
@@ -841,7 +1607,9 @@ public class CorpusStorageManager implements AutoCloseable {
     checkNotClosed();
 
     AnnisErrorListRef err = new AnnisErrorListRef();
-    boolean result = CAPI.annis_cs_delete(instance, corpusName, err);
+    boolean result =
+        scheduled(Priority.Interactive, () -> CAPI.annis_cs_delete(instance, corpusName, err));
+    invalidateCache(corpusName);
     err.checkErrors();
     return result;
   }
@@ -857,7 +1625,8 @@ public class CorpusStorageManager implements AutoCloseable {
     checkNotClosed();
 
     AnnisErrorListRef err = new AnnisErrorListRef();
-    CAPI.annis_cs_unload(instance, corpusName, err);
+    scheduled(Priority.Interactive, () -> CAPI.annis_cs_unload(instance, corpusName, err));
+    invalidateCache(corpusName);
     err.checkErrors();
   }
 
@@ -874,21 +1643,492 @@ public class CorpusStorageManager implements AutoCloseable {
   public void applyUpdate(String corpusName, GraphUpdate update) throws GraphANNISException {
 
     checkNotClosed();
+    if (update.isClosed()) {
+      throw new GraphANNISException("Graph update has been closed already");
+    }
 
     AnnisErrorListRef err = new AnnisErrorListRef();
-    CAPI.annis_cs_apply_update(instance, corpusName, update.getInstance(), err);
+    scheduled(Priority.Batch,
+        () -> CAPI.annis_cs_apply_update(instance, corpusName, update.getInstance(), err));
+    // even a failed update might have changed the corpus
+    invalidateCache(corpusName);
     err.checkErrors();
   }
 
+  /**
+   * Apply all events recorded by a builder to a corpus.
+   *
+   * The builder is reset afterwards and can be used to record the next update.
+   *
+   * @param corpusName The name of the corpus to apply the updates on
+   * @param builder The builder with the recorded events.
+   * @throws GraphANNISException
+   */
+  public void applyUpdate(String corpusName, GraphUpdateBuilder builder)
+      throws GraphANNISException {
+    try (GraphUpdate update = builder.build()) {
+      applyUpdate(corpusName, update);
+    }
+  }
+
+  /**
+   * Start a session which applies an unbounded number of update events to a corpus in chunks of at
+   * most 100,000 events or 64 MB.
+   *
+   * @param corpusName The name of the corpus to apply the updates on
+   * @return The session, which must be finished to apply the last chunk.
+   * @see #createUpdateSession(String, int, long)
+   */
+  public UpdateSession createUpdateSession(String corpusName) {
+    return createUpdateSession(corpusName, 100_000, 64L * 1024 * 1024);
+  }
+
+  /**
+   * Start a session which applies an unbounded number of update events to a corpus in chunks.
+   *
+   * Each chunk is applied as a separate update once it reaches the maximum number of events or the
+   * maximum estimated size, so the memory needed for the update is bounded by the chunk size.
+   *
+   * @param corpusName The name of the corpus to apply the updates on
+   * @param maxEventsPerChunk The maximum number of events of a chunk.
+   * @param maxBytesPerChunk The maximum estimated size of the events of a chunk in bytes.
+   * @return The session, which must be finished to apply the last chunk.
+   */
+  public UpdateSession createUpdateSession(String corpusName, int maxEventsPerChunk,
+      long maxBytesPerChunk) {
+    return new UpdateSession(this, corpusName, maxEventsPerChunk, maxBytesPerChunk);
+  }
+
+  /**
+   * Get the number of native handles (e.g. graphs, vectors or strings) allocated by the graphANNIS
+   * library in this process and how many of them have been freed explicitly or only after they
+   * have been garbage collected.
+   *
+   * The statistics are shared by all corpus storage managers of the process. Use
+   * {@link NativeAllocationStats#setCaptureAllocationSites(boolean)} to find the code which
+   * allocated handles that have not been freed explicitly.
+   *
+   * @return A snapshot of the allocation statistics.
+   */
+  public static NativeAllocationStats getNativeAllocationStats() {
+    return NativeAllocationStats.current();
+  }
+
+  /**
+   * Use a cache for the results of {@link #count(Iterable, String, QueryLanguage) count},
+   * {@link #countExtra(Iterable, String, QueryLanguage) countExtra},
+   * {@link #find(Iterable, String, QueryLanguage, long, Optional, ResultOrder) find},
+   * {@link #frequency(Iterable, String, QueryLanguage, String) frequency} and
+   * {@link #validateQuery(Iterable, String, QueryLanguage) validateQuery}.
+   *
+   * Cached results of a corpus are removed when the corpus is changed by this corpus storage
+   * manager. Changes made to the database directory by other processes are not detected.
+   *
+   * @param queryCache The cache to use or null to disable caching.
+   */
+  public void setQueryCache(QueryCache queryCache) {
+    this.queryCache = queryCache;
+  }
+
+  /**
+   * @return The cache for query results or null if caching is disabled.
+   */
+  public QueryCache getQueryCache() {
+    return queryCache;
+  }
+
+  private <T> T cached(QueryCache.Key key, NativeCall<T> call, UnaryOperator<T> copy)
+      throws GraphANNISException {
+    final QueryCache cache = this.queryCache;
+    if (cache == null) {
+      return coalesced(key, call, copy);
+    }
+
+    @SuppressWarnings("unchecked")
+    T result = (T) cache.get(key);
+    if (result == null) {
+      long generation = cache.getGeneration();
+      result = coalesced(key, call, copy);
+      if (result == null) {
+        return null;
+      }
+      // the cached object must not be shared with the caller, which might modify it
+      cache.put(key, copy.apply(result), generation);
+      return result;
+    }
+    return copy.apply(result);
+  }
+
+  private <T> T coalesced(QueryCache.Key key, NativeCall<T> call, UnaryOperator<T> copy)
+      throws GraphANNISException {
+    final SingleFlight flights = this.singleFlight;
+    if (flights == null) {
+      return call.execute();
+    }
+    return flights.execute(key, call, copy);
+  }
+
+  /**
+   * Enable or disable the coalescing of identical queries, which is enabled by default.
+   *
+   * If enabled, a call of {@link #count(Iterable, String, QueryLanguage) count},
+   * {@link #countExtra(Iterable, String, QueryLanguage) countExtra},
+   * {@link #find(Iterable, String, QueryLanguage, long, Optional, ResultOrder) find},
+   * {@link #frequency(Iterable, String, QueryLanguage, String) frequency} or
+   * {@link #validateQuery(Iterable, String, QueryLanguage) validateQuery} which is identical to a
+   * call that is currently executed does not execute the query again, but waits for the result of
+   * the running call. This is independent of the {@link #setQueryCache(QueryCache) query cache}.
+   * Calls after a change of a corpus never wait for a query on this corpus started before the
+   * change. Randomized find calls are never coalesced.
+   *
+   * @param enabled Whether identical concurrent queries should be executed only once.
+   */
+  public void setQueryCoalescing(boolean enabled) {
+    if (enabled) {
+      if (this.singleFlight == null) {
+        this.singleFlight = new SingleFlight();
+      }
+    } else {
+      this.singleFlight = null;
+    }
+  }
+
+  /**
+   * @return Whether identical concurrent queries are executed only once.
+   */
+  public boolean isQueryCoalescing() {
+    return this.singleFlight != null;
+  }
+
+  /**
+   * @return The number of calls which did not execute their query but waited for an identical
+   *         running call, since coalescing has been enabled.
+   */
+  public long getCoalescedQueryCount() {
+    final SingleFlight flights = this.singleFlight;
+    return flights == null ? 0 : flights.getCoalesced();
+  }
+
+  /**
+   * Use a scheduler which limits the number of concurrent native calls and admits waiting
+   * interactive calls (e.g. count, find and subgraph) before batch calls (e.g. frequency, import,
+   * export and updates).
+   *
+   * Calls which execute a query separately for each corpus acquire a slot for each native call.
+   *
+   * @param scheduler The scheduler to use or null to execute all calls immediately on the thread of
+   *        the caller.
+   */
+  public void setQueryScheduler(QueryScheduler scheduler) {
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * @return The scheduler for native calls or null if calls are executed immediately.
+   */
+  public QueryScheduler getQueryScheduler() {
+    return scheduler;
+  }
+
+  /**
+   * Execute a single native call on the corpus storage instance. The call waits for its admission
+   * by the {@link QueryScheduler}, if one has been set, and holds a lease on the instance while it
+   * is running. Preparing the arguments and decoding the results should happen outside of the
+   * call, so they neither occupy a slot of the scheduler nor delay {@link #close()}.
+   */
+  private <T> T scheduled(Priority priority, NativeCall<T> call) throws GraphANNISException {
+    final QueryScheduler s = this.scheduler;
+    if (s == null) {
+      return leased(call);
+    }
+    final Long deadline = callDeadline.get();
+    return s.execute(priority, deadline == null ? Long.MAX_VALUE : deadline, () -> leased(call));
+  }
+
+  private void scheduled(Priority priority, NativeAction action) throws GraphANNISException {
+    scheduled(priority, () -> {
+      action.execute();
+      return null;
+    });
+  }
+
+  /**
+   * Execute a call while holding a lease on the corpus storage instance, which prevents
+   * {@link #close()} from freeing the instance during the call.
+   */
+  private <T> T leased(NativeCall<T> call) throws GraphANNISException {
+    if (!leases.tryAcquire()) {
+      throw new GraphANNISException("Corpus storage has been closed already");
+    }
+    try {
+      return call.execute();
+    } finally {
+      leases.release();
+    }
+  }
+
+  /**
+   * Set the maximum time {@link #close()} waits for running native calls before it gives up. If
+   * calls are still running after this time, the native corpus storage is not freed by
+   * {@link #close()}, but when this corpus storage manager is garbage collected after the calls
+   * have finished. The default is 30 seconds.
+   *
+   * @param timeout The maximum time to wait for running calls.
+   */
+  public void setCloseTimeout(Duration timeout) {
+    this.closeTimeoutNanos = timeout.toNanos();
+  }
+
+  /**
+   * @return The number of native calls which are currently using the corpus storage.
+   */
+  public int getActiveCallCount() {
+    return leases.getActive();
+  }
+
+  /**
+   * Set the maximum number of worker threads for calls with a timeout. Since a native call can not
+   * be aborted, a worker stays busy until its call finishes, even if the caller has already given
+   * up waiting. Calls with a timeout are rejected with a {@link QueryRejectedException} while all
+   * workers are busy. The default is twice the number of available processors, but at least 4.
+   *
+   * @param maxWorkers The maximum number of workers.
+   */
+  public void setMaxTimeoutWorkers(int maxWorkers) {
+    if (maxWorkers <= 0) {
+      throw new IllegalArgumentException("Maximum number of workers must be positive");
+    }
+    synchronized (this) {
+      this.maxTimeoutWorkers = maxWorkers;
+      if (this.timeoutExecutor != null) {
+        this.timeoutExecutor.setMaximumPoolSize(maxWorkers);
+      }
+    }
+  }
+
+  /**
+   * Reject queries which exceeded the deadline of a call with a timeout at least
+   * {@code maxTimeouts} times, until the last timeout is longer ago than the given window. A
+   * rejected query throws a {@link QueryRejectedException} immediately instead of occupying
+   * another worker. By default, a query is rejected after 3 timeouts within 10 minutes.
+   *
+   * @param maxTimeouts The number of timeouts after which a query is rejected, or 0 to never reject
+   *        queries.
+   * @param window The time after the last timeout in which the query is rejected.
+   */
+  public void setTimeoutRejection(int maxTimeouts, Duration window) {
+    this.timeoutTracker =
+        maxTimeouts <= 0 ? null : new TimeoutTracker(maxTimeouts, window.toNanos());
+  }
+
+  private static QueryCache.Key queryShape(Iterable<String> corpusNames, String query,
+      QueryLanguage queryLanguage) {
+    return QueryCache.key("shape", corpusNames, query, queryLanguage);
+  }
+
+  /**
+   * A subgraph has no query, so its shape is the match and the size of the context around it.
+   */
+  private static QueryCache.Key subgraphShape(String corpusName, List<String> nodeIDs,
+      long ctxLeft, long ctxRight, Optional<String> segmentation) {
+    return QueryCache.key("subgraph-shape", Collections.singletonList(corpusName), "", null,
+        new ArrayList<>(nodeIDs), ctxLeft, ctxRight, segmentation);
+  }
+
+  /**
+   * Execute a call on a separate worker thread and wait at most for the given timeout. If the call
+   * finishes after the timeout, its result is passed to {@code disposeAbandoned}.
+   *
+   * Every way in which the call misses its deadline is recorded for the shape and reported as a
+   * {@link QueryTimeoutException}: waiting for the result for too long, a worker which only became
+   * available after the deadline, and a native call which was still waiting for its admission by
+   * the {@link QueryScheduler} when the deadline was reached.
+   */
+  private <T> T withTimeout(Duration timeout, QueryCache.Key shape, NativeCall<T> call,
+      Consumer<T> disposeAbandoned) throws GraphANNISException {
+
+    checkNotClosed();
+
+    final TimeoutTracker tracker = shape == null ? null : this.timeoutTracker;
+    if (tracker != null) {
+      tracker.checkNotRejected(shape);
+    }
+
+    final long timeoutNanos = timeout.toNanos();
+    final long deadline = QueryScheduler.deadlineAfter(System.nanoTime(), timeoutNanos);
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    try {
+      getTimeoutExecutor().execute(() -> {
+        if (deadline - System.nanoTime() <= 0) {
+          result.completeExceptionally(
+              new QueryTimeoutException("Call was not started before its deadline"));
+          return;
+        }
+        callDeadline.set(deadline);
+        try {
+          result.complete(call.execute());
+        } catch (Throwable ex) {
+          result.completeExceptionally(ex);
+        } finally {
+          callDeadline.remove();
+        }
+      });
+    } catch (RejectedExecutionException ex) {
+      if (getTimeoutExecutor().isShutdown()) {
+        throw new GraphANNISException("Corpus storage has been closed already", ex);
+      }
+      throw new QueryRejectedException("All " + maxTimeoutWorkers
+          + " workers for calls with a timeout are busy");
+    }
+
+    try {
+      T value = result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+      if (tracker != null) {
+        tracker.recordSuccess(shape);
+      }
+      return value;
+    } catch (TimeoutException ex) {
+      if (tracker != null) {
+        tracker.recordTimeout(shape);
+      }
+      abandon(result, disposeAbandoned);
+      throw new QueryTimeoutException("Call did not finish within " + timeout);
+    } catch (InterruptedException ex) {
+      abandon(result, disposeAbandoned);
+      Thread.currentThread().interrupt();
+      throw new GraphANNISException("Interrupted while waiting for the call", ex);
+    } catch (ExecutionException ex) {
+      final Throwable cause = ex.getCause();
+      if (cause instanceof QueryTimeoutException
+          || (cause instanceof QueryRejectedException && deadline - System.nanoTime() <= 0)) {
+        if (tracker != null) {
+          tracker.recordTimeout(shape);
+        }
+        if (cause instanceof QueryTimeoutException) {
+          throw (QueryTimeoutException) cause;
+        }
+        throw new QueryTimeoutException(
+            "Call was not admitted before its deadline: " + cause.getMessage());
+      } else if (cause instanceof GraphANNISException) {
+        throw (GraphANNISException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new GraphANNISException("Call failed", cause);
+    }
+  }
+
+  private static <T> void abandon(CompletableFuture<T> result, Consumer<T> disposeAbandoned) {
+    if (disposeAbandoned != null) {
+      // executed immediately if the call has finished in the meantime
+      result.thenAccept(value -> {
+        if (value != null) {
+          disposeAbandoned.accept(value);
+        }
+      });
+    }
+  }
+
+  private ThreadPoolExecutor getTimeoutExecutor() {
+    ThreadPoolExecutor executor = this.timeoutExecutor;
+    if (executor == null) {
+      synchronized (this) {
+        executor = this.timeoutExecutor;
+        if (executor == null) {
+          final AtomicInteger threadCounter = new AtomicInteger();
+          // no queue: a call is either started immediately or rejected
+          executor = new ThreadPoolExecutor(0, maxTimeoutWorkers, 60L, TimeUnit.SECONDS,
+              new SynchronousQueue<>(), r -> {
+                Thread t =
+                    new Thread(r, "graphANNIS-timeout-worker-" + threadCounter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+              });
+          this.timeoutExecutor = executor;
+        }
+      }
+    }
+    return executor;
+  }
+
+  /**
+   * Use a cache for the document graphs used by
+   * {@link #subgraphSnapshot(String, List, long, long, Optional) subgraphSnapshot}.
+   *
+   * Cached documents of a corpus are removed when the corpus is changed by this corpus storage
+   * manager. Changes made to the database directory by other processes are not detected.
+   *
+   * @param documentGraphCache The cache to use or null to disable caching.
+   */
+  public void setDocumentGraphCache(DocumentGraphCache documentGraphCache) {
+    this.documentGraphCache = documentGraphCache;
+  }
+
+  /**
+   * @return The cache for document graphs or null if caching is disabled.
+   */
+  public DocumentGraphCache getDocumentGraphCache() {
+    return documentGraphCache;
+  }
+
+  private void invalidateCache(String corpusName) {
+    final QueryCache cache = this.queryCache;
+    if (cache != null) {
+      if (corpusName == null) {
+        cache.invalidateAll();
+      } else {
+        cache.invalidate(corpusName);
+      }
+    }
+    final SingleFlight flights = this.singleFlight;
+    if (flights != null) {
+      flights.invalidate(corpusName);
+    }
+    final DocumentGraphCache documentCache = this.documentGraphCache;
+    if (documentCache != null) {
+      if (corpusName == null) {
+        documentCache.invalidateAll();
+      } else {
+        documentCache.invalidate(corpusName);
+      }
+    }
+  }
+
+  private static List<FrequencyTableEntry<String>> copyFrequencyTable(
+      List<FrequencyTableEntry<String>> table) {
+    List<FrequencyTableEntry<String>> result = new ArrayList<>(table.size());
+    for (FrequencyTableEntry<String> e : table) {
+      result.add(new FrequencyTableEntry<>(e.getTuple().clone(), e.getCount()));
+    }
+    return result;
+  }
+
   private void checkNotClosed() throws GraphANNISException {
-    if (this.instance.isClosed()) {
+    if (leases.isClosed() || this.instance.isClosed()) {
       throw (new GraphANNISException("Corpus storage has been closed already"));
     }
   }
 
+  /**
+   * Close the corpus storage and free its native resources.
+   *
+   * New calls are rejected with a {@link GraphANNISException} immediately, but calls which are
+   * already using the native corpus storage are allowed to finish first. If they do not finish
+   * within the timeout set with {@link #setCloseTimeout(Duration)}, this method returns without
+   * freeing the native corpus storage, which is freed when this object is garbage collected.
+   */
   @Override
   public void close() throws Exception {
-    this.instance.dispose();
+    final ExecutorService executor = this.timeoutExecutor;
+    if (executor != null) {
+      executor.shutdown();
+    }
+    if (leases.close(closeTimeoutNanos)) {
+      this.instance.dispose();
+    } else {
+      log.warn("{} native calls were still running when the corpus storage was closed, "
+          + "the corpus storage will be freed by the garbage collector", leases.getActive());
+    }
   }
 
 }
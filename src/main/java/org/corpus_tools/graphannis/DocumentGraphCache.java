@@ -0,0 +1,413 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.corpus_tools.graphannis.model.Component;
+import org.corpus_tools.graphannis.model.ComponentType;
+import org.corpus_tools.graphannis.model.Graph;
+import org.corpus_tools.graphannis.model.GraphSnapshot;
+
+/**
+ * A bounded cache for the graphs of whole documents, which is used by
+ * {@link CorpusStorageManager#subgraphSnapshot(String, List, long, long, java.util.Optional)} to
+ * create the context of several matches of the same document without calling the native library
+ * again.
+ *
+ * Each document is stored as a {@link GraphSnapshot} together with the order of its tokens and the
+ * range of tokens covered by each node. A subgraph contains all tokens in the context window of the
+ * matched nodes and all nodes overlapping with these tokens. Nodes which cover no token, like the
+ * corpus, document and data source nodes or spans without any coverage edge, have no position in
+ * the document and are included in every subgraph. The least recently used documents are evicted
+ * when the estimated size of all documents exceeds the maximum size.
+ *
+ * Documents are invalidated by the corpus storage manager whenever their corpus is updated,
+ * imported, deleted or unloaded.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class DocumentGraphCache {
+
+  public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+  private static final String SALT_PREFIX = "salt:/";
+
+  private static final Component TOKEN_ORDER = new Component(ComponentType.Ordering, "annis", "");
+
+  private final long maxSize;
+
+  /** Keys are lists of the corpus and document name. */
+  private final LinkedHashMap<List<String>, Document> entries =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  private long size;
+  private long generation;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long invalidations;
+
+  /**
+   * Create a new cache with a maximum size of 256 MB.
+   */
+  public DocumentGraphCache() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * Create a new cache.
+   *
+   * @param maxSize The maximum estimated size of all cached documents in bytes.
+   */
+  public DocumentGraphCache(long maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Maximum size must be positive");
+    }
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Get the name of the document all given nodes belong to.
+   *
+   * @param nodeIDs The node names.
+   * @return The name of the document or null if the nodes belong to different documents.
+   */
+  static String documentOf(List<String> nodeIDs) {
+    String result = null;
+    for (String nodeID : nodeIDs) {
+      int sep = nodeID.lastIndexOf('#');
+      if (sep <= 0) {
+        return null;
+      }
+      String doc = nodeID.substring(0, sep);
+      if (result == null) {
+        result = doc;
+      } else if (!result.equals(doc)) {
+        return null;
+      }
+    }
+    return result;
+  }
+
+  synchronized Document get(String corpusName, String documentName) {
+    Document d = entries.get(Arrays.asList(corpusName, documentName));
+    if (d == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return d;
+  }
+
+  /**
+   * The generation is increased on each invalidation. A document must only be added if the cache
+   * generation did not change while it was fetched, otherwise it could be outdated.
+   */
+  synchronized long getGeneration() {
+    return generation;
+  }
+
+  synchronized void put(String corpusName, String documentName, Document document,
+      long generationAtStart) {
+    if (generationAtStart != generation) {
+      return;
+    }
+    long documentSize = document.estimatedSize();
+    if (documentSize > maxSize) {
+      return;
+    }
+    Document old = entries.put(Arrays.asList(corpusName, documentName), document);
+    if (old != null) {
+      size -= old.estimatedSize();
+    }
+    size += documentSize;
+
+    Iterator<Document> it = entries.values().iterator();
+    while (size > maxSize && it.hasNext()) {
+      Document eldest = it.next();
+      it.remove();
+      size -= eldest.estimatedSize();
+      evictions++;
+    }
+  }
+
+  /**
+   * Remove all documents of the given corpus.
+   *
+   * @param corpusName The name of the corpus.
+   */
+  public synchronized void invalidate(String corpusName) {
+    generation++;
+    Iterator<Map.Entry<List<String>, Document>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<List<String>, Document> e = it.next();
+      if (e.getKey().get(0).equals(corpusName)) {
+        it.remove();
+        size -= e.getValue().estimatedSize();
+        invalidations++;
+      }
+    }
+  }
+
+  /**
+   * Remove all documents.
+   */
+  public synchronized void invalidateAll() {
+    generation++;
+    invalidations += entries.size();
+    entries.clear();
+    size = 0;
+  }
+
+  /**
+   * Remove all documents and reset the statistics.
+   */
+  public synchronized void clear() {
+    invalidateAll();
+    hits = 0;
+    misses = 0;
+    evictions = 0;
+    invalidations = 0;
+  }
+
+  /**
+   * @return The number of cached documents.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return The estimated size of all cached documents in bytes.
+   */
+  public synchronized long getEstimatedSize() {
+    return size;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @return The number of subgraphs created from a cached document.
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return The number of subgraphs for which the document had to be fetched.
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return The number of documents removed because the cache was full.
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return The number of documents removed because their corpus has been changed.
+   */
+  public synchronized long getInvalidations() {
+    return invalidations;
+  }
+
+  /**
+   * @return The ratio of lookups which found a cached document or 0 if there was no lookup yet.
+   */
+  public synchronized double getHitRatio() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0.0 : (double) hits / lookups;
+  }
+
+  /**
+   * The snapshot of a document graph with the token order and the token range of each node.
+   */
+  static final class Document {
+    private final GraphSnapshot graph;
+    private final Map<String, Integer> indexByName;
+    /** The first position of each token chain, followed by the total number of tokens. */
+    private final int[] chainStart;
+    /** The first and last token position covered by each node or -1 if it covers no token. */
+    private final int[] left;
+    private final int[] right;
+    private final long estimatedSize;
+
+    Document(GraphSnapshot graph) {
+      this.graph = graph;
+      final int nodeCount = graph.getNodeCount();
+
+      this.indexByName = new HashMap<>();
+      for (int i = 0; i < nodeCount; i++) {
+        String name = graph.getNodeName(i);
+        if (name != null) {
+          indexByName.put(stripSaltPrefix(name), i);
+        }
+      }
+
+      this.left = new int[nodeCount];
+      this.right = new int[nodeCount];
+      Arrays.fill(left, -1);
+      Arrays.fill(right, -1);
+      this.chainStart = orderTokens();
+
+      // 0 = not visited, 1 = in progress, 2 = done
+      byte[] state = new byte[nodeCount];
+      for (int i = 0; i < nodeCount; i++) {
+        coveredRange(i, state);
+      }
+
+      this.estimatedSize = graph.estimatedSize() + 4L * (chainStart.length + 2 * nodeCount)
+          + 48L * indexByName.size();
+    }
+
+    /**
+     * Assign the position in the token order to all tokens. Each text of the document forms a
+     * separate chain of tokens connected by the edges of the default ordering component.
+     *
+     * @return The start positions of the chains.
+     */
+    private int[] orderTokens() {
+      final int nodeCount = graph.getNodeCount();
+      final int ordering = graph.getComponentIndex(TOKEN_ORDER);
+
+      boolean[] hasPredecessor = new boolean[nodeCount];
+      if (ordering >= 0) {
+        for (int e = 0; e < graph.getEdgeCount(ordering); e++) {
+          hasPredecessor[graph.getEdgeTarget(ordering, e)] = true;
+        }
+      }
+
+      int[] starts = new int[nodeCount + 1];
+      int chains = 0;
+      int position = 0;
+      for (int i = 0; i < nodeCount; i++) {
+        if (hasPredecessor[i] || graph.getAnnotation(i, Graph.TOK) == null) {
+          continue;
+        }
+        starts[chains++] = position;
+        int token = i;
+        while (token >= 0 && left[token] < 0) {
+          left[token] = position;
+          right[token] = position;
+          position++;
+
+          int next = -1;
+          if (ordering >= 0 && graph.getOutgoingStart(ordering, token) < graph
+              .getOutgoingEnd(ordering, token)) {
+            next = graph.getEdgeTarget(ordering, graph.getOutgoingStart(ordering, token));
+          }
+          token = next;
+        }
+      }
+      starts[chains] = position;
+      return Arrays.copyOf(starts, chains + 1);
+    }
+
+    /**
+     * Compute the covered token range of a node from the ranges of the nodes it covers or
+     * dominates.
+     */
+    private void coveredRange(int node, byte[] state) {
+      if (state[node] != 0) {
+        return;
+      }
+      state[node] = 1;
+      if (left[node] < 0) {
+        List<Component> components = graph.getComponents();
+        for (int c = 0; c < components.size(); c++) {
+          ComponentType type = components.get(c).getType();
+          if (type != ComponentType.Coverage && type != ComponentType.Dominance) {
+            continue;
+          }
+          for (int e = graph.getOutgoingStart(c, node); e < graph.getOutgoingEnd(c, node); e++) {
+            int target = graph.getEdgeTarget(c, e);
+            coveredRange(target, state);
+            if (left[target] >= 0) {
+              if (left[node] < 0 || left[target] < left[node]) {
+                left[node] = left[target];
+              }
+              if (right[target] > right[node]) {
+                right[node] = right[target];
+              }
+            }
+          }
+        }
+      }
+      state[node] = 2;
+    }
+
+    private int chainOf(int position) {
+      int idx = Arrays.binarySearch(chainStart, position);
+      return idx >= 0 ? idx : -idx - 2;
+    }
+
+    /**
+     * Create the subgraph for the context of the given nodes.
+     *
+     * @return The subgraph or null if one of the nodes is not part of this document or covers no
+     *         token.
+     */
+    GraphSnapshot subgraph(List<String> nodeIDs, long ctxLeft, long ctxRight) {
+      final int windows = nodeIDs.size();
+      int[] from = new int[windows];
+      int[] to = new int[windows];
+      for (int w = 0; w < windows; w++) {
+        Integer idx = indexByName.get(stripSaltPrefix(nodeIDs.get(w)));
+        if (idx == null || left[idx] < 0) {
+          return null;
+        }
+        int chain = chainOf(left[idx]);
+        from[w] = (int) Math.max(chainStart[chain], left[idx] - ctxLeft);
+        to[w] = (int) Math.min(chainStart[chain + 1] - 1L, right[idx] + ctxRight);
+      }
+
+      final int nodeCount = graph.getNodeCount();
+      int[] included = new int[nodeCount];
+      int count = 0;
+      for (int i = 0; i < nodeCount; i++) {
+        if (left[i] < 0) {
+          // not part of any context window, but must not be dropped
+          included[count++] = i;
+          continue;
+        }
+        for (int w = 0; w < windows; w++) {
+          if (left[i] <= to[w] && right[i] >= from[w]) {
+            included[count++] = i;
+            break;
+          }
+        }
+      }
+      return graph.subset(Arrays.copyOf(included, count));
+    }
+
+    long estimatedSize() {
+      return estimatedSize;
+    }
+  }
+
+  private static String stripSaltPrefix(String nodeName) {
+    return nodeName.startsWith(SALT_PREFIX) ? nodeName.substring(SALT_PREFIX.length()) : nodeName;
+  }
+}
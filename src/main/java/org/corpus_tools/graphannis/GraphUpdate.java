@@ -22,9 +22,12 @@ import org.corpus_tools.graphannis.errors.GraphANNISException;
 /**
  * An API for applying atomic updates to a graph DB.
  * 
+ * The native memory of the update is freed when it is closed or, if this never happens, after the
+ * update became unreachable.
+ * 
  * @author Thomas Krause {@literal krauseto@hu-berlin.de}
  */
-public class GraphUpdate {
+public class GraphUpdate implements AutoCloseable {
 	private final CAPI.AnnisGraphUpdate instance;
 
 	public GraphUpdate() {
@@ -35,19 +38,34 @@ public class GraphUpdate {
 		return this.instance;
 	}
 
+	/**
+	 * Free the native memory of this update. It can't be applied afterwards.
+	 */
+	@Override
+	public void close() {
+		this.instance.dispose();
+	}
+
+	public boolean isClosed() {
+		return this.instance.isClosed();
+	}
+
 	public void addNode(String node_name, String node_type) throws GraphANNISException {
+		checkNotClosed();
 		AnnisErrorListRef err = new AnnisErrorListRef();
 		CAPI.annis_graphupdate_add_node(instance, node_name, node_type, err);
 		err.checkErrors();
 	}
 
 	public void addNode(String node_name) throws GraphANNISException {
+		checkNotClosed();
 		AnnisErrorListRef err = new AnnisErrorListRef();
 		CAPI.annis_graphupdate_add_node(instance, node_name, "node", err);
 		err.checkErrors();
 	}
 
 	public void deleteNode(String node_name) throws GraphANNISException {
+		checkNotClosed();
 		AnnisErrorListRef err = new AnnisErrorListRef();
 		CAPI.annis_graphupdate_delete_node(instance, node_name, err);
 		err.checkErrors();
@@ -55,12 +73,14 @@ public class GraphUpdate {
 
 	public void addNodeLabel(String node_name, String anno_ns, String anno_name, String anno_value)
 			throws GraphANNISException {
+		checkNotClosed();
 		AnnisErrorListRef err = new AnnisErrorListRef();
 		CAPI.annis_graphupdate_add_node_label(instance, node_name, anno_ns, anno_name, anno_value, err);
 		err.checkErrors();
 	}
 
 	public void deleteNodeLabel(String node_name, String anno_ns, String anno_name) throws GraphANNISException {
+		checkNotClosed();
 		AnnisErrorListRef err = new AnnisErrorListRef();
 		CAPI.annis_graphupdate_delete_node_label(instance, node_name, anno_ns, anno_name, err);
 		err.checkErrors();
@@ -68,6 +88,7 @@ public class GraphUpdate {
 
 	public void addEdge(String source_node, String target_node, String layer, String component_type,
 			String component_name) throws GraphANNISException {
+		checkNotClosed();
 		AnnisErrorListRef err = new AnnisErrorListRef();
 		CAPI.annis_graphupdate_add_edge(instance, source_node, target_node, layer, component_type, component_name, err);
 		err.checkErrors();
@@ -75,13 +96,15 @@ public class GraphUpdate {
 
 	public void deleteEdge(String source_node, String target_node, String layer, String component_type,
 			String component_name) throws GraphANNISException {
+		checkNotClosed();
 		AnnisErrorListRef err = new AnnisErrorListRef();
-		CAPI.annis_graphupdate_add_edge(instance, source_node, target_node, layer, component_type, component_name, err);
+		CAPI.annis_graphupdate_delete_edge(instance, source_node, target_node, layer, component_type, component_name, err);
 		err.checkErrors();
 	}
 
 	public void addEdgeLabel(String source_node, String target_node, String layer, String component_type,
 			String component_name, String anno_ns, String anno_name, String anno_value) throws GraphANNISException {
+		checkNotClosed();
 		AnnisErrorListRef err = new AnnisErrorListRef();
 		CAPI.annis_graphupdate_add_edge_label(instance, source_node, target_node, layer, component_type, component_name,
 				anno_ns, anno_name, anno_value, err);
@@ -90,9 +113,16 @@ public class GraphUpdate {
 
 	public void deleteEdgeLabel(String source_node, String target_node, String layer, String component_type,
 			String component_name, String anno_ns, String anno_name) throws GraphANNISException {
+		checkNotClosed();
 		AnnisErrorListRef err = new AnnisErrorListRef();
 		CAPI.annis_graphupdate_delete_edge_label(instance, source_node, target_node, layer, component_type,
 				component_name, anno_ns, anno_name, err);
 		err.checkErrors();
 	}
-}
\ No newline at end of file
+
+	private void checkNotClosed() throws GraphANNISException {
+		if (this.instance.isClosed()) {
+			throw new GraphANNISException("Graph update has been closed already");
+		}
+	}
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.corpus_tools.graphannis.capi.AnnisErrorListRef;
+import org.corpus_tools.graphannis.capi.CAPI;
+import org.corpus_tools.graphannis.errors.GraphANNISException;
+
+/**
+ * Records the events of a {@link GraphUpdate} in Java memory and transfers them to the native
+ * update in a single batch.
+ *
+ * Each string is only stored and encoded once, no matter how many events refer to it, and the
+ * events themselves are stored as indexes into this string table. When the events are flushed,
+ * all strings are encoded into a single block of native memory and the events are added to the
+ * native update without any further string conversion, using the same error list for all calls.
+ *
+ * If an auto-flush threshold is given, the events are flushed to the native update each time the
+ * number of recorded events reaches the threshold, which bounds the Java memory used by the
+ * builder. Otherwise, the events are only flushed when the update is applied with
+ * {@link CorpusStorageManager#applyUpdate(String, GraphUpdateBuilder)} or when {@link #build()}
+ * is called.
+ *
+ * This class is not thread-safe.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class GraphUpdateBuilder implements AutoCloseable {
+
+  private static final int ADD_NODE = 0;
+  private static final int DELETE_NODE = 1;
+  private static final int ADD_NODE_LABEL = 2;
+  private static final int DELETE_NODE_LABEL = 3;
+  private static final int ADD_EDGE = 4;
+  private static final int DELETE_EDGE = 5;
+  private static final int ADD_EDGE_LABEL = 6;
+  private static final int DELETE_EDGE_LABEL = 7;
+
+  /** Number of string arguments for each event type. */
+  private static final int[] ARITY = {2, 1, 4, 3, 5, 5, 8, 7};
+
+  private static final int NULL_STRING = -1;
+
+  private final int autoFlushThreshold;
+
+  private final Map<String, Integer> stringIndex = new HashMap<>();
+  private final List<String> strings = new ArrayList<>();
+  private long stringChars;
+
+  private int[] events = new int[1024];
+  private int eventsLength;
+  private int numberOfEvents;
+
+  private GraphUpdate update;
+  private long flushedEvents;
+
+  /**
+   * Create a new builder which only flushes the events when the update is applied.
+   */
+  public GraphUpdateBuilder() {
+    this(0);
+  }
+
+  /**
+   * Create a new builder.
+   *
+   * @param autoFlushThreshold Flush the recorded events to the native update when this number of
+   *        events has been recorded. If 0, the events are only flushed when the update is applied.
+   */
+  public GraphUpdateBuilder(int autoFlushThreshold) {
+    if (autoFlushThreshold < 0) {
+      throw new IllegalArgumentException("Auto-flush threshold must not be negative");
+    }
+    this.autoFlushThreshold = autoFlushThreshold;
+  }
+
+  public void addNode(String nodeName, String nodeType) throws GraphANNISException {
+    record(ADD_NODE, nodeName, nodeType);
+  }
+
+  public void addNode(String nodeName) throws GraphANNISException {
+    record(ADD_NODE, nodeName, "node");
+  }
+
+  public void deleteNode(String nodeName) throws GraphANNISException {
+    record(DELETE_NODE, nodeName);
+  }
+
+  public void addNodeLabel(String nodeName, String annoNs, String annoName, String annoValue)
+      throws GraphANNISException {
+    record(ADD_NODE_LABEL, nodeName, annoNs, annoName, annoValue);
+  }
+
+  public void deleteNodeLabel(String nodeName, String annoNs, String annoName)
+      throws GraphANNISException {
+    record(DELETE_NODE_LABEL, nodeName, annoNs, annoName);
+  }
+
+  public void addEdge(String sourceNode, String targetNode, String layer, String componentType,
+      String componentName) throws GraphANNISException {
+    record(ADD_EDGE, sourceNode, targetNode, layer, componentType, componentName);
+  }
+
+  public void deleteEdge(String sourceNode, String targetNode, String layer, String componentType,
+      String componentName) throws GraphANNISException {
+    record(DELETE_EDGE, sourceNode, targetNode, layer, componentType, componentName);
+  }
+
+  public void addEdgeLabel(String sourceNode, String targetNode, String layer,
+      String componentType, String componentName, String annoNs, String annoName,
+      String annoValue) throws GraphANNISException {
+    record(ADD_EDGE_LABEL, sourceNode, targetNode, layer, componentType, componentName, annoNs,
+        annoName, annoValue);
+  }
+
+  public void deleteEdgeLabel(String sourceNode, String targetNode, String layer,
+      String componentType, String componentName, String annoNs, String annoName)
+      throws GraphANNISException {
+    record(DELETE_EDGE_LABEL, sourceNode, targetNode, layer, componentType, componentName, annoNs,
+        annoName);
+  }
+
+  private void record(int type, String... arguments) throws GraphANNISException {
+    final int required = eventsLength + 1 + arguments.length;
+    if (required > events.length) {
+      events = Arrays.copyOf(events, Math.max(required, events.length * 2));
+    }
+    events[eventsLength++] = type;
+    for (String a : arguments) {
+      events[eventsLength++] = intern(a);
+    }
+    numberOfEvents++;
+
+    if (autoFlushThreshold > 0 && numberOfEvents >= autoFlushThreshold) {
+      flush();
+    }
+  }
+
+  private int intern(String s) {
+    if (s == null) {
+      return NULL_STRING;
+    }
+    Integer idx = stringIndex.get(s);
+    if (idx == null) {
+      idx = strings.size();
+      strings.add(s);
+      stringIndex.put(s, idx);
+      stringChars += s.length();
+    }
+    return idx;
+  }
+
+  /**
+   * Record all events of this builder, which have not been flushed yet, in another builder. The
+   * events of this builder are not changed.
+   *
+   * @param target The builder to add the events to.
+   * @throws GraphANNISException If the target builder could not flush its events.
+   */
+  void appendTo(GraphUpdateBuilder target) throws GraphANNISException {
+    final int[] mapped = new int[strings.size()];
+    for (int i = 0; i < mapped.length; i++) {
+      mapped[i] = target.intern(strings.get(i));
+    }
+    int pos = 0;
+    while (pos < eventsLength) {
+      final int type = events[pos];
+      final int end = pos + 1 + ARITY[type];
+      final int required = target.eventsLength + end - pos;
+      if (required > target.events.length) {
+        target.events = Arrays.copyOf(target.events, Math.max(required, target.events.length * 2));
+      }
+      target.events[target.eventsLength++] = type;
+      for (int a = pos + 1; a < end; a++) {
+        final int idx = events[a];
+        target.events[target.eventsLength++] = idx == NULL_STRING ? NULL_STRING : mapped[idx];
+      }
+      target.numberOfEvents++;
+      pos = end;
+    }
+    if (target.autoFlushThreshold > 0 && target.numberOfEvents >= target.autoFlushThreshold) {
+      target.flush();
+    }
+  }
+
+  /**
+   * @return The number of events which have been recorded but not yet flushed.
+   */
+  public int getPendingEvents() {
+    return numberOfEvents;
+  }
+
+  /**
+   * @return The number of events which have been flushed to the native update.
+   */
+  public long getFlushedEvents() {
+    return flushedEvents;
+  }
+
+  /**
+   * Estimate the number of bytes occupied by the recorded events, including the string table.
+   *
+   * @return The estimated size in bytes.
+   */
+  public long estimatedSize() {
+    // 2 bytes per character, plus the object and map entry overhead for each string
+    return 4L * eventsLength + 2 * stringChars + 64L * strings.size();
+  }
+
+  /**
+   * Transfer all recorded events to the native update.
+   *
+   * If the native update rejects an event, the remaining recorded events are discarded.
+   *
+   * @throws GraphANNISException If the native update rejected an event.
+   */
+  public void flush() throws GraphANNISException {
+    if (numberOfEvents == 0) {
+      return;
+    }
+    if (update == null) {
+      update = new GraphUpdate();
+    }
+    final CAPI.AnnisGraphUpdate u = update.getInstance();
+    if (u.isClosed()) {
+      throw new GraphANNISException("Graph update has been closed already");
+    }
+
+    // encode all strings into a single native memory block, the shared pointers keep it alive
+    final byte[][] encoded = new byte[strings.size()][];
+    long totalSize = 0;
+    for (int i = 0; i < encoded.length; i++) {
+      encoded[i] = Native.toByteArray(strings.get(i));
+      totalSize += encoded[i].length;
+    }
+    final Pointer[] ptr = new Pointer[encoded.length];
+    if (totalSize > 0) {
+      Memory block = new Memory(totalSize);
+      long offset = 0;
+      for (int i = 0; i < encoded.length; i++) {
+        block.write(offset, encoded[i], 0, encoded[i].length);
+        ptr[i] = block.share(offset, encoded[i].length);
+        offset += encoded[i].length;
+      }
+    }
+
+    try {
+      AnnisErrorListRef err = new AnnisErrorListRef();
+      int pos = 0;
+      while (pos < eventsLength) {
+        final int type = events[pos];
+        final int a = pos + 1;
+        switch (type) {
+          case ADD_NODE:
+            CAPI.annis_graphupdate_add_node(u, p(ptr, a), p(ptr, a + 1), err);
+            break;
+          case DELETE_NODE:
+            CAPI.annis_graphupdate_delete_node(u, p(ptr, a), err);
+            break;
+          case ADD_NODE_LABEL:
+            CAPI.annis_graphupdate_add_node_label(u, p(ptr, a), p(ptr, a + 1), p(ptr, a + 2),
+                p(ptr, a + 3), err);
+            break;
+          case DELETE_NODE_LABEL:
+            CAPI.annis_graphupdate_delete_node_label(u, p(ptr, a), p(ptr, a + 1), p(ptr, a + 2),
+                err);
+            break;
+          case ADD_EDGE:
+            CAPI.annis_graphupdate_add_edge(u, p(ptr, a), p(ptr, a + 1), p(ptr, a + 2),
+                p(ptr, a + 3), p(ptr, a + 4), err);
+            break;
+          case DELETE_EDGE:
+            CAPI.annis_graphupdate_delete_edge(u, p(ptr, a), p(ptr, a + 1), p(ptr, a + 2),
+                p(ptr, a + 3), p(ptr, a + 4), err);
+            break;
+          case ADD_EDGE_LABEL:
+            CAPI.annis_graphupdate_add_edge_label(u, p(ptr, a), p(ptr, a + 1), p(ptr, a + 2),
+                p(ptr, a + 3), p(ptr, a + 4), p(ptr, a + 5), p(ptr, a + 6), p(ptr, a + 7), err);
+            break;
+          case DELETE_EDGE_LABEL:
+            CAPI.annis_graphupdate_delete_edge_label(u, p(ptr, a), p(ptr, a + 1), p(ptr, a + 2),
+                p(ptr, a + 3), p(ptr, a + 4), p(ptr, a + 5), p(ptr, a + 6), err);
+            break;
+          default:
+            throw new IllegalStateException("Unknown event type " + type);
+        }
+        // the error list is only freed if an error occurred and can be reused afterwards
+        err.checkErrors();
+        pos = a + ARITY[type];
+      }
+      flushedEvents += numberOfEvents;
+    } finally {
+      clearBuffer();
+    }
+  }
+
+  private Pointer p(Pointer[] ptr, int eventPos) {
+    final int idx = events[eventPos];
+    return idx == NULL_STRING ? null : ptr[idx];
+  }
+
+  private void clearBuffer() {
+    stringIndex.clear();
+    strings.clear();
+    stringChars = 0;
+    eventsLength = 0;
+    numberOfEvents = 0;
+    if (events.length > 1024 * 1024) {
+      // do not keep a large buffer after a big batch
+      events = new int[1024];
+    }
+  }
+
+  /**
+   * Flush all recorded events and return the native update. The builder can be used for a new
+   * update afterwards and the caller is responsible for closing the returned update.
+   *
+   * @return The update with all recorded events.
+   * @throws GraphANNISException If the native update rejected an event.
+   */
+  public GraphUpdate build() throws GraphANNISException {
+    flush();
+    GraphUpdate result = update == null ? new GraphUpdate() : update;
+    update = null;
+    flushedEvents = 0;
+    return result;
+  }
+
+  /**
+   * Discard all recorded events and free the native update.
+   */
+  @Override
+  public void close() {
+    clearBuffer();
+    if (update != null) {
+      update.close();
+      update = null;
+    }
+    flushedEvents = 0;
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import org.corpus_tools.graphannis.model.QName;
+
+/**
+ * A single match as returned by
+ * {@link CorpusStorageManager#find(Iterable, String, CorpusStorageManager.QueryLanguage, long, java.util.Optional)
+ * find}.
+ *
+ * A match consists of one or more whitespace separated node identifiers. Each identifier has the
+ * form {@code [[ns::]name::]node}, where the optional prefix is the key of the matched annotation.
+ * The match string is parsed once and only the positions of the parts are stored; strings for the
+ * parts are only created when they are requested.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public final class Match {
+
+  /**
+   * Number of positions stored for each node: start of the identifier, end of the annotation
+   * namespace (or -1), start of the node name, position of the first '#' in the node name (or -1)
+   * and the end of the identifier.
+   */
+  private static final int STRIDE = 5;
+
+  private final String source;
+  private final int[] bounds;
+  private final int size;
+
+  private Match(String source, int[] bounds, int size) {
+    this.source = source;
+    this.bounds = bounds;
+    this.size = size;
+  }
+
+  /**
+   * Parse a match string.
+   *
+   * @param matchLine The match as returned by the corpus storage manager.
+   * @return The parsed match, which has no nodes if the string is null or empty.
+   */
+  public static Match parse(String matchLine) {
+    if (matchLine == null) {
+      return new Match("", new int[0], 0);
+    }
+    final int length = matchLine.length();
+    int[] bounds = new int[STRIDE];
+    int size = 0;
+    int pos = 0;
+    while (pos < length) {
+      if (isSeparator(matchLine.charAt(pos))) {
+        pos++;
+        continue;
+      }
+      final int start = pos;
+      int firstSep = -1;
+      int secondSep = -1;
+      int hash = -1;
+      while (pos < length) {
+        char c = matchLine.charAt(pos);
+        if (isSeparator(c)) {
+          break;
+        }
+        if (c == ':' && secondSep < 0 && pos + 1 < length && matchLine.charAt(pos + 1) == ':') {
+          if (firstSep < 0) {
+            firstSep = pos;
+          } else {
+            secondSep = pos;
+          }
+          // the separators belong to the prefix, so a '#' before them is not the document path
+          hash = -1;
+          pos += 2;
+          continue;
+        }
+        if (c == '#' && hash < 0) {
+          hash = pos;
+        }
+        pos++;
+      }
+
+      if ((size + 1) * STRIDE > bounds.length) {
+        bounds = Arrays.copyOf(bounds, bounds.length * 2);
+      }
+      int b = size * STRIDE;
+      bounds[b] = start;
+      if (secondSep >= 0) {
+        bounds[b + 1] = firstSep;
+        bounds[b + 2] = secondSep + 2;
+      } else if (firstSep >= 0) {
+        bounds[b + 1] = -1;
+        bounds[b + 2] = firstSep + 2;
+      } else {
+        bounds[b + 1] = -1;
+        bounds[b + 2] = start;
+      }
+      bounds[b + 3] = hash;
+      bounds[b + 4] = pos;
+      size++;
+    }
+    return new Match(matchLine, bounds, size);
+  }
+
+  /**
+   * @return True for the same whitespace characters as the regular expression {@code \s}.
+   */
+  static boolean isSeparator(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  /**
+   * @return The number of nodes of this match.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param i The position of the node in the match.
+   * @return The node name, e.g. "corpus/doc#node".
+   */
+  public String getNodeName(int i) {
+    int b = offset(i);
+    return source.substring(bounds[b + 2], bounds[b + 4]);
+  }
+
+  /**
+   * @return The names of all nodes of this match.
+   */
+  public List<String> getNodeNames() {
+    return new AbstractList<String>() {
+      @Override
+      public String get(int index) {
+        return getNodeName(index);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * @param i The position of the node in the match.
+   * @return True if the node identifier includes the key of the matched annotation.
+   */
+  public boolean hasAnnoKey(int i) {
+    int b = offset(i);
+    return bounds[b + 2] != bounds[b];
+  }
+
+  /**
+   * @param i The position of the node in the match.
+   * @return The namespace of the matched annotation or null if the identifier has none.
+   */
+  public String getAnnoNamespace(int i) {
+    int b = offset(i);
+    return bounds[b + 1] < 0 ? null : source.substring(bounds[b], bounds[b + 1]);
+  }
+
+  /**
+   * @param i The position of the node in the match.
+   * @return The name of the matched annotation or null if the identifier has none.
+   */
+  public String getAnnoName(int i) {
+    int b = offset(i);
+    if (bounds[b + 2] == bounds[b]) {
+      return null;
+    }
+    int nameStart = bounds[b + 1] < 0 ? bounds[b] : bounds[b + 1] + 2;
+    return source.substring(nameStart, bounds[b + 2] - 2);
+  }
+
+  /**
+   * @param i The position of the node in the match.
+   * @return The key of the matched annotation with an empty namespace if it has none, or null if
+   *         the identifier has no annotation key.
+   */
+  public QName getAnnoKey(int i) {
+    String name = getAnnoName(i);
+    if (name == null) {
+      return null;
+    }
+    String ns = getAnnoNamespace(i);
+    return new QName(ns == null ? "" : ns, name);
+  }
+
+  /**
+   * @param i The position of the node in the match.
+   * @return The part of the node name before the '#', which is the path of the document, or null
+   *         if the node name contains no '#'.
+   */
+  public String getDocumentPath(int i) {
+    int b = offset(i);
+    return bounds[b + 3] < 0 ? null : source.substring(bounds[b + 2], bounds[b + 3]);
+  }
+
+  private int offset(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+    return i * STRIDE;
+  }
+
+  @Override
+  public int hashCode() {
+    return source.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof Match)) {
+      return false;
+    }
+    return source.equals(((Match) obj).source);
+  }
+
+  /**
+   * @return The original match string.
+   */
+  @Override
+  public String toString() {
+    return source;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.corpus_tools.graphannis.CorpusStorageManager.QueryLanguage;
+import org.corpus_tools.graphannis.CorpusStorageManager.ResultOrder;
+import org.corpus_tools.graphannis.capi.CAPI;
+import org.corpus_tools.graphannis.errors.GraphANNISException;
+
+/**
+ * Iterates over the matches of a query without holding the complete result in memory.
+ *
+ * The matches are fetched from the corpus storage in pages of a fixed size and each match string
+ * is only decoded when it is requested with {@link #next()}. The cursor must be closed to release
+ * the native memory of the current page.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class MatchCursor implements Iterator<String>, AutoCloseable {
+
+  private final CorpusStorageManager storage;
+  private final CAPI.AnnisVec_AnnisCString corpusNames;
+  private final String query;
+  private final QueryLanguage queryLanguage;
+  private final ResultOrder order;
+  private final long pageSize;
+
+  private CAPI.AnnisVec_AnnisCString page;
+  private long pageLength;
+  private long posInPage;
+  private long nextOffset;
+  private boolean exhausted;
+
+  MatchCursor(CorpusStorageManager storage, CAPI.AnnisVec_AnnisCString corpusNames, String query,
+      QueryLanguage queryLanguage, ResultOrder order, long offset, long pageSize) {
+    if (pageSize <= 0) {
+      throw new IllegalArgumentException("Page size must be positive");
+    }
+    if (order == ResultOrder.Randomized) {
+      throw new IllegalArgumentException(
+          "A randomized result order is not stable and can not be paginated");
+    }
+    this.storage = storage;
+    this.corpusNames = corpusNames;
+    this.query = query;
+    this.queryLanguage = queryLanguage;
+    this.order = order;
+    this.pageSize = pageSize;
+    this.nextOffset = offset;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (posInPage < pageLength) {
+      return true;
+    }
+    if (exhausted) {
+      return false;
+    }
+    try {
+      fetchNextPage();
+    } catch (GraphANNISException ex) {
+      throw new RuntimeException(ex);
+    }
+    return posInPage < pageLength;
+  }
+
+  @Override
+  public String next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return CAPI.annis_vec_str_get(page, posInPage++);
+  }
+
+  private void fetchNextPage() throws GraphANNISException {
+    releasePage();
+
+    page = storage.findPage(corpusNames, query, queryLanguage, nextOffset, pageSize, order);
+    pageLength = CAPI.annis_vec_str_size(page).longValue();
+    posInPage = 0;
+    nextOffset += pageLength;
+
+    if (pageLength < pageSize) {
+      // the storage returned less than requested, there won't be any further matches
+      exhausted = true;
+    }
+  }
+
+  private void releasePage() {
+    if (page != null) {
+      page.dispose();
+      page = null;
+    }
+    pageLength = 0;
+    posInPage = 0;
+  }
+
+  @Override
+  public void close() {
+    releasePage();
+    exhausted = true;
+    corpusNames.dispose();
+  }
+}
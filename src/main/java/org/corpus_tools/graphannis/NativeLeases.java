@@ -0,0 +1,109 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counts the native calls which currently use a corpus storage, so that the storage is only freed
+ * when no call is using it anymore.
+ *
+ * Each native call acquires a lease before using the storage and releases it afterwards. Once
+ * {@link #close(long)} has been called, no new leases are given out and the caller waits until all
+ * existing leases have been released.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+class NativeLeases {
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition drained = lock.newCondition();
+
+  private int active;
+  private boolean closed;
+
+  /**
+   * @return True if the lease was acquired, false if the leases have been closed.
+   */
+  boolean tryAcquire() {
+    lock.lock();
+    try {
+      if (closed) {
+        return false;
+      }
+      active++;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void release() {
+    lock.lock();
+    try {
+      active--;
+      if (active == 0) {
+        drained.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stop giving out new leases and wait until all acquired leases have been released.
+   *
+   * @param timeoutNanos The maximum time to wait.
+   * @return True if all leases have been released, false if the timeout was reached first.
+   * @throws InterruptedException
+   */
+  boolean close(long timeoutNanos) throws InterruptedException {
+    lock.lock();
+    try {
+      closed = true;
+      long remaining = timeoutNanos;
+      while (active > 0) {
+        if (remaining <= 0) {
+          return false;
+        }
+        remaining = drained.awaitNanos(remaining);
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  boolean isClosed() {
+    lock.lock();
+    try {
+      return closed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return The number of currently acquired leases.
+   */
+  int getActive() {
+    lock.lock();
+    try {
+      return active;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import org.corpus_tools.graphannis.CorpusStorageManager.QueryLanguage;
+
+/**
+ * A bounded cache for the results of queries executed by a {@link CorpusStorageManager}.
+ *
+ * Results are identified by the set of corpora, the query with normalized whitespace, the query
+ * language and the remaining arguments of the query function. The least recently used entries are
+ * evicted when the total weight of all entries exceeds the maximum weight. The weight of an entry is
+ * one plus the number of matches or frequency table rows it contains.
+ *
+ * Entries are invalidated by the corpus storage manager whenever one of their corpora is updated,
+ * imported, deleted or unloaded. A cache instance can be shared by several corpus storage managers
+ * only if they use different database directories.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class QueryCache {
+
+  public static final long DEFAULT_MAX_WEIGHT = 100_000;
+
+  private final long maxWeight;
+
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, Set<Key>> keysByCorpus = new HashMap<>();
+
+  private long weight;
+  private long generation;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long invalidations;
+
+  /**
+   * Create a new cache with the default maximum weight.
+   */
+  public QueryCache() {
+    this(DEFAULT_MAX_WEIGHT);
+  }
+
+  /**
+   * Create a new cache.
+   *
+   * @param maxWeight The maximum total weight of all entries.
+   */
+  public QueryCache(long maxWeight) {
+    if (maxWeight <= 0) {
+      throw new IllegalArgumentException("Maximum weight must be positive");
+    }
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Create the key for a query result.
+   *
+   * @param operation The name of the query function.
+   * @param corpusNames The corpora the query is executed on.
+   * @param query The query as string, which is normalized.
+   * @param queryLanguage The query language of the query.
+   * @param arguments Additional arguments, which must implement {@code equals} and
+   *        {@code hashCode}.
+   * @return The key.
+   */
+  static Key key(String operation, Iterable<String> corpusNames, String query,
+      QueryLanguage queryLanguage, Object... arguments) {
+    TreeSet<String> corpora = new TreeSet<>();
+    for (String c : corpusNames) {
+      corpora.add(c);
+    }
+    return new Key(operation, new ArrayList<>(corpora), normalizeQuery(query), queryLanguage,
+        Arrays.asList(arguments));
+  }
+
+  /**
+   * Collapse all sequences of whitespace outside of string literals and regular expressions into a
+   * single space and remove leading and trailing whitespace.
+   */
+  static String normalizeQuery(String query) {
+    StringBuilder sb = new StringBuilder(query.length());
+    char literalEnd = 0;
+    boolean pendingSpace = false;
+    for (int i = 0; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (literalEnd != 0) {
+        sb.append(c);
+        if (c == '\\' && i + 1 < query.length()) {
+          sb.append(query.charAt(++i));
+        } else if (c == literalEnd) {
+          literalEnd = 0;
+        }
+      } else if (Character.isWhitespace(c)) {
+        pendingSpace = sb.length() > 0;
+      } else {
+        if (pendingSpace) {
+          sb.append(' ');
+          pendingSpace = false;
+        }
+        sb.append(c);
+        if (c == '"' || c == '/') {
+          literalEnd = c;
+        }
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Get a cached result.
+   *
+   * @return The result or null if it is not cached.
+   */
+  synchronized Object get(Key key) {
+    Entry e = entries.get(key);
+    if (e == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return e.value;
+  }
+
+  /**
+   * The generation is increased on each invalidation. A result must only be added if the cache
+   * generation did not change while it was computed, otherwise it could be outdated.
+   */
+  synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Add a result to the cache.
+   *
+   * @param key The key of the result.
+   * @param value The result, which must not be modified afterwards.
+   * @param generationAtStart The value of {@link #getGeneration()} before the result was computed.
+   */
+  synchronized void put(Key key, Object value, long generationAtStart) {
+    if (generationAtStart != generation) {
+      return;
+    }
+    long entryWeight = weigh(value);
+    if (entryWeight > maxWeight) {
+      return;
+    }
+    Entry old = entries.put(key, new Entry(value, entryWeight));
+    if (old != null) {
+      weight -= old.weight;
+    } else {
+      for (String corpus : key.corpora) {
+        keysByCorpus.computeIfAbsent(corpus, c -> new HashSet<>()).add(key);
+      }
+    }
+    weight += entryWeight;
+
+    Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+    while (weight > maxWeight && it.hasNext()) {
+      Map.Entry<Key, Entry> eldest = it.next();
+      it.remove();
+      removeFromIndex(eldest.getKey());
+      weight -= eldest.getValue().weight;
+      evictions++;
+    }
+  }
+
+  /**
+   * Remove all results of queries which include the given corpus.
+   *
+   * @param corpusName The name of the corpus.
+   */
+  public synchronized void invalidate(String corpusName) {
+    generation++;
+    Set<Key> keys = keysByCorpus.remove(corpusName);
+    if (keys != null) {
+      for (Key k : keys) {
+        Entry e = entries.remove(k);
+        if (e != null) {
+          weight -= e.weight;
+          invalidations++;
+          removeFromIndex(k);
+        }
+      }
+    }
+  }
+
+  /**
+   * Remove all results.
+   */
+  public synchronized void invalidateAll() {
+    generation++;
+    invalidations += entries.size();
+    clearEntries();
+  }
+
+  /**
+   * Remove all results and reset the statistics.
+   */
+  public synchronized void clear() {
+    generation++;
+    clearEntries();
+    hits = 0;
+    misses = 0;
+    evictions = 0;
+    invalidations = 0;
+  }
+
+  private void clearEntries() {
+    entries.clear();
+    keysByCorpus.clear();
+    weight = 0;
+  }
+
+  private void removeFromIndex(Key key) {
+    for (String corpus : key.corpora) {
+      Set<Key> keys = keysByCorpus.get(corpus);
+      if (keys != null) {
+        keys.remove(key);
+        if (keys.isEmpty()) {
+          keysByCorpus.remove(corpus);
+        }
+      }
+    }
+  }
+
+  private static long weigh(Object value) {
+    if (value instanceof Object[]) {
+      return 1 + ((Object[]) value).length;
+    } else if (value instanceof List) {
+      return 1 + ((List<?>) value).size();
+    }
+    return 1;
+  }
+
+  /**
+   * @return The number of cached results.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return The total weight of all cached results.
+   */
+  public synchronized long getWeight() {
+    return weight;
+  }
+
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+  /**
+   * @return The number of lookups which returned a cached result.
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return The number of lookups which had to execute the query.
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return The number of results removed because the cache was full.
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return The number of results removed because one of their corpora has been changed.
+   */
+  public synchronized long getInvalidations() {
+    return invalidations;
+  }
+
+  /**
+   * @return The ratio of lookups which returned a cached result or 0 if there was no lookup yet.
+   */
+  public synchronized double getHitRatio() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0.0 : (double) hits / lookups;
+  }
+
+  static final class Key {
+    private final String operation;
+    private final List<String> corpora;
+    private final String query;
+    private final QueryLanguage queryLanguage;
+    private final List<Object> arguments;
+    private final int hash;
+
+    private Key(String operation, List<String> corpora, String query,
+        QueryLanguage queryLanguage, List<Object> arguments) {
+      this.operation = operation;
+      this.corpora = Collections.unmodifiableList(corpora);
+      this.query = query;
+      this.queryLanguage = queryLanguage;
+      this.arguments = arguments;
+      this.hash = Objects.hash(operation, corpora, query, queryLanguage, arguments);
+    }
+
+    List<String> getCorpora() {
+      return corpora;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hash == other.hash && operation.equals(other.operation)
+          && corpora.equals(other.corpora) && query.equals(other.query)
+          && queryLanguage == other.queryLanguage && arguments.equals(other.arguments);
+    }
+
+    @Override
+    public String toString() {
+      return operation + corpora + " " + queryLanguage + " " + query + " " + arguments;
+    }
+  }
+
+  private static final class Entry {
+    private final Object value;
+    private final long weight;
+
+    private Entry(Object value, long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.corpus_tools.graphannis.CorpusStorageManager.NativeCall;
+import org.corpus_tools.graphannis.errors.GraphANNISException;
+import org.corpus_tools.graphannis.errors.QueryRejectedException;
+
+/**
+ * Limits the number of concurrent native calls of a {@link CorpusStorageManager} and decides which
+ * waiting call is executed next.
+ *
+ * The calls are executed on the thread of the caller, which blocks until the call is admitted.
+ * Waiting calls of a higher {@link Priority} are always admitted before calls of a lower priority,
+ * calls of the same priority in the order of their arrival. A call is rejected with a
+ * {@link QueryRejectedException} if the queue of its priority is full, or if it is still waiting
+ * when its deadline is reached. Calls whose deadline has passed are never admitted, so a saturated
+ * scheduler does not execute calls whose callers have already given up.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class QueryScheduler {
+
+  /**
+   * The priority classes of native calls.
+   */
+  public enum Priority {
+    /**
+     * Calls a user is waiting for, e.g. count, find, subgraph or listing the corpora.
+     */
+    Interactive,
+    /**
+     * Long running calls, e.g. frequency queries, imports, exports and updates.
+     */
+    Batch
+  }
+
+  private static final Priority[] PRIORITIES = Priority.values();
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final int maxConcurrent;
+  private final int[] maxQueued = new int[PRIORITIES.length];
+  private final long[] maxQueueNanos = new long[PRIORITIES.length];
+
+  private final List<ArrayDeque<Waiter>> queues = new ArrayList<>(PRIORITIES.length);
+
+  private int running;
+
+  private long executed;
+  private long rejected;
+  private long expired;
+
+  /**
+   * Create a new scheduler with unbounded queues.
+   *
+   * @param maxConcurrent The maximum number of native calls executed in parallel.
+   */
+  public QueryScheduler(int maxConcurrent) {
+    if (maxConcurrent <= 0) {
+      throw new IllegalArgumentException("Maximum number of concurrent calls must be positive");
+    }
+    this.maxConcurrent = maxConcurrent;
+    for (int p = 0; p < PRIORITIES.length; p++) {
+      queues.add(new ArrayDeque<>());
+      maxQueued[p] = Integer.MAX_VALUE;
+      maxQueueNanos[p] = Long.MAX_VALUE;
+    }
+  }
+
+  /**
+   * Set the maximum number of calls of a priority which may wait for their execution. Additional
+   * calls are rejected immediately.
+   *
+   * @param priority The priority.
+   * @param maxQueued The maximum number of waiting calls.
+   */
+  public void setMaxQueued(Priority priority, int maxQueued) {
+    if (maxQueued < 0) {
+      throw new IllegalArgumentException("Maximum number of queued calls must not be negative");
+    }
+    lock.lock();
+    try {
+      this.maxQueued[priority.ordinal()] = maxQueued;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Set the maximum time a call of a priority may wait for its execution before it is rejected.
+   *
+   * @param priority The priority.
+   * @param time The maximum waiting time.
+   * @param unit The unit of the waiting time.
+   */
+  public void setMaxQueueTime(Priority priority, long time, TimeUnit unit) {
+    if (time < 0) {
+      throw new IllegalArgumentException("Maximum waiting time must not be negative");
+    }
+    lock.lock();
+    try {
+      this.maxQueueNanos[priority.ordinal()] = unit.toNanos(time);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  <T> T execute(Priority priority, NativeCall<T> call) throws GraphANNISException {
+    return execute(priority, Long.MAX_VALUE, call);
+  }
+
+  /**
+   * Wait until the call is admitted and execute it.
+   *
+   * @param priority The priority of the call.
+   * @param deadline The value of {@link System#nanoTime()} after which the call must not be
+   *        admitted anymore, or {@link Long#MAX_VALUE} if the call has no deadline of its own.
+   * @param call The call.
+   */
+  <T> T execute(Priority priority, long deadline, NativeCall<T> call)
+      throws GraphANNISException {
+    acquire(priority, deadline);
+    try {
+      return call.execute();
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * Wait until the call is admitted.
+   *
+   * @param priority The priority of the call.
+   * @param deadline The value of {@link System#nanoTime()} after which the call must not be
+   *        admitted anymore, or {@link Long#MAX_VALUE} if the call has no deadline of its own.
+   */
+  void acquire(Priority priority, long deadline) throws GraphANNISException {
+    final int p = priority.ordinal();
+    final long now = System.nanoTime();
+    lock.lock();
+    try {
+      if (running < maxConcurrent && !hasWaiters()) {
+        running++;
+        executed++;
+        return;
+      }
+      if (queues.get(p).size() >= maxQueued[p]) {
+        rejected++;
+        throw new QueryRejectedException(
+            "Too many " + priority + " calls are waiting for their execution");
+      }
+
+      Waiter w = new Waiter(lock.newCondition(),
+          Math.min(deadline, deadlineAfter(now, maxQueueNanos[p])));
+      queues.get(p).add(w);
+      try {
+        while (!w.admitted) {
+          if (w.expired) {
+            expired++;
+            throw new QueryRejectedException(
+                "Waited too long for the execution of a " + priority + " call");
+          }
+          if (w.deadline == Long.MAX_VALUE) {
+            w.condition.await();
+          } else {
+            long remaining = w.deadline - System.nanoTime();
+            if (remaining <= 0) {
+              queues.get(p).remove(w);
+              expired++;
+              throw new QueryRejectedException(
+                  "Waited too long for the execution of a " + priority + " call");
+            }
+            w.condition.awaitNanos(remaining);
+          }
+        }
+        executed++;
+      } catch (InterruptedException ex) {
+        if (w.admitted) {
+          releaseLocked();
+        } else {
+          queues.get(p).remove(w);
+        }
+        Thread.currentThread().interrupt();
+        throw new GraphANNISException("Interrupted while waiting for the execution of a call", ex);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void release() {
+    lock.lock();
+    try {
+      releaseLocked();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void releaseLocked() {
+    running--;
+    final long now = System.nanoTime();
+    for (int p = 0; p < PRIORITIES.length && running < maxConcurrent; p++) {
+      Iterator<Waiter> it = queues.get(p).iterator();
+      while (it.hasNext() && running < maxConcurrent) {
+        Waiter w = it.next();
+        it.remove();
+        if (w.deadline != Long.MAX_VALUE && w.deadline - now <= 0) {
+          // wake up the waiter, which rejects itself
+          w.expired = true;
+          w.condition.signal();
+          continue;
+        }
+        w.admitted = true;
+        running++;
+        w.condition.signal();
+      }
+    }
+  }
+
+  /**
+   * @return The deadline after the given time, or {@link Long#MAX_VALUE} if there is no limit.
+   */
+  static long deadlineAfter(long now, long nanos) {
+    if (nanos == Long.MAX_VALUE || now + nanos < now) {
+      return Long.MAX_VALUE;
+    }
+    return now + nanos;
+  }
+
+  private boolean hasWaiters() {
+    for (ArrayDeque<Waiter> q : queues) {
+      if (!q.isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public int getMaxConcurrent() {
+    return maxConcurrent;
+  }
+
+  /**
+   * @return The number of calls which are currently executed.
+   */
+  public int getRunning() {
+    lock.lock();
+    try {
+      return running;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param priority The priority.
+   * @return The number of calls of the priority waiting for their execution.
+   */
+  public int getQueued(Priority priority) {
+    lock.lock();
+    try {
+      return queues.get(priority.ordinal()).size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return The number of admitted calls.
+   */
+  public long getExecuted() {
+    lock.lock();
+    try {
+      return executed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return The number of calls rejected because their queue was full.
+   */
+  public long getRejected() {
+    lock.lock();
+    try {
+      return rejected;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return The number of calls rejected because they reached their deadline while waiting.
+   */
+  public long getExpired() {
+    lock.lock();
+    try {
+      return expired;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static class Waiter {
+    private final Condition condition;
+    private final long deadline;
+    private boolean admitted;
+    private boolean expired;
+
+    private Waiter(Condition condition, long deadline) {
+      this.condition = condition;
+      this.deadline = deadline;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import org.corpus_tools.graphannis.CorpusStorageManager.NativeCall;
+import org.corpus_tools.graphannis.errors.GraphANNISException;
+
+/**
+ * Collapses concurrent executions of identical queries into a single native call.
+ *
+ * The first caller of a query executes it, all callers which arrive with the same key while the
+ * query is running wait for its result. Each caller copies the result on its own thread once the
+ * execution has finished, so the executing caller does not copy the result for all waiters. A
+ * waiter which is interrupted only stops waiting and the shared execution continues for all other
+ * callers.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+class SingleFlight {
+
+  private final ConcurrentHashMap<QueryCache.Key, CompletableFuture<Object>> inFlight =
+      new ConcurrentHashMap<>();
+
+  private final AtomicLong coalesced = new AtomicLong();
+
+  <T> T execute(QueryCache.Key key, NativeCall<T> call, UnaryOperator<T> copy)
+      throws GraphANNISException {
+    final CompletableFuture<Object> flight = new CompletableFuture<>();
+    final CompletableFuture<Object> existing = inFlight.putIfAbsent(key, flight);
+    if (existing != null) {
+      coalesced.incrementAndGet();
+      return await(existing, copy);
+    }
+
+    T result;
+    try {
+      result = call.execute();
+    } catch (GraphANNISException | RuntimeException | Error ex) {
+      inFlight.remove(key, flight);
+      flight.completeExceptionally(ex);
+      throw ex;
+    }
+    // callers arriving from now on start a new execution
+    inFlight.remove(key, flight);
+    flight.complete(result);
+    // the waiters copy the result on their own threads at the same time, so the shared result
+    // must not be modified and this caller gets a copy as well
+    return result == null ? null : copy.apply(result);
+  }
+
+  private static <T> T await(CompletableFuture<Object> flight, UnaryOperator<T> copy)
+      throws GraphANNISException {
+    try {
+      @SuppressWarnings("unchecked")
+      T result = (T) flight.get();
+      return result == null ? null : copy.apply(result);
+    } catch (InterruptedException ex) {
+      // only stop waiting, the shared execution is still needed by the other callers
+      Thread.currentThread().interrupt();
+      throw new GraphANNISException("Interrupted while waiting for an identical query", ex);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof GraphANNISException) {
+        throw (GraphANNISException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new GraphANNISException("Query execution failed", cause);
+    }
+  }
+
+  /**
+   * Make sure that calls of queries on the given corpus which arrive after this call do not join an
+   * execution which has been started before. The running executions are not affected.
+   */
+  void invalidate(String corpusName) {
+    if (corpusName == null) {
+      inFlight.clear();
+    } else {
+      inFlight.keySet().removeIf(k -> k.getCorpora().contains(corpusName));
+    }
+  }
+
+  long getCoalesced() {
+    return coalesced.get();
+  }
+}
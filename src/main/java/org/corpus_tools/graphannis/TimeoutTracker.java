@@ -0,0 +1,91 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.corpus_tools.graphannis.errors.QueryRejectedException;
+
+/**
+ * Remembers which queries recently exceeded their deadline, so that queries which time out
+ * repeatedly can be rejected before they occupy another worker.
+ *
+ * A query shape is the set of corpora, the normalized query and the query language, independent of
+ * the function (e.g. count or find) and its other arguments. A shape is rejected if it timed out at
+ * least {@code maxTimeouts} times and the last timeout is less than {@code window} nanoseconds ago.
+ * A call of the shape which finishes in time resets its record.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+class TimeoutTracker {
+
+  private static final int MAX_SHAPES = 1000;
+
+  private final int maxTimeouts;
+  private final long windowNanos;
+
+  private final LinkedHashMap<QueryCache.Key, Record> records =
+      new LinkedHashMap<QueryCache.Key, Record>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<QueryCache.Key, Record> eldest) {
+          return size() > MAX_SHAPES;
+        }
+      };
+
+  private long rejected;
+
+  TimeoutTracker(int maxTimeouts, long windowNanos) {
+    this.maxTimeouts = maxTimeouts;
+    this.windowNanos = windowNanos;
+  }
+
+  synchronized void checkNotRejected(QueryCache.Key shape) throws QueryRejectedException {
+    Record r = records.get(shape);
+    if (r == null || r.timeouts < maxTimeouts) {
+      return;
+    }
+    if (System.nanoTime() - r.lastTimeout < windowNanos) {
+      rejected++;
+      throw new QueryRejectedException("Query exceeded its deadline " + r.timeouts
+          + " times recently and is rejected: " + shape);
+    }
+    // give the query another chance after the window
+    records.remove(shape);
+  }
+
+  synchronized void recordTimeout(QueryCache.Key shape) {
+    Record r = records.get(shape);
+    if (r == null) {
+      r = new Record();
+      records.put(shape, r);
+    }
+    r.timeouts++;
+    r.lastTimeout = System.nanoTime();
+  }
+
+  synchronized void recordSuccess(QueryCache.Key shape) {
+    records.remove(shape);
+  }
+
+  synchronized long getRejected() {
+    return rejected;
+  }
+
+  private static class Record {
+    private int timeouts;
+    private long lastTimeout;
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.corpus_tools.graphannis.errors.GraphANNISException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies updates to the corpora of a {@link CorpusStorageManager} in the background.
+ *
+ * The updates of each corpus are applied in the order they have been submitted, by a single
+ * worker per corpus. Updates of different corpora are applied concurrently. While an update is
+ * applied, new updates for the same corpus are queued and the recorded events of all queued
+ * {@link GraphUpdateBuilder}s are merged and applied as a single update. If the merged update
+ * fails, the queued updates are applied one by one, so only the futures of the failing updates are
+ * completed exceptionally.
+ *
+ * A {@link GraphUpdate} or a builder which already flushed events to its native update can not be
+ * merged with other updates and is applied on its own.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class UpdateQueue implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(UpdateQueue.class);
+
+  private final CorpusStorageManager storage;
+  private final ExecutorService executor;
+  private final boolean ownsExecutor;
+  private final int maxEventsPerBatch;
+
+  /** Queues of all corpora with pending updates, guarded by this object. */
+  private final Map<String, CorpusQueue> queues = new HashMap<>();
+  private boolean closed;
+
+  private final AtomicLong appliedUpdates = new AtomicLong();
+  private final AtomicLong appliedBatches = new AtomicLong();
+
+  /**
+   * Create a new queue which merges at most 100,000 events into a single update.
+   *
+   * @param storage The corpus storage to apply the updates to.
+   */
+  public UpdateQueue(CorpusStorageManager storage) {
+    this(storage, 100_000);
+  }
+
+  /**
+   * Create a new queue.
+   *
+   * @param storage The corpus storage to apply the updates to.
+   * @param maxEventsPerBatch Stop merging queued updates when the merged update has at least this
+   *        number of events.
+   */
+  public UpdateQueue(CorpusStorageManager storage, int maxEventsPerBatch) {
+    this(storage, maxEventsPerBatch, Executors.newCachedThreadPool(new WorkerThreadFactory()),
+        true);
+  }
+
+  /**
+   * Create a new queue which uses an existing executor for the workers. The executor is not shut
+   * down when the queue is closed.
+   *
+   * @param storage The corpus storage to apply the updates to.
+   * @param maxEventsPerBatch Stop merging queued updates when the merged update has at least this
+   *        number of events.
+   * @param executor The executor for the workers of the corpora.
+   */
+  public UpdateQueue(CorpusStorageManager storage, int maxEventsPerBatch,
+      ExecutorService executor) {
+    this(storage, maxEventsPerBatch, executor, false);
+  }
+
+  private UpdateQueue(CorpusStorageManager storage, int maxEventsPerBatch,
+      ExecutorService executor, boolean ownsExecutor) {
+    if (maxEventsPerBatch <= 0) {
+      throw new IllegalArgumentException("Maximum number of events per batch must be positive");
+    }
+    this.storage = storage;
+    this.maxEventsPerBatch = maxEventsPerBatch;
+    this.executor = executor;
+    this.ownsExecutor = ownsExecutor;
+  }
+
+  /**
+   * Queue the recorded events of a builder for a corpus.
+   *
+   * The queue takes the ownership of the builder, which must not be used by the caller anymore.
+   *
+   * @param corpusName The name of the corpus to apply the update on.
+   * @param update The builder with the recorded events.
+   * @return A future which is completed when the update has been applied and persisted.
+   */
+  public CompletableFuture<Void> submit(String corpusName, GraphUpdateBuilder update) {
+    return enqueue(corpusName, new Pending(update, null));
+  }
+
+  /**
+   * Queue an update for a corpus. The update is not merged with other updates.
+   *
+   * The queue takes the ownership of the update and closes it after it has been applied.
+   *
+   * @param corpusName The name of the corpus to apply the update on.
+   * @param update The update.
+   * @return A future which is completed when the update has been applied and persisted.
+   */
+  public CompletableFuture<Void> submit(String corpusName, GraphUpdate update) {
+    return enqueue(corpusName, new Pending(null, update));
+  }
+
+  private CompletableFuture<Void> enqueue(String corpusName, Pending pending) {
+    synchronized (this) {
+      if (closed) {
+        pending.dispose();
+        pending.result.completeExceptionally(
+            new GraphANNISException("Update queue has been closed already"));
+        return pending.result;
+      }
+      CorpusQueue queue = queues.computeIfAbsent(corpusName, c -> new CorpusQueue());
+      queue.pending.add(pending);
+      if (!queue.scheduled) {
+        queue.scheduled = true;
+        try {
+          executor.execute(() -> drain(corpusName, queue));
+        } catch (RejectedExecutionException ex) {
+          queue.scheduled = false;
+          queue.pending.remove(pending);
+          if (queue.pending.isEmpty()) {
+            queues.remove(corpusName);
+          }
+          pending.dispose();
+          pending.result.completeExceptionally(ex);
+        }
+      }
+    }
+    return pending.result;
+  }
+
+  private void drain(String corpusName, CorpusQueue queue) {
+    List<Pending> batch = new ArrayList<>();
+    try {
+      while (true) {
+        batch.clear();
+        synchronized (this) {
+          if (queue.pending.isEmpty()) {
+            queue.scheduled = false;
+            queues.remove(corpusName, queue);
+            notifyAll();
+            return;
+          }
+          Pending first = queue.pending.poll();
+          batch.add(first);
+          if (first.isMergeable()) {
+            int events = first.builder.getPendingEvents();
+            while (events < maxEventsPerBatch && !queue.pending.isEmpty()
+                && queue.pending.peek().isMergeable()) {
+              Pending next = queue.pending.poll();
+              events += next.builder.getPendingEvents();
+              batch.add(next);
+            }
+          }
+        }
+        applyBatch(corpusName, batch);
+      }
+    } catch (Error | RuntimeException ex) {
+      // the worker dies, fail all updates which would otherwise never be applied
+      log.error("Worker for the updates of corpus {} failed", corpusName, ex);
+      List<Pending> failed = new ArrayList<>(batch);
+      synchronized (this) {
+        failed.addAll(queue.pending);
+        queue.pending.clear();
+        queue.scheduled = false;
+        queues.remove(corpusName, queue);
+        notifyAll();
+      }
+      for (Pending p : failed) {
+        if (p.result.completeExceptionally(ex)) {
+          p.dispose();
+        }
+      }
+      throw ex;
+    }
+  }
+
+  private void applyBatch(String corpusName, List<Pending> batch) {
+    if (batch.size() > 1) {
+      try (GraphUpdateBuilder merged = new GraphUpdateBuilder()) {
+        for (Pending p : batch) {
+          p.builder.appendTo(merged);
+        }
+        storage.applyUpdate(corpusName, merged);
+        appliedBatches.incrementAndGet();
+        for (Pending p : batch) {
+          p.dispose();
+          appliedUpdates.incrementAndGet();
+          p.result.complete(null);
+        }
+        return;
+      } catch (GraphANNISException | RuntimeException ex) {
+        // the failed update is atomic, find out which of the updates caused the error
+        log.debug("Merged update of {} updates for corpus {} failed, applying them one by one",
+            batch.size(), corpusName, ex);
+      }
+    }
+    for (Pending p : batch) {
+      try {
+        if (p.update != null) {
+          storage.applyUpdate(corpusName, p.update);
+        } else {
+          storage.applyUpdate(corpusName, p.builder);
+        }
+        appliedBatches.incrementAndGet();
+        appliedUpdates.incrementAndGet();
+        p.result.complete(null);
+      } catch (GraphANNISException | RuntimeException ex) {
+        p.result.completeExceptionally(ex);
+      } finally {
+        p.dispose();
+      }
+    }
+  }
+
+  /**
+   * @return The number of updates which have been applied successfully.
+   */
+  public long getAppliedUpdates() {
+    return appliedUpdates.get();
+  }
+
+  /**
+   * @return The number of native updates which have been applied successfully. The difference to
+   *         {@link #getAppliedUpdates()} is the number of updates saved by merging.
+   */
+  public long getAppliedBatches() {
+    return appliedBatches.get();
+  }
+
+  /**
+   * @return The number of updates which have been submitted but not applied yet.
+   */
+  public synchronized int getPendingUpdates() {
+    int result = 0;
+    for (CorpusQueue q : queues.values()) {
+      result += q.pending.size();
+    }
+    return result;
+  }
+
+  /**
+   * Stop accepting new updates and wait until all queued updates have been applied.
+   *
+   * If the calling thread is interrupted while waiting, this function returns early with the
+   * interrupt flag set and the remaining updates are still applied in the background.
+   */
+  @Override
+  public void close() {
+    try {
+      synchronized (this) {
+        closed = true;
+        while (!queues.isEmpty()) {
+          wait();
+        }
+      }
+      if (ownsExecutor) {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      if (ownsExecutor) {
+        executor.shutdown();
+      }
+    }
+  }
+
+  private static class CorpusQueue {
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    private boolean scheduled;
+  }
+
+  private static class Pending {
+    private final GraphUpdateBuilder builder;
+    private final GraphUpdate update;
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+    private Pending(GraphUpdateBuilder builder, GraphUpdate update) {
+      this.builder = builder;
+      this.update = update;
+    }
+
+    private boolean isMergeable() {
+      return builder != null && builder.getFlushedEvents() == 0;
+    }
+
+    private void dispose() {
+      if (builder != null) {
+        builder.close();
+      }
+      if (update != null) {
+        update.close();
+      }
+    }
+  }
+
+  private static class WorkerThreadFactory implements ThreadFactory {
+
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, "graphANNIS-update-worker-" + threadCounter.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.corpus_tools.graphannis.errors.GraphANNISException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams an unbounded number of update events into a single corpus.
+ *
+ * The events are collected in a {@link GraphUpdateBuilder} and applied as a separate update
+ * whenever the number of collected events or their estimated size reaches the configured limit.
+ * This keeps the memory used for an update bounded, no matter how many events are added in total.
+ * In contrast to a single {@link GraphUpdate}, the session is not atomic: if applying a chunk
+ * fails, all previous chunks remain applied.
+ *
+ * Call {@link #finish()} to apply the remaining events. Closing the session without finishing it
+ * discards all events which have not been applied yet.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class UpdateSession implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(UpdateSession.class);
+
+  private final CorpusStorageManager storage;
+  private final String corpusName;
+  private final int maxEventsPerChunk;
+  private final long maxBytesPerChunk;
+  private final GraphUpdateBuilder builder = new GraphUpdateBuilder();
+
+  private Consumer<Progress> progressListener;
+
+  private final long startTime = System.nanoTime();
+  private long appliedEvents;
+  private long appliedChunks;
+  private long applyNanos;
+  private boolean closed;
+
+  UpdateSession(CorpusStorageManager storage, String corpusName, int maxEventsPerChunk,
+      long maxBytesPerChunk) {
+    if (maxEventsPerChunk <= 0) {
+      throw new IllegalArgumentException("Maximum number of events per chunk must be positive");
+    }
+    if (maxBytesPerChunk <= 0) {
+      throw new IllegalArgumentException("Maximum size of a chunk must be positive");
+    }
+    this.storage = storage;
+    this.corpusName = corpusName;
+    this.maxEventsPerChunk = maxEventsPerChunk;
+    this.maxBytesPerChunk = maxBytesPerChunk;
+  }
+
+  /**
+   * Set a listener which is called after each applied chunk.
+   *
+   * @param progressListener The listener or null to remove it.
+   */
+  public void setProgressListener(Consumer<Progress> progressListener) {
+    this.progressListener = progressListener;
+  }
+
+  public String getCorpusName() {
+    return corpusName;
+  }
+
+  public void addNode(String nodeName, String nodeType) throws GraphANNISException {
+    checkNotClosed();
+    builder.addNode(nodeName, nodeType);
+    applyIfFull();
+  }
+
+  public void addNode(String nodeName) throws GraphANNISException {
+    checkNotClosed();
+    builder.addNode(nodeName);
+    applyIfFull();
+  }
+
+  public void deleteNode(String nodeName) throws GraphANNISException {
+    checkNotClosed();
+    builder.deleteNode(nodeName);
+    applyIfFull();
+  }
+
+  public void addNodeLabel(String nodeName, String annoNs, String annoName, String annoValue)
+      throws GraphANNISException {
+    checkNotClosed();
+    builder.addNodeLabel(nodeName, annoNs, annoName, annoValue);
+    applyIfFull();
+  }
+
+  public void deleteNodeLabel(String nodeName, String annoNs, String annoName)
+      throws GraphANNISException {
+    checkNotClosed();
+    builder.deleteNodeLabel(nodeName, annoNs, annoName);
+    applyIfFull();
+  }
+
+  public void addEdge(String sourceNode, String targetNode, String layer, String componentType,
+      String componentName) throws GraphANNISException {
+    checkNotClosed();
+    builder.addEdge(sourceNode, targetNode, layer, componentType, componentName);
+    applyIfFull();
+  }
+
+  public void deleteEdge(String sourceNode, String targetNode, String layer, String componentType,
+      String componentName) throws GraphANNISException {
+    checkNotClosed();
+    builder.deleteEdge(sourceNode, targetNode, layer, componentType, componentName);
+    applyIfFull();
+  }
+
+  public void addEdgeLabel(String sourceNode, String targetNode, String layer,
+      String componentType, String componentName, String annoNs, String annoName,
+      String annoValue) throws GraphANNISException {
+    checkNotClosed();
+    builder.addEdgeLabel(sourceNode, targetNode, layer, componentType, componentName, annoNs,
+        annoName, annoValue);
+    applyIfFull();
+  }
+
+  public void deleteEdgeLabel(String sourceNode, String targetNode, String layer,
+      String componentType, String componentName, String annoNs, String annoName)
+      throws GraphANNISException {
+    checkNotClosed();
+    builder.deleteEdgeLabel(sourceNode, targetNode, layer, componentType, componentName, annoNs,
+        annoName);
+    applyIfFull();
+  }
+
+  private void applyIfFull() throws GraphANNISException {
+    if (builder.getPendingEvents() >= maxEventsPerChunk
+        || builder.estimatedSize() >= maxBytesPerChunk) {
+      applyChunk();
+    }
+  }
+
+  private void applyChunk() throws GraphANNISException {
+    final int events = builder.getPendingEvents();
+    if (events == 0) {
+      return;
+    }
+    final long chunkStart = System.nanoTime();
+    storage.applyUpdate(corpusName, builder);
+    final long chunkNanos = System.nanoTime() - chunkStart;
+
+    appliedEvents += events;
+    appliedChunks++;
+    applyNanos += chunkNanos;
+
+    Progress progress = getProgress(events, chunkNanos);
+    log.debug("Applied chunk {} with {} events to corpus {} ({} events/s)", appliedChunks, events,
+        corpusName, (long) progress.getEventsPerSecond());
+    if (progressListener != null) {
+      progressListener.accept(progress);
+    }
+  }
+
+  /**
+   * Apply all remaining events and close the session.
+   *
+   * @return The final progress.
+   * @throws GraphANNISException
+   */
+  public Progress finish() throws GraphANNISException {
+    checkNotClosed();
+    try {
+      applyChunk();
+      return getProgress();
+    } finally {
+      close();
+    }
+  }
+
+  /**
+   * @return The progress of the session so far.
+   */
+  public Progress getProgress() {
+    return getProgress(0, 0);
+  }
+
+  private Progress getProgress(int lastChunkEvents, long lastChunkNanos) {
+    return new Progress(appliedEvents, appliedChunks, builder.getPendingEvents(),
+        System.nanoTime() - startTime, applyNanos, lastChunkEvents, lastChunkNanos);
+  }
+
+  /**
+   * Discard all events which have not been applied yet.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    builder.close();
+  }
+
+  private void checkNotClosed() throws GraphANNISException {
+    if (closed) {
+      throw new GraphANNISException("Update session has been closed already");
+    }
+  }
+
+  /**
+   * The progress of an update session.
+   */
+  public static class Progress {
+    private final long appliedEvents;
+    private final long appliedChunks;
+    private final long pendingEvents;
+    private final long elapsedNanos;
+    private final long applyNanos;
+    private final int lastChunkEvents;
+    private final long lastChunkNanos;
+
+    private Progress(long appliedEvents, long appliedChunks, long pendingEvents,
+        long elapsedNanos, long applyNanos, int lastChunkEvents, long lastChunkNanos) {
+      this.appliedEvents = appliedEvents;
+      this.appliedChunks = appliedChunks;
+      this.pendingEvents = pendingEvents;
+      this.elapsedNanos = elapsedNanos;
+      this.applyNanos = applyNanos;
+      this.lastChunkEvents = lastChunkEvents;
+      this.lastChunkNanos = lastChunkNanos;
+    }
+
+    /**
+     * @return The number of events which have been applied to the corpus.
+     */
+    public long getAppliedEvents() {
+      return appliedEvents;
+    }
+
+    /**
+     * @return The number of chunks which have been applied to the corpus.
+     */
+    public long getAppliedChunks() {
+      return appliedChunks;
+    }
+
+    /**
+     * @return The number of events which have been added but not applied yet.
+     */
+    public long getPendingEvents() {
+      return pendingEvents;
+    }
+
+    /**
+     * @return The time since the session was started.
+     */
+    public long getElapsed(TimeUnit unit) {
+      return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return The time spent applying chunks to the corpus.
+     */
+    public long getApplyTime(TimeUnit unit) {
+      return unit.convert(applyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return The number of applied events per second since the session was started.
+     */
+    public double getEventsPerSecond() {
+      return elapsedNanos == 0 ? 0.0 : appliedEvents * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return The number of events per second while applying the last chunk, or 0 if this
+     *         progress was not reported for a chunk.
+     */
+    public double getLastChunkEventsPerSecond() {
+      return lastChunkNanos == 0 ? 0.0 : lastChunkEvents * 1e9 / lastChunkNanos;
+    }
+
+    @Override
+    public String toString() {
+      return appliedEvents + " events in " + appliedChunks + " chunks applied ("
+          + (long) getEventsPerSecond() + " events/s), " + pendingEvents + " pending";
+    }
+  }
+}
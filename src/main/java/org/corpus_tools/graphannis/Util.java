@@ -4,15 +4,23 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class Util {
-    /** Takes a match identifier (which includes the matched annotation name) and returns the node name. */
+    /**
+     * Takes a match identifier (which includes the matched annotation name) and returns the node name.
+     *
+     * This behaves like splitting the match at whitespace with {@code String.split("\\s+")}: an
+     * empty string and a string with leading whitespace produce an empty first node name.
+     * {@link Match#parse(String)} skips these empty parts instead.
+     *
+     * @see Match#parse(String)
+     */
     public static List<String> nodeNamesFromMatch(String matchLine) {
         List<String> result = new ArrayList<>();
-        if(matchLine != null) {
-            String[] matches = matchLine.split("\\s+");
-            for (String m : matches) {
-                String[] elements = m.split("::", 3);
-                result.add(elements[elements.length-1]);
+        if (matchLine != null) {
+            Match m = Match.parse(matchLine);
+            if (matchLine.isEmpty() || (m.size() > 0 && Match.isSeparator(matchLine.charAt(0)))) {
+                result.add("");
             }
+            result.addAll(m.getNodeNames());
         }
         return result;
     }
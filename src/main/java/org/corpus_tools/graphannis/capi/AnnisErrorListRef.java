@@ -8,14 +8,19 @@ import org.corpus_tools.graphannis.errors.SetLoggerError;
 
 import com.sun.jna.Memory;
 import com.sun.jna.Native;
-import com.sun.jna.NativeLong;
 import com.sun.jna.Pointer;
 import com.sun.jna.PointerType;
 
 
-public class AnnisErrorListRef extends PointerType {
+public class AnnisErrorListRef extends PointerType implements AutoCloseable {
     
     private final Memory memPtr = new Memory(Native.POINTER_SIZE);
+
+    /**
+     * Only set when an error list has been seen, since most calls don't produce any error and
+     * registering each of them with the cleaner would be wasted work.
+     */
+    private NativeCleaner.Cleanable cleanable;
     
     public AnnisErrorListRef() {
         this(null);
@@ -26,7 +31,33 @@ public class AnnisErrorListRef extends PointerType {
         setValue(value);
     }
 
+    /**
+     * Make sure a non-null error list is freed by the cleaner if this object is never closed.
+     */
+    private synchronized void registerIfNeeded(Pointer value) {
+        if (cleanable == null && value != null && value != Pointer.NULL) {
+            // the error list is written by the native code, thus the free action has to read the
+            // pointer from the referenced memory
+            final Memory m = memPtr;
+            this.cleanable = NativeCleaner.register(this, () -> freeErrorList(m));
+        }
+    }
+
+    /**
+     * Throw an exception if the native code reported any error. The error list is freed
+     * afterwards, so this object can be reused for another call.
+     * 
+     * @throws GraphANNISException
+     */
     public void checkErrors() throws GraphANNISException {
+        try {
+            throwErrors();
+        } finally {
+            close();
+        }
+    }
+
+    private void throwErrors() throws GraphANNISException {
         if (getValue() != Pointer.NULL) {
             long num_of_errors = CAPI.annis_error_size(getValue()).longValue();
             if (num_of_errors > 0) {
@@ -35,10 +66,10 @@ public class AnnisErrorListRef extends PointerType {
                 // is the main exception
                 GraphANNISException cause = null;
                 for (long i = num_of_errors - 1; i >= 0; i--) {
-                    String msg = CAPI.annis_error_get_msg(getValue(), new NativeLong(i));
+                    String msg = CAPI.annis_error_get_msg(getValue(), i);
 
                     // TODO: map known kinds to more specialized exceptions
-                    String kind = CAPI.annis_error_get_kind(getValue(), new NativeLong(i));
+                    String kind = CAPI.annis_error_get_kind(getValue(), i);
                     
                     if("SetLoggerError".equals(kind)) {
                         cause = new SetLoggerError(msg, cause);
@@ -62,27 +93,43 @@ public class AnnisErrorListRef extends PointerType {
     
     public void setValue(Pointer value) {
         getPointer().setPointer(0, value);
+        registerIfNeeded(value);
     }
     
     public Pointer getValue() {
         if(memPtr.valid()) {
-            return memPtr.getPointer(0);
+            Pointer value = memPtr.getPointer(0);
+            registerIfNeeded(value);
+            return value;
         }
         return null;
     }
 
     public synchronized void dispose() {
-        Pointer val = getValue();
-        if (val != Pointer.NULL) {
-            CAPI.annis_free(val);
-            setValue(null);
-        }   
+        freeErrorList(memPtr);
     }
 
+    /**
+     * Free the current error list and unregister it from the cleaner. Errors of later calls, which
+     * reuse this object, are still freed by {@link #checkErrors()} or {@link #dispose()}.
+     */
     @Override
-    protected void finalize() throws Throwable {
+    public synchronized void close() {
         this.dispose();
-        super.finalize();
+        if (this.cleanable != null) {
+            this.cleanable.clean();
+            this.cleanable = null;
+        }
+    }
+
+    private static void freeErrorList(Memory m) {
+        synchronized (m) {
+            Pointer val = m.getPointer(0);
+            if (val != Pointer.NULL) {
+                m.setPointer(0, null);
+                CAPI.annis_free(val);
+            }
+        }
     }
 
 }
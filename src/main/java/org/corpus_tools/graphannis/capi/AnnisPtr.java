@@ -15,32 +15,51 @@
  */
 package org.corpus_tools.graphannis.capi;
 
+import com.sun.jna.FromNativeContext;
 import com.sun.jna.Pointer;
 import com.sun.jna.PointerType;
 
 /**
+ * A pointer to native memory owned by graphANNIS, which is freed with {@code annis_free}.
+ *
+ * The memory is freed when {@link #dispose()} is called or, if this never happens, after this
+ * object became unreachable.
  *
  * @author thomas
  */
-public class AnnisPtr extends PointerType {
-  
-  public synchronized void dispose()
-  {
-    try {
-      if (this.getPointer() != Pointer.NULL)
-      {
-        CAPI.annis_free(this.getPointer());
-      }
-    } finally {
-      this.setPointer(Pointer.NULL);
+public class AnnisPtr extends PointerType implements AutoCloseable {
+
+  private NativeCleaner.Cleanable cleanable;
+
+  @Override
+  public Object fromNative(Object nativeValue, FromNativeContext context) {
+    Object result = super.fromNative(nativeValue, context);
+    if (result instanceof AnnisPtr) {
+      AnnisPtr ptr = (AnnisPtr) result;
+      Pointer p = ptr.getPointer();
+      ptr.cleanable = NativeCleaner.register(ptr, () -> CAPI.annis_free(p));
+    }
+    return result;
+  }
+
+  public synchronized void dispose() {
+    Pointer p = this.getPointer();
+    this.setPointer(Pointer.NULL);
+    if (cleanable != null) {
+      cleanable.clean();
+      cleanable = null;
+    } else if (p != Pointer.NULL) {
+      CAPI.annis_free(p);
     }
   }
 
+  public synchronized boolean isClosed() {
+    return this.getPointer() == Pointer.NULL;
+  }
+
   @Override
-  protected void finalize() throws Throwable
-  {
+  public void close() {
     this.dispose();
-    super.finalize();
   }
-  
+
 }
@@ -14,6 +14,7 @@
 
 package org.corpus_tools.graphannis.capi;
 
+import com.sun.jna.FromNativeContext;
 import com.sun.jna.Library;
 import com.sun.jna.Native;
 import com.sun.jna.NativeLong;
@@ -27,21 +28,35 @@ public class CAPI implements Library {
     Native.register(CAPI.class, "graphannis");
   }
 
-  public static class AnnisCorpusStorage extends PointerType {
+  public static class AnnisCorpusStorage extends PointerType implements AutoCloseable {
+
+    private NativeCleaner.Cleanable cleanable;
+
+    @Override
+    public Object fromNative(Object nativeValue, FromNativeContext context) {
+      Object result = super.fromNative(nativeValue, context);
+      if (result instanceof AnnisCorpusStorage) {
+        AnnisCorpusStorage cs = (AnnisCorpusStorage) result;
+        Pointer p = cs.getPointer();
+        cs.cleanable = NativeCleaner.register(cs, () -> CAPI.annis_cs_free(p));
+      }
+      return result;
+    }
+
     public synchronized void dispose() {
-      try {
-        if (this.getPointer() != Pointer.NULL) {
-          CAPI.annis_cs_free(this.getPointer());
-        }
-      } finally {
-        this.setPointer(Pointer.NULL);
+      Pointer p = this.getPointer();
+      this.setPointer(Pointer.NULL);
+      if (cleanable != null) {
+        cleanable.clean();
+        cleanable = null;
+      } else if (p != Pointer.NULL) {
+        CAPI.annis_cs_free(p);
       }
     }
 
     @Override
-    protected void finalize() throws Throwable {
+    public void close() {
       this.dispose();
-      super.finalize();
     }
 
     public synchronized boolean isClosed() {
@@ -56,6 +71,34 @@ public class CAPI implements Library {
   }
 
   public static class AnnisVec_AnnisCString extends AnnisPtr {
+
+    /**
+     * Copy all strings of this vector into a Java array.
+     *
+     * Each string is decoded by a single native call, the size of the vector is only queried once.
+     *
+     * @return An array with the strings in the same order as in the vector.
+     */
+    public String[] toArray() {
+      final String[] result = new String[annis_vec_str_size(this).intValue()];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = annis_vec_str_get(this, i);
+      }
+      return result;
+    }
+
+    /**
+     * Copy all strings of this vector into a Java array and free the native vector afterwards.
+     *
+     * @return An array with the strings in the same order as in the vector.
+     */
+    public String[] toArrayAndDispose() {
+      try {
+        return toArray();
+      } finally {
+        dispose();
+      }
+    }
   }
 
   public static class AnnisAnnotation extends PointerType {
@@ -96,13 +139,23 @@ public class CAPI implements Library {
 
   public static native String annis_error_get_kind(Pointer ptr, NativeLong i);
 
+  public static native String annis_error_get_msg(Pointer ptr, long i);
+
+  public static native String annis_error_get_kind(Pointer ptr, long i);
+
   public static native void annis_init_logging(String logfile, int level, AnnisErrorListRef err);
 
   // vector and iterator functions
+  //
+  // The index arguments are of type size_t, which is 64 bit on all supported platforms. Each
+  // accessor has an overload with a primitive long index, which should be preferred in loops
+  // because it does not allocate a NativeLong for each call.
   public static native NativeLong annis_vec_str_size(AnnisVec_AnnisCString ptr);
 
   public static native String annis_vec_str_get(AnnisVec_AnnisCString ptr, NativeLong i);
 
+  public static native String annis_vec_str_get(AnnisVec_AnnisCString ptr, long i);
+
   public static native AnnisVec_AnnisCString annis_vec_str_new();
 
   public static native void annis_vec_str_push(AnnisVec_AnnisCString ptr, String v);
@@ -118,21 +171,32 @@ public class CAPI implements Library {
   public static native AnnisAnnotation annis_vec_annotation_get(AnnisVec_AnnisAnnotation ptr,
       NativeLong i);
 
+  public static native AnnisAnnotation annis_vec_annotation_get(AnnisVec_AnnisAnnotation ptr,
+      long i);
+
   public static native NativeLong annis_vec_component_size(AnnisVec_AnnisComponent ptr);
 
   public static native AnnisComponentConst annis_vec_component_get(AnnisVec_AnnisComponent ptr,
       NativeLong i);
 
+  public static native AnnisComponentConst annis_vec_component_get(AnnisVec_AnnisComponent ptr,
+      long i);
+
   public static native NativeLong annis_vec_edge_size(AnnisVec_AnnisEdge ptr);
 
   public static native AnnisEdge annis_vec_edge_get(AnnisVec_AnnisEdge ptr, NativeLong i);
 
+  public static native AnnisEdge annis_vec_edge_get(AnnisVec_AnnisEdge ptr, long i);
+
   public static native NodeIDByRef annis_iter_nodeid_next(AnnisIterPtr_AnnisNodeID ptr,
       AnnisErrorListRef err);
 
   public static native String annis_matrix_str_get(AnnisMatrix_AnnisCString ptr, NativeLong row,
       NativeLong col);
 
+  public static native String annis_matrix_str_get(AnnisMatrix_AnnisCString ptr, long row,
+      long col);
+
   public static native NativeLong annis_matrix_str_ncols(AnnisMatrix_AnnisCString ptr);
 
   public static native NativeLong annis_matrix_str_nrows(AnnisMatrix_AnnisCString ptr);
@@ -140,9 +204,15 @@ public class CAPI implements Library {
   public static native NativeLong annis_freqtable_str_count(AnnisFrequencyTable_AnnisCString ptr,
       NativeLong row);
 
+  public static native NativeLong annis_freqtable_str_count(AnnisFrequencyTable_AnnisCString ptr,
+      long row);
+
   public static native String annis_freqtable_str_get(AnnisFrequencyTable_AnnisCString ptr,
       NativeLong row, NativeLong col);
 
+  public static native String annis_freqtable_str_get(AnnisFrequencyTable_AnnisCString ptr,
+      long row, long col);
+
   public static native NativeLong annis_freqtable_str_ncols(AnnisFrequencyTable_AnnisCString ptr);
 
   public static native NativeLong annis_freqtable_str_nrows(AnnisFrequencyTable_AnnisCString ptr);
@@ -152,15 +222,27 @@ public class CAPI implements Library {
   public static native NativeLong annis_vec_qattdesc_get_component_nr(QueryAttributeDescription ptr,
       NativeLong i);
 
+  public static native NativeLong annis_vec_qattdesc_get_component_nr(QueryAttributeDescription ptr,
+      long i);
+
   public static native CharPointer annis_vec_qattdesc_get_aql_fragment(
       QueryAttributeDescription ptr, NativeLong i);
 
+  public static native CharPointer annis_vec_qattdesc_get_aql_fragment(
+      QueryAttributeDescription ptr, long i);
+
   public static native CharPointer annis_vec_qattdesc_get_variable(QueryAttributeDescription ptr,
       NativeLong i);
 
+  public static native CharPointer annis_vec_qattdesc_get_variable(QueryAttributeDescription ptr,
+      long i);
+
   public static native CharPointer annis_vec_qattdesc_get_anno_name(QueryAttributeDescription ptr,
       NativeLong i);
 
+  public static native CharPointer annis_vec_qattdesc_get_anno_name(QueryAttributeDescription ptr,
+      long i);
+
   // corpus storage class
 
   public static native AnnisCorpusStorage annis_cs_with_auto_cache_size(String db_dir,
@@ -271,6 +353,39 @@ public class CAPI implements Library {
       String source_node, String target_node, String layer, String component_type,
       String component_name, String anno_ns, String anno_name, AnnisErrorListRef err);
 
+  // The same functions, but with pointers to already encoded, null-terminated strings. These are
+  // used to add many events without encoding the same string again for each call.
+
+  public static native void annis_graphupdate_add_node(AnnisGraphUpdate ptr, Pointer node_name,
+      Pointer node_type, AnnisErrorListRef err);
+
+  public static native void annis_graphupdate_delete_node(AnnisGraphUpdate ptr, Pointer node_name,
+      AnnisErrorListRef err);
+
+  public static native void annis_graphupdate_add_node_label(AnnisGraphUpdate ptr,
+      Pointer node_name, Pointer anno_ns, Pointer anno_name, Pointer anno_value,
+      AnnisErrorListRef err);
+
+  public static native void annis_graphupdate_delete_node_label(AnnisGraphUpdate ptr,
+      Pointer node_name, Pointer anno_ns, Pointer anno_name, AnnisErrorListRef err);
+
+  public static native void annis_graphupdate_add_edge(AnnisGraphUpdate ptr, Pointer source_node,
+      Pointer target_node, Pointer layer, Pointer component_type, Pointer component_name,
+      AnnisErrorListRef err);
+
+  public static native void annis_graphupdate_delete_edge(AnnisGraphUpdate ptr,
+      Pointer source_node, Pointer target_node, Pointer layer, Pointer component_type,
+      Pointer component_name, AnnisErrorListRef err);
+
+  public static native void annis_graphupdate_add_edge_label(AnnisGraphUpdate ptr,
+      Pointer source_node, Pointer target_node, Pointer layer, Pointer component_type,
+      Pointer component_name, Pointer anno_ns, Pointer anno_name, Pointer anno_value,
+      AnnisErrorListRef err);
+
+  public static native void annis_graphupdate_delete_edge_label(AnnisGraphUpdate ptr,
+      Pointer source_node, Pointer target_node, Pointer layer, Pointer component_type,
+      Pointer component_name, Pointer anno_ns, Pointer anno_name, AnnisErrorListRef err);
+
   // GraphDB classes
 
   public static native CharPointer annis_component_layer(AnnisComponentConst component);
@@ -15,27 +15,79 @@
  */
 package org.corpus_tools.graphannis.capi;
 
+import java.nio.charset.Charset;
+
+import com.sun.jna.FromNativeContext;
+import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 import com.sun.jna.PointerType;
 
-public class CharPointer extends PointerType implements CharSequence {
-  
-  public synchronized void dispose()
-  {
-    try {
-      if (this.getPointer() != Pointer.NULL) {
-        CAPI.annis_str_free(this.getPointer());
-      }
-    } finally {
-      this.setPointer(Pointer.NULL);
+public class CharPointer extends PointerType implements CharSequence, AutoCloseable {
+
+  private NativeCleaner.Cleanable cleanable;
+
+  @Override
+  public Object fromNative(Object nativeValue, FromNativeContext context) {
+    Object result = super.fromNative(nativeValue, context);
+    if (result instanceof CharPointer) {
+      CharPointer ptr = (CharPointer) result;
+      Pointer p = ptr.getPointer();
+      ptr.cleanable = NativeCleaner.register(ptr, () -> CAPI.annis_str_free(p));
+    }
+    return result;
+  }
+
+  public synchronized void dispose() {
+    Pointer p = this.getPointer();
+    this.setPointer(Pointer.NULL);
+    if (cleanable != null) {
+      cleanable.clean();
+      cleanable = null;
+    } else if (p != Pointer.NULL) {
+      CAPI.annis_str_free(p);
     }
   }
 
   @Override
-  protected void finalize() throws Throwable
-  {
+  public void close() {
     this.dispose();
-    super.finalize();
+  }
+
+  /**
+   * Decode the string and free the native memory immediately.
+   *
+   * @return The decoded string.
+   */
+  public String toStringAndDispose() {
+    String result = toString();
+    dispose();
+    return result;
+  }
+
+  /**
+   * Copy the encoded bytes of the string without decoding them and free the native memory
+   * immediately. The bytes can be decoded later with {@link #decode(byte[])}.
+   *
+   * @return The encoded string without the terminating zero byte.
+   */
+  public byte[] toBytesAndDispose() {
+    byte[] result;
+    Pointer p = getPointer();
+    if (p == Pointer.NULL) {
+      result = new byte[0];
+    } else {
+      result = p.getByteArray(0, (int) p.indexOf(0, (byte) 0));
+    }
+    dispose();
+    return result;
+  }
+
+  /**
+   * Decode bytes returned by {@link #toBytesAndDispose()} with the same encoding as
+   * {@link #toString()}.
+   */
+  public static String decode(byte[] bytes) {
+    return new String(bytes, Charset.forName(Native.getDefaultStringEncoding()));
   }
 
   @Override
@@ -68,5 +120,5 @@ public class CharPointer extends PointerType implements CharSequence {
   {
     return toString().charAt(index);
   }
-  
+
 }
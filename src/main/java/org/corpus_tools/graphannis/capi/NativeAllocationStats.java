@@ -0,0 +1,186 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.capi;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A snapshot of the number of native handles allocated by this process, grouped by the type of the
+ * handle (e.g. "AnnisGraph" or "CharPointer").
+ *
+ * Handles that have been "reclaimed by GC" were never freed explicitly and are candidates for
+ * leaks in the calling code. Rates can be calculated by comparing two snapshots.
+ *
+ * Error lists ("AnnisErrorListRef") are only allocated when a native call reported an error. They
+ * are listed by {@link #getByType()}, but not included in {@link #getTotal()}, so the total only
+ * counts handles to actual data.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class NativeAllocationStats {
+
+  private static final String ERROR_LIST_TYPE = AnnisErrorListRef.class.getSimpleName();
+
+  /** Counters for a single type of native handle. */
+  public static class HandleStats {
+    private final long allocated;
+    private final long freedExplicitly;
+    private final long reclaimedByGC;
+
+    HandleStats(long allocated, long freedExplicitly, long reclaimedByGC) {
+      this.allocated = allocated;
+      this.freedExplicitly = freedExplicitly;
+      this.reclaimedByGC = reclaimedByGC;
+    }
+
+    /** @return The total number of allocated handles. */
+    public long getAllocated() {
+      return allocated;
+    }
+
+    /** @return The number of handles freed by calling their dispose() or close() function. */
+    public long getFreedExplicitly() {
+      return freedExplicitly;
+    }
+
+    /** @return The number of handles freed only after they had been garbage collected. */
+    public long getReclaimedByGC() {
+      return reclaimedByGC;
+    }
+
+    /** @return The number of handles that have not been freed yet. */
+    public long getLive() {
+      return allocated - freedExplicitly - reclaimedByGC;
+    }
+
+    @Override
+    public String toString() {
+      return "live=" + getLive() + ", allocated=" + allocated + ", freedExplicitly="
+          + freedExplicitly + ", reclaimedByGC=" + reclaimedByGC;
+    }
+  }
+
+  private final long timestamp;
+  private final Map<String, HandleStats> byType;
+
+  private NativeAllocationStats(long timestamp, Map<String, HandleStats> byType) {
+    this.timestamp = timestamp;
+    this.byType = Collections.unmodifiableMap(byType);
+  }
+
+  /**
+   * @return The current allocation counters of all handle types.
+   */
+  public static NativeAllocationStats current() {
+    Map<String, HandleStats> byType = new TreeMap<>();
+    NativeCleaner.counters.forEach((type, c) -> {
+      HandleStats stats = new HandleStats(c.allocated.get(), c.freedExplicitly.get(),
+          c.reclaimedByGC.get());
+      byType.merge(type.getSimpleName(), stats,
+          (a, b) -> new HandleStats(a.allocated + b.allocated,
+              a.freedExplicitly + b.freedExplicitly, a.reclaimedByGC + b.reclaimedByGC));
+    });
+    return new NativeAllocationStats(System.nanoTime(), byType);
+  }
+
+  /**
+   * Enable or disable capturing the stack trace of each allocation. When enabled, a warning
+   * including the allocation site is logged for each handle that was not freed explicitly. This is
+   * expensive and should only be used for debugging. It can also be enabled with the system
+   * property "graphannis.captureAllocationSites".
+   *
+   * @param enabled Whether to capture allocation sites of new handles.
+   */
+  public static void setCaptureAllocationSites(boolean enabled) {
+    NativeCleaner.captureAllocationSites = enabled;
+  }
+
+  /**
+   * @return The counters by the name of the handle type.
+   */
+  public Map<String, HandleStats> getByType() {
+    return byType;
+  }
+
+  /**
+   * @return The sum of the counters of all handle types except error lists.
+   */
+  public HandleStats getTotal() {
+    long allocated = 0;
+    long freedExplicitly = 0;
+    long reclaimedByGC = 0;
+    for (Map.Entry<String, HandleStats> e : byType.entrySet()) {
+      if (ERROR_LIST_TYPE.equals(e.getKey())) {
+        continue;
+      }
+      HandleStats s = e.getValue();
+      allocated += s.allocated;
+      freedExplicitly += s.freedExplicitly;
+      reclaimedByGC += s.reclaimedByGC;
+    }
+    return new HandleStats(allocated, freedExplicitly, reclaimedByGC);
+  }
+
+  /**
+   * @return The value of {@link System#nanoTime()} when this snapshot was taken.
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * Calculate the number of allocations per second of a handle type since an earlier snapshot.
+   *
+   * @param type The name of the handle type.
+   * @param earlier An earlier snapshot.
+   * @return Allocations per second.
+   */
+  public double getAllocationRate(String type, NativeAllocationStats earlier) {
+    return rate(allocatedOf(type) - earlier.allocatedOf(type), earlier);
+  }
+
+  /**
+   * Calculate the number of freed handles (explicitly or by GC) of a type per second since an
+   * earlier snapshot.
+   *
+   * @param type The name of the handle type.
+   * @param earlier An earlier snapshot.
+   * @return Freed handles per second.
+   */
+  public double getFreeRate(String type, NativeAllocationStats earlier) {
+    return rate(freedOf(type) - earlier.freedOf(type), earlier);
+  }
+
+  private long allocatedOf(String type) {
+    HandleStats s = byType.get(type);
+    return s == null ? 0 : s.allocated;
+  }
+
+  private long freedOf(String type) {
+    HandleStats s = byType.get(type);
+    return s == null ? 0 : s.freedExplicitly + s.reclaimedByGC;
+  }
+
+  private double rate(long delta, NativeAllocationStats earlier) {
+    long elapsed = timestamp - earlier.timestamp;
+    return elapsed <= 0 ? 0.0 : delta * 1.0e9 / elapsed;
+  }
+
+  @Override
+  public String toString() {
+    return byType.toString();
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.capi;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Frees native memory when its owning Java object is either disposed explicitly or has become
+ * unreachable.
+ *
+ * This works like {@code java.lang.ref.Cleaner}, which is not available in Java 8: the free action
+ * is bound to a phantom reference of the owner and is executed by a single background thread once
+ * the garbage collector enqueued the reference. In contrast to {@link Object#finalize()}, the owner
+ * itself is never resurrected and the action is executed at most once. The action must not hold a
+ * reference to the owner, otherwise the owner will never become unreachable.
+ *
+ * For each type of owner, the number of allocated handles and how they have been freed is counted
+ * (see {@link NativeAllocationStats}). When allocation sites are captured, a warning with the stack
+ * trace of the allocation is logged for each handle that was not freed explicitly.
+ */
+final class NativeCleaner {
+
+  private static final Logger log = LoggerFactory.getLogger(NativeCleaner.class);
+
+  private static final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+  /** Keeps the registered references reachable until they have been cleaned. */
+  private static final Set<Ref> registered = ConcurrentHashMap.newKeySet();
+
+  static final Map<Class<?>, Counters> counters = new ConcurrentHashMap<>();
+
+  static volatile boolean captureAllocationSites =
+      Boolean.getBoolean("graphannis.captureAllocationSites");
+
+  static {
+    Thread worker = new Thread(NativeCleaner::processQueue, "graphANNIS native cleaner");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /** A registered free action. */
+  interface Cleanable {
+    /**
+     * Execute the free action now, if it has not been executed already, and unregister it.
+     */
+    void clean();
+  }
+
+  private NativeCleaner() {}
+
+  /**
+   * Register an action that is executed once the owner becomes unreachable.
+   *
+   * @param owner The Java object owning the native memory.
+   * @param action The action that frees the native memory.
+   * @return A handle to execute the action early.
+   */
+  static Cleanable register(Object owner, Runnable action) {
+    Class<?> type = owner.getClass();
+    Counters c = counters.get(type);
+    if (c == null) {
+      c = counters.computeIfAbsent(type, t -> new Counters());
+    }
+    c.allocated.incrementAndGet();
+
+    Ref ref = new Ref(owner, action, c,
+        captureAllocationSites ? new Throwable("Allocation site of " + type.getName()) : null);
+    registered.add(ref);
+    return ref;
+  }
+
+  private static void processQueue() {
+    while (true) {
+      try {
+        ((Ref) queue.remove()).reclaim();
+      } catch (InterruptedException ex) {
+        // ignore, the cleaner thread must run as long as the JVM is running
+      } catch (Throwable ex) {
+        log.error("Could not free native memory", ex);
+      }
+    }
+  }
+
+  /** Allocation counters for a single type of handle. */
+  static final class Counters {
+    final AtomicLong allocated = new AtomicLong();
+    final AtomicLong freedExplicitly = new AtomicLong();
+    final AtomicLong reclaimedByGC = new AtomicLong();
+  }
+
+  private static final class Ref extends PhantomReference<Object> implements Cleanable {
+
+    private final Runnable action;
+    private final Counters counters;
+    private final Throwable allocationSite;
+
+    private Ref(Object owner, Runnable action, Counters counters, Throwable allocationSite) {
+      super(owner, queue);
+      this.action = action;
+      this.counters = counters;
+      this.allocationSite = allocationSite;
+    }
+
+    @Override
+    public void clean() {
+      if (registered.remove(this)) {
+        counters.freedExplicitly.incrementAndGet();
+        clear();
+        action.run();
+      }
+    }
+
+    /** Called when the owner has been garbage collected without being freed explicitly. */
+    private void reclaim() {
+      if (registered.remove(this)) {
+        counters.reclaimedByGC.incrementAndGet();
+        if (allocationSite != null) {
+          log.warn("Native handle was not freed explicitly", allocationSite);
+        }
+        action.run();
+      }
+    }
+  }
+}
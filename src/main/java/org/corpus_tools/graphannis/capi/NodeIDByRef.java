@@ -15,33 +15,47 @@
  */
 package org.corpus_tools.graphannis.capi;
 
+import com.sun.jna.FromNativeContext;
 import com.sun.jna.Memory;
 import com.sun.jna.Pointer;
 import com.sun.jna.ptr.IntByReference;
 
 /**
+ * A node ID allocated by graphANNIS, which is freed with {@code annis_free}.
  *
  * @author thomas
  */
-public class NodeIDByRef extends IntByReference {
-  
-  public synchronized void dispose()
-  {
-    try {
-      if (getPointer() != Pointer.NULL && !(getPointer() instanceof Memory))
-      {
-        CAPI.annis_free(this.getPointer());
+public class NodeIDByRef extends IntByReference implements AutoCloseable {
+
+  private NativeCleaner.Cleanable cleanable;
+
+  @Override
+  public Object fromNative(Object nativeValue, FromNativeContext context) {
+    Object result = super.fromNative(nativeValue, context);
+    if (result instanceof NodeIDByRef) {
+      NodeIDByRef ref = (NodeIDByRef) result;
+      if (!(ref.getPointer() instanceof Memory)) {
+        Pointer p = ref.getPointer();
+        ref.cleanable = NativeCleaner.register(ref, () -> CAPI.annis_free(p));
       }
-    } finally {
-      this.setPointer(Pointer.NULL);
+    }
+    return result;
+  }
+
+  public synchronized void dispose() {
+    Pointer p = this.getPointer();
+    this.setPointer(Pointer.NULL);
+    if (cleanable != null) {
+      cleanable.clean();
+      cleanable = null;
+    } else if (p != Pointer.NULL && !(p instanceof Memory)) {
+      CAPI.annis_free(p);
     }
   }
 
   @Override
-  protected void finalize() throws Throwable
-  {
+  public void close() {
     this.dispose();
-    super.finalize();
   }
-  
+
 }
@@ -5,10 +5,8 @@ import java.util.List;
 
 import org.corpus_tools.graphannis.model.NodeDesc;
 
-import com.sun.jna.NativeLong;
-import com.sun.jna.PointerType;
 
-public class QueryAttributeDescription extends PointerType {
+public class QueryAttributeDescription extends AnnisPtr {
     
 
     public int getSize() {
@@ -21,12 +19,12 @@ public class QueryAttributeDescription extends PointerType {
         List<NodeDesc> result = new ArrayList<>(size);
         for(int i=0; i < size; i++) {
             NodeDesc newNodeDesc = new NodeDesc();
-            newNodeDesc.setComponentNr(CAPI.annis_vec_qattdesc_get_component_nr(this, new NativeLong(i)).longValue());
-            newNodeDesc.setAqlFragment(CAPI.annis_vec_qattdesc_get_aql_fragment(this, new NativeLong(i)).toString());
-            newNodeDesc.setVariable(CAPI.annis_vec_qattdesc_get_variable(this, new NativeLong(i)).toString());
-            CharPointer annoName = CAPI.annis_vec_qattdesc_get_anno_name(this, new NativeLong(i));
+            newNodeDesc.setComponentNr(CAPI.annis_vec_qattdesc_get_component_nr(this, i).longValue());
+            newNodeDesc.setAqlFragment(CAPI.annis_vec_qattdesc_get_aql_fragment(this, i).toStringAndDispose());
+            newNodeDesc.setVariable(CAPI.annis_vec_qattdesc_get_variable(this, i).toStringAndDispose());
+            CharPointer annoName = CAPI.annis_vec_qattdesc_get_anno_name(this, i);
             if(annoName != null) {
-                newNodeDesc.setAnnoName(annoName.toString());
+                newNodeDesc.setAnnoName(annoName.toStringAndDispose());
             }
             result.add(newNodeDesc);
         }
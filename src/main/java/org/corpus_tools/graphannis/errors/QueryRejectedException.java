@@ -0,0 +1,18 @@
+package org.corpus_tools.graphannis.errors;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Thrown if a call has not been executed because the query scheduler was saturated or the call
+ * waited too long for its execution.
+ */
+@XmlRootElement
+public class QueryRejectedException extends GraphANNISException {
+
+    private static final long serialVersionUID = 3312546178802214719L;
+
+    public QueryRejectedException(String msg) {
+        super(msg);
+    }
+
+}
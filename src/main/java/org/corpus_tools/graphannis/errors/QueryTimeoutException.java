@@ -0,0 +1,18 @@
+package org.corpus_tools.graphannis.errors;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Thrown if a call did not finish before its deadline. The native call might still be running in
+ * the background, but its result is discarded.
+ */
+@XmlRootElement
+public class QueryTimeoutException extends GraphANNISException {
+
+    private static final long serialVersionUID = -4528270173466919921L;
+
+    public QueryTimeoutException(String msg) {
+        super(msg);
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.model;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import org.corpus_tools.graphannis.capi.CAPI;
+import org.corpus_tools.graphannis.capi.CAPI.AnnisComponentConst;
+import org.corpus_tools.graphannis.capi.CAPI.AnnisVec_AnnisComponent;
+
+/**
+ * Immutable registry of all components of a native graph and their native handles.
+ *
+ * The native handles point into the component vector, which is therefore kept alive as long as
+ * this table is used.
+ */
+class ComponentTable {
+
+  private static final int[] EMPTY = new int[0];
+
+  private final AnnisVec_AnnisComponent vec;
+  private final Component[] components;
+  private final AnnisComponentConst[] handles;
+  private final Map<Component, Integer> index;
+  private final Map<ComponentType, int[]> byType;
+
+  ComponentTable(CAPI.AnnisGraph graph) {
+    this.vec = CAPI.annis_graph_all_components(graph);
+
+    final int size = CAPI.annis_vec_component_size(vec).intValue();
+    this.components = new Component[size];
+    this.handles = new AnnisComponentConst[size];
+    this.index = new HashMap<>();
+
+    Map<ComponentType, IntBuffer> collectedByType = new EnumMap<>(ComponentType.class);
+    for (int i = 0; i < size; i++) {
+      handles[i] = CAPI.annis_vec_component_get(vec, i);
+      components[i] = Graph.mapComponent(handles[i]);
+      index.put(components[i], i);
+      collectedByType.computeIfAbsent(components[i].getType(), t -> new IntBuffer()).add(i);
+    }
+
+    this.byType = new EnumMap<>(ComponentType.class);
+    collectedByType.forEach((t, ids) -> byType.put(t, ids.toArray()));
+  }
+
+  int size() {
+    return components.length;
+  }
+
+  /**
+   * @return A new copy of the component, since components are mutable and the original is used as
+   *         key of the index.
+   */
+  Component get(int i) {
+    Component c = components[i];
+    return new Component(c.getType(), c.getLayer(), c.getName());
+  }
+
+  AnnisComponentConst getHandle(int i) {
+    return handles[i];
+  }
+
+  /**
+   * @return The index of the component or -1 if the graph has no such component.
+   */
+  int indexOf(Component c) {
+    Integer i = index.get(c);
+    return i == null ? -1 : i;
+  }
+
+  /**
+   * @return The indexes of all components of the given type.
+   */
+  int[] indexesOf(ComponentType type) {
+    return byType.getOrDefault(type, EMPTY);
+  }
+
+  void dispose() {
+    vec.dispose();
+  }
+}
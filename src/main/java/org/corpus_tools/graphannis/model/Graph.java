@@ -1,26 +1,33 @@
 package org.corpus_tools.graphannis.model;
 
-import com.sun.jna.NativeLong;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.corpus_tools.graphannis.capi.AnnisEdge;
 import org.corpus_tools.graphannis.capi.AnnisErrorListRef;
 import org.corpus_tools.graphannis.capi.CAPI;
 import org.corpus_tools.graphannis.capi.CAPI.AnnisAnnotation;
 import org.corpus_tools.graphannis.capi.CAPI.AnnisComponentConst;
 import org.corpus_tools.graphannis.capi.CAPI.AnnisIterPtr_AnnisNodeID;
-import org.corpus_tools.graphannis.capi.CAPI.AnnisVec_AnnisComponent;
 import org.corpus_tools.graphannis.capi.CAPI.AnnisVec_AnnisEdge;
 import org.corpus_tools.graphannis.capi.CharPointer;
 import org.corpus_tools.graphannis.capi.NodeID;
 import org.corpus_tools.graphannis.capi.NodeIDByRef;
 import org.corpus_tools.graphannis.errors.GraphANNISException;
 
-public class Graph {
+/**
+ * A copy of a (sub-) graph of a corpus, which is stored in native memory.
+ *
+ * The native memory is freed when the graph is closed or, if this never happens, after the graph
+ * became unreachable. Node iterators of a graph must not be used after it has been closed.
+ */
+public class Graph implements AutoCloseable {
 
   public static QName NODE_NAME = new QName("annis", "node_name");
   public static QName NODE_TYPE = new QName("annis", "node_type");
@@ -29,38 +36,94 @@ public class Graph {
 
   private final CAPI.AnnisGraph graph;
 
+  /** The number of open instances which share the native graph, see {@link #share()}. */
+  private final AtomicInteger openInstances;
+  private volatile boolean closed;
+
+  private ComponentTable componentTable;
+
+  /** Nodes with all labels, shared by the edges of this graph. */
+  private final NodeCache nodeCache = new NodeCache(4096);
+
+  /** The IDs of all nodes of this graph, which are collected when they are first needed. */
+  private int[] allNodeIDs;
+
+  /** The ingoing edges for each component, which are indexed when they are first needed. */
+  private ReverseIndex[] reverseIndexes;
+
   public Graph(CAPI.AnnisGraph g) {
+    this(g, new AtomicInteger(1));
+  }
+
+  private Graph(CAPI.AnnisGraph g, AtomicInteger openInstances) {
     if (g == null) {
       throw new NullPointerException();
     }
     this.graph = g;
+    this.openInstances = openInstances;
   }
 
+  /**
+   * Create another instance of this graph, which shares the native memory but is closed
+   * independently. The native memory is freed when all instances have been closed.
+   *
+   * @return The new instance, which must be closed by the caller.
+   * @throws GraphANNISException
+   */
+  public synchronized Graph share() throws GraphANNISException {
+    checkNotClosed();
+    openInstances.incrementAndGet();
+    return new Graph(graph, openInstances);
+  }
+
+  /**
+   * Copy the whole graph into a compact Java representation that can be accessed without any
+   * further calls to the native library.
+   *
+   * @return The snapshot of this graph.
+   * @throws GraphANNISException
+   */
+  public GraphSnapshot snapshot() throws GraphANNISException {
+    checkNotClosed();
+    return GraphSnapshot.build(graph);
+  }
+
+  /**
+   * Iterate over all nodes of the given type. The label values of each node are only decoded when
+   * they are accessed.
+   *
+   * @param type The node type, e.g. "node" or "corpus".
+   * @return The nodes of this type.
+   * @throws GraphANNISException
+   */
   public Iterable<Node> getNodesByType(String type) throws GraphANNISException {
-    NodeIterator it = new NodeIterator(CAPI.annis_graph_nodes_by_type(this.graph, type));
+    return getNodesByType(type, null);
+  }
+
+  /**
+   * Iterate over all nodes of the given type, but only include the labels with the given keys. The
+   * values of all other labels are never decoded, which is much cheaper for nodes with many
+   * annotations.
+   *
+   * @param type The node type, e.g. "node" or "corpus".
+   * @param keys The keys of the labels to include, or null to include all labels.
+   * @return The nodes of this type.
+   * @throws GraphANNISException
+   */
+  public Iterable<Node> getNodesByType(String type, Set<QName> keys) throws GraphANNISException {
+    checkNotClosed();
+    NodeIterator it = new NodeIterator(CAPI.annis_graph_nodes_by_type(this.graph, type), keys);
     return () -> it;
   }
 
   public List<Edge> getOutgoingEdges(Node node) throws GraphANNISException {
+    checkNotClosed();
+
     List<Edge> result = new ArrayList<Edge>();
 
-    AnnisVec_AnnisComponent components = CAPI.annis_graph_all_components(graph);
-    for (int i = 0; i < CAPI.annis_vec_component_size(components).intValue(); i++) {
-      CAPI.AnnisComponentConst cOrig = CAPI.annis_vec_component_get(components, new NativeLong(i));
-      Component c = mapComponent(cOrig);
-
-      AnnisErrorListRef err = new AnnisErrorListRef();
-      AnnisVec_AnnisEdge outEdges =
-          CAPI.annis_graph_outgoing_edges(graph, new NodeID(node.getId()), cOrig, err);
-      err.checkErrors();
-
-      for (int edgeIdx = 0; edgeIdx < CAPI.annis_vec_edge_size(outEdges).intValue(); edgeIdx++) {
-        AnnisEdge edge = CAPI.annis_vec_edge_get(outEdges, new NativeLong(edgeIdx));
-        // add edge
-        Map<QName, String> labels =
-            getEdgeLabels(edge.source.intValue(), edge.target.intValue(), cOrig);
-        result.add(new Edge(edge.source.intValue(), edge.target.intValue(), c, labels, this));
-      }
+    ComponentTable table = getComponentTable();
+    for (int c = 0; c < table.size(); c++) {
+      addOutgoingEdges(node.getId(), table, c, result);
     }
 
     return result;
@@ -68,116 +131,508 @@ public class Graph {
 
   public List<Edge> getOutgoingEdges(Node node, ComponentType componentType)
       throws GraphANNISException {
+    checkNotClosed();
+
     List<Edge> result = new ArrayList<Edge>();
 
-    AnnisVec_AnnisComponent components =
-        CAPI.annis_graph_all_components_by_type(graph, componentType.toInt());
-    for (int i = 0; i < CAPI.annis_vec_component_size(components).intValue(); i++) {
-      CAPI.AnnisComponentConst cOrig = CAPI.annis_vec_component_get(components, new NativeLong(i));
-      Component c = mapComponent(cOrig);
-
-      AnnisErrorListRef err = new AnnisErrorListRef();
-      AnnisVec_AnnisEdge outEdges =
-          CAPI.annis_graph_outgoing_edges(graph, new NodeID(node.getId()), cOrig, err);
-      err.checkErrors();
-
-      for (int edgeIdx = 0; edgeIdx < CAPI.annis_vec_edge_size(outEdges).intValue(); edgeIdx++) {
-        AnnisEdge edge = CAPI.annis_vec_edge_get(outEdges, new NativeLong(edgeIdx));
-        // add edge
-        Map<QName, String> labels =
-            getEdgeLabels(edge.source.intValue(), edge.target.intValue(), cOrig);
-        result.add(new Edge(edge.source.intValue(), edge.target.intValue(), c, labels, this));
-      }
+    ComponentTable table = getComponentTable();
+    for (int c : table.indexesOf(componentType)) {
+      addOutgoingEdges(node.getId(), table, c, result);
     }
 
     return result;
   }
 
   public List<Edge> getOutgoingEdges(Node node, Component component) throws GraphANNISException {
+    checkNotClosed();
+
+    List<Edge> result = new ArrayList<Edge>();
+
+    ComponentTable table = getComponentTable();
+    int c = table.indexOf(component);
+    if (c >= 0) {
+      addOutgoingEdges(node.getId(), table, c, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Get all ingoing edges of a node in the components of the given type.
+   *
+   * The ingoing edges of a component are indexed the first time they are requested, which requires
+   * to fetch the outgoing edges of all nodes of this graph once.
+   *
+   * @param node The target node.
+   * @param componentType The type of the components.
+   * @return The edges with the node as target.
+   * @throws GraphANNISException
+   */
+  public List<Edge> getIngoingEdges(Node node, ComponentType componentType)
+      throws GraphANNISException {
+    checkNotClosed();
+
     List<Edge> result = new ArrayList<Edge>();
 
-    AnnisVec_AnnisComponent components =
-        CAPI.annis_graph_all_components_by_type(graph, component.getType().toInt());
-    for (int i = 0; i < CAPI.annis_vec_component_size(components).intValue(); i++) {
-      CAPI.AnnisComponentConst cOrig = CAPI.annis_vec_component_get(components, new NativeLong(i));
-      Component c = mapComponent(cOrig);
+    ComponentTable table = getComponentTable();
+    for (int c : table.indexesOf(componentType)) {
+      addIngoingEdges(node.getId(), table, c, result);
+    }
 
-      if (c == component) {
-        AnnisErrorListRef err = new AnnisErrorListRef();
-        AnnisVec_AnnisEdge outEdges =
-            CAPI.annis_graph_outgoing_edges(graph, new NodeID(node.getId()), cOrig, err);
-        err.checkErrors();
-        for (int edgeIdx = 0; edgeIdx < CAPI.annis_vec_edge_size(outEdges).intValue(); edgeIdx++) {
-          AnnisEdge edge = CAPI.annis_vec_edge_get(outEdges, new NativeLong(edgeIdx));
-          // add edge
-          Map<QName, String> labels =
-              getEdgeLabels(edge.source.intValue(), edge.target.intValue(), cOrig);
-          result.add(new Edge(edge.source.intValue(), edge.target.intValue(), c, labels, this));
+    return result;
+  }
+
+  /**
+   * Get all ingoing edges of a node in the given component.
+   *
+   * The ingoing edges of a component are indexed the first time they are requested, which requires
+   * to fetch the outgoing edges of all nodes of this graph once.
+   *
+   * @param node The target node.
+   * @param component The component.
+   * @return The edges with the node as target.
+   * @throws GraphANNISException
+   */
+  public List<Edge> getIngoingEdges(Node node, Component component) throws GraphANNISException {
+    checkNotClosed();
+
+    List<Edge> result = new ArrayList<Edge>();
+
+    ComponentTable table = getComponentTable();
+    int c = table.indexOf(component);
+    if (c >= 0) {
+      addIngoingEdges(node.getId(), table, c, result);
+    }
+
+    return result;
+  }
+
+  private void addIngoingEdges(int nodeID, ComponentTable table, int componentIdx,
+      List<Edge> result) throws GraphANNISException {
+    AnnisComponentConst cOrig = table.getHandle(componentIdx);
+
+    for (int source : getReverseIndex(table, componentIdx).sourcesOf(nodeID)) {
+      Map<QName, String> labels = getEdgeLabels(source, nodeID, cOrig);
+      result.add(new Edge(source, nodeID, table.get(componentIdx), labels, this));
+    }
+  }
+
+  private synchronized ReverseIndex getReverseIndex(ComponentTable table, int componentIdx)
+      throws GraphANNISException {
+    if (reverseIndexes == null) {
+      reverseIndexes = new ReverseIndex[table.size()];
+    }
+    ReverseIndex index = reverseIndexes[componentIdx];
+    if (index == null) {
+      AnnisComponentConst cOrig = table.getHandle(componentIdx);
+      IntBuffer sources = new IntBuffer();
+      IntBuffer targets = new IntBuffer();
+      for (int source : getAllNodeIDs()) {
+        addOutgoingTargets(source, cOrig, targets);
+        while (sources.size() < targets.size()) {
+          sources.add(source);
         }
       }
+      index = new ReverseIndex(sources, targets);
+      reverseIndexes[componentIdx] = index;
     }
+    return index;
+  }
 
-    return result;
+  /**
+   * Get the IDs of all nodes of the {@link GraphSnapshot#DEFAULT_NODE_TYPES default node types}.
+   */
+  private synchronized int[] getAllNodeIDs() throws GraphANNISException {
+    if (allNodeIDs == null) {
+      IntBuffer ids = new IntBuffer();
+      for (String type : GraphSnapshot.DEFAULT_NODE_TYPES) {
+        AnnisIterPtr_AnnisNodeID it = CAPI.annis_graph_nodes_by_type(graph, type);
+        if (it == null) {
+          continue;
+        }
+        while (true) {
+          AnnisErrorListRef err = new AnnisErrorListRef();
+          NodeIDByRef next = CAPI.annis_iter_nodeid_next(it, err);
+          err.checkErrors();
+          if (next == null) {
+            break;
+          }
+          ids.add(next.getValue());
+          next.dispose();
+        }
+        it.dispose();
+      }
+      allNodeIDs = ids.toArray();
+      Arrays.sort(allNodeIDs);
+    }
+    return allNodeIDs;
+  }
+
+  /**
+   * Visit all nodes which can be reached from the start node by following the edges of the given
+   * component. Each node is visited at most once and only its internal ID is passed to the visitor.
+   *
+   * @param start The start node, which is visited first with distance 0.
+   * @param component The component whose edges are followed.
+   * @param order Whether the nodes are visited breadth first or depth first.
+   * @param ingoing If true, the edges are followed from their target to their source, e.g. from a
+   *        token to its covering spans or from a node to its parent in a dominance tree.
+   * @param maxDistance The maximum number of edges between the start node and a visited node.
+   * @param visitor The callback for each visited node.
+   * @throws GraphANNISException
+   */
+  public void traverse(Node start, Component component, TraversalOrder order, boolean ingoing,
+      int maxDistance, NodeVisitor visitor) throws GraphANNISException {
+    checkNotClosed();
+    createTraversal(indexesOf(component), ingoing).traverse(start.getId(), order, maxDistance,
+        visitor);
+  }
+
+  /**
+   * Visit all nodes which can be reached from the start node by following the edges of all
+   * components of the given type, like {@link #traverse(Node, Component, TraversalOrder, boolean,
+   * int, NodeVisitor)}.
+   *
+   * @param start The start node, which is visited first with distance 0.
+   * @param componentType The type of the components whose edges are followed.
+   * @param order Whether the nodes are visited breadth first or depth first.
+   * @param ingoing If true, the edges are followed from their target to their source.
+   * @param maxDistance The maximum number of edges between the start node and a visited node.
+   * @param visitor The callback for each visited node.
+   * @throws GraphANNISException
+   */
+  public void traverse(Node start, ComponentType componentType, TraversalOrder order,
+      boolean ingoing, int maxDistance, NodeVisitor visitor) throws GraphANNISException {
+    checkNotClosed();
+    createTraversal(getComponentTable().indexesOf(componentType), ingoing)
+        .traverse(start.getId(), order, maxDistance, visitor);
   }
 
-  private static Component mapComponent(AnnisComponentConst cOrig) {
+  /**
+   * Get the IDs of all nodes which can be reached from the start node by a path in the component
+   * with at least {@code minDistance} and at most {@code maxDistance} edges.
+   *
+   * @param start The start node.
+   * @param component The component whose outgoing edges are followed.
+   * @param minDistance The minimum number of edges.
+   * @param maxDistance The maximum number of edges.
+   * @return The internal IDs of the reachable nodes, sorted ascending.
+   * @throws GraphANNISException
+   */
+  public int[] getReachableNodeIDs(Node start, Component component, int minDistance,
+      int maxDistance) throws GraphANNISException {
+    checkNotClosed();
+    return createTraversal(indexesOf(component), false).reachable(start.getId(), minDistance,
+        maxDistance);
+  }
+
+  /**
+   * Get the IDs of all nodes which can be reached from the start node by a path in the components
+   * of the given type with at least {@code minDistance} and at most {@code maxDistance} edges.
+   *
+   * @param start The start node.
+   * @param componentType The type of the components whose outgoing edges are followed.
+   * @param minDistance The minimum number of edges.
+   * @param maxDistance The maximum number of edges.
+   * @return The internal IDs of the reachable nodes, sorted ascending.
+   * @throws GraphANNISException
+   */
+  public int[] getReachableNodeIDs(Node start, ComponentType componentType, int minDistance,
+      int maxDistance) throws GraphANNISException {
+    checkNotClosed();
+    return createTraversal(getComponentTable().indexesOf(componentType), false)
+        .reachable(start.getId(), minDistance, maxDistance);
+  }
+
+  /**
+   * Check if there is a path from source to target in the component with at least
+   * {@code minDistance} and at most {@code maxDistance} edges.
+   *
+   * @param source The source node.
+   * @param target The target node.
+   * @param component The component whose outgoing edges are followed.
+   * @param minDistance The minimum number of edges.
+   * @param maxDistance The maximum number of edges.
+   * @return True if there is such a path.
+   * @throws GraphANNISException
+   */
+  public boolean isConnected(Node source, Node target, Component component, int minDistance,
+      int maxDistance) throws GraphANNISException {
+    checkNotClosed();
+    return createTraversal(indexesOf(component), false).isConnected(source.getId(),
+        target.getId(), minDistance, maxDistance);
+  }
+
+  /**
+   * Check if there is a path from source to target in the components of the given type with at
+   * least {@code minDistance} and at most {@code maxDistance} edges.
+   *
+   * @param source The source node.
+   * @param target The target node.
+   * @param componentType The type of the components whose outgoing edges are followed.
+   * @param minDistance The minimum number of edges.
+   * @param maxDistance The maximum number of edges.
+   * @return True if there is such a path.
+   * @throws GraphANNISException
+   */
+  public boolean isConnected(Node source, Node target, ComponentType componentType,
+      int minDistance, int maxDistance) throws GraphANNISException {
+    checkNotClosed();
+    return createTraversal(getComponentTable().indexesOf(componentType), false)
+        .isConnected(source.getId(), target.getId(), minDistance, maxDistance);
+  }
+
+  /**
+   * Get the length of the shortest path from source to target in the component.
+   *
+   * @param source The source node.
+   * @param target The target node.
+   * @param component The component whose outgoing edges are followed.
+   * @return The number of edges of the shortest path or -1 if the target is not reachable.
+   * @throws GraphANNISException
+   */
+  public int getDistance(Node source, Node target, Component component)
+      throws GraphANNISException {
+    checkNotClosed();
+    return createTraversal(indexesOf(component), false).distance(source.getId(), target.getId());
+  }
+
+  /**
+   * Get the length of the shortest path from source to target in the components of the given
+   * type.
+   *
+   * @param source The source node.
+   * @param target The target node.
+   * @param componentType The type of the components whose outgoing edges are followed.
+   * @return The number of edges of the shortest path or -1 if the target is not reachable.
+   * @throws GraphANNISException
+   */
+  public int getDistance(Node source, Node target, ComponentType componentType)
+      throws GraphANNISException {
+    checkNotClosed();
+    return createTraversal(getComponentTable().indexesOf(componentType), false)
+        .distance(source.getId(), target.getId());
+  }
+
+  private int[] indexesOf(Component component) {
+    int c = getComponentTable().indexOf(component);
+    return c < 0 ? new int[0] : new int[] {c};
+  }
+
+  private GraphTraversal createTraversal(int[] componentIdxs, boolean ingoing)
+      throws GraphANNISException {
+    final ComponentTable table = getComponentTable();
+    if (ingoing) {
+      final ReverseIndex[] indexes = new ReverseIndex[componentIdxs.length];
+      for (int i = 0; i < componentIdxs.length; i++) {
+        indexes[i] = getReverseIndex(table, componentIdxs[i]);
+      }
+      return new GraphTraversal(getAllNodeIDs(), (nodeID, result) -> {
+        for (ReverseIndex index : indexes) {
+          index.addSourcesOf(nodeID, result);
+        }
+      });
+    } else {
+      return new GraphTraversal(getAllNodeIDs(), (nodeID, result) -> {
+        checkNotClosed();
+        for (int c : componentIdxs) {
+          addOutgoingTargets(nodeID, table.getHandle(c), result);
+        }
+      });
+    }
+  }
+
+  private void addOutgoingTargets(int nodeID, AnnisComponentConst cOrig, IntBuffer result)
+      throws GraphANNISException {
+    AnnisErrorListRef err = new AnnisErrorListRef();
+    AnnisVec_AnnisEdge outEdges =
+        CAPI.annis_graph_outgoing_edges(graph, new NodeID(nodeID), cOrig, err);
+    err.checkErrors();
+
+    final long numberOfEdges = CAPI.annis_vec_edge_size(outEdges).longValue();
+    for (long edgeIdx = 0; edgeIdx < numberOfEdges; edgeIdx++) {
+      result.add(CAPI.annis_vec_edge_get(outEdges, edgeIdx).target.intValue());
+    }
+    outEdges.dispose();
+  }
+
+  private void addOutgoingEdges(int nodeID, ComponentTable table, int componentIdx,
+      List<Edge> result) throws GraphANNISException {
+    AnnisComponentConst cOrig = table.getHandle(componentIdx);
+
+    AnnisErrorListRef err = new AnnisErrorListRef();
+    AnnisVec_AnnisEdge outEdges =
+        CAPI.annis_graph_outgoing_edges(graph, new NodeID(nodeID), cOrig, err);
+    err.checkErrors();
+
+    final long numberOfEdges = CAPI.annis_vec_edge_size(outEdges).longValue();
+    for (long edgeIdx = 0; edgeIdx < numberOfEdges; edgeIdx++) {
+      AnnisEdge edge = CAPI.annis_vec_edge_get(outEdges, edgeIdx);
+      // add edge
+      Map<QName, String> labels =
+          getEdgeLabels(edge.source.intValue(), edge.target.intValue(), cOrig);
+      result.add(new Edge(edge.source.intValue(), edge.target.intValue(), table.get(componentIdx),
+          labels, this));
+    }
+    outEdges.dispose();
+  }
+
+  private void checkNotClosed() throws GraphANNISException {
+    if (closed || graph.isClosed()) {
+      throw new GraphANNISException("Graph has been closed already");
+    }
+  }
+
+  /**
+   * Free the native memory of this graph, unless it is still shared with other open instances.
+   * Nodes and edges that have been already retrieved stay valid, but no new ones can be requested.
+   */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (componentTable != null) {
+      componentTable.dispose();
+      componentTable = null;
+    }
+    nodeCache.clear();
+    allNodeIDs = null;
+    reverseIndexes = null;
+    if (openInstances.decrementAndGet() == 0) {
+      graph.dispose();
+    }
+  }
+
+  /**
+   * Get the table of all components of this graph, which is created when it is first needed.
+   */
+  private synchronized ComponentTable getComponentTable() {
+    if (componentTable == null) {
+      componentTable = new ComponentTable(graph);
+    }
+    return componentTable;
+  }
+
+  static Component mapComponent(AnnisComponentConst cOrig) {
     Component c = new Component();
     int ctype = CAPI.annis_component_type(cOrig);
     c.setType(ComponentType.fromInt(ctype));
 
     CharPointer cname = CAPI.annis_component_name(cOrig);
-    c.setName(cname == null ? "" : cname.toString());
+    c.setName(cname == null ? "" : cname.toStringAndDispose());
 
     CharPointer clayer = CAPI.annis_component_layer(cOrig);
-    c.setLayer(clayer == null ? "" : clayer.toString());
+    c.setLayer(clayer == null ? "" : clayer.toStringAndDispose());
 
     return c;
   }
 
+  /**
+   * Get the node with the given internal ID. The label values of the node are only decoded when
+   * they are accessed.
+   *
+   * @param id The internal node ID.
+   * @return The node or null if there is no such node.
+   * @throws GraphANNISException
+   */
   public Node getNodeForID(int id) throws GraphANNISException {
-    Map<QName, String> labels = getNodeLabels(graph, id);
+    return getNodeForID(id, null);
+  }
 
-    String name = labels.remove(NODE_NAME);
-    if (name == null) {
-      return null;
-    }
-    String type = labels.remove(NODE_TYPE);
-    Node n;
-    if (type == null) {
-      n = new Node(id, name, labels);
-    } else {
-      n = new Node(id, name, type, labels);
-    }
+  /**
+   * @return The number of requests for a node with all labels which were answered from the node
+   *         cache of this graph.
+   */
+  public long getNodeCacheHits() {
+    return nodeCache.getHits();
+  }
 
-    return n;
+  /**
+   * @return The number of requests for a node with all labels which had to be fetched from the
+   *         native graph.
+   */
+  public long getNodeCacheMisses() {
+    return nodeCache.getMisses();
   }
 
-  private static Map<QName, String> getNodeLabels(CAPI.AnnisGraph g, int nID)
-      throws GraphANNISException {
-    Map<QName, String> labels = new LinkedHashMap<>();
+  /**
+   * Get the node with the given internal ID, but only include the labels with the given keys.
+   *
+   * @param id The internal node ID.
+   * @param keys The keys of the labels to include, or null to include all labels.
+   * @return The node or null if there is no such node.
+   * @throws GraphANNISException
+   */
+  public Node getNodeForID(int id, Set<QName> keys) throws GraphANNISException {
+    checkNotClosed();
+
+    if (keys == null) {
+      Node cached = nodeCache.get(id);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
     AnnisErrorListRef err = new AnnisErrorListRef();
     CAPI.AnnisVec_AnnisAnnotation annos =
-        CAPI.annis_graph_annotations_for_node(g, new NodeID(nID), err);
+        CAPI.annis_graph_annotations_for_node(graph, new NodeID(id), err);
     err.checkErrors();
 
-    for (long i = 0; i < CAPI.annis_vec_annotation_size(annos).longValue(); i++) {
-      AnnisAnnotation a = CAPI.annis_vec_annotation_get(annos, new NativeLong(i));
+    String name = null;
+    String type = null;
+    // annotations whose values are decoded lazily
+    final int numberOfAnnos = (int) CAPI.annis_vec_annotation_size(annos).longValue();
+    QName[] lazyKeys = new QName[numberOfAnnos];
+    byte[][] lazyValues = new byte[numberOfAnnos][];
+    int numberOfLazy = 0;
+    // annotations whose values have been decoded already
+    Map<QName, String> labels = new LinkedHashMap<>();
 
-      String ns = CAPI.annis_annotation_ns(a).toString();
-      String name = CAPI.annis_annotation_name(a).toString();
-      String value = CAPI.annis_annotation_val(a).toString();
+    for (int i = 0; i < numberOfAnnos; i++) {
+      AnnisAnnotation a = CAPI.annis_vec_annotation_get(annos, i);
 
-      if (name != null && value != null) {
-        if (ns == null) {
-          labels.put(new QName("", name), value);
-        } else {
-          labels.put(new QName(ns, name), value);
-        }
+      String annoNs = CAPI.annis_annotation_ns(a).toStringAndDispose();
+      String annoName = CAPI.annis_annotation_name(a).toStringAndDispose();
+      if (annoName == null) {
+        continue;
+      }
+      QName key = new QName(annoNs == null ? "" : annoNs, annoName);
+
+      if (NODE_NAME.equals(key)) {
+        name = CAPI.annis_annotation_val(a).toStringAndDispose();
+      } else if (NODE_TYPE.equals(key)) {
+        type = CAPI.annis_annotation_val(a).toStringAndDispose();
+      } else if (keys == null) {
+        lazyKeys[numberOfLazy] = key;
+        lazyValues[numberOfLazy] = CAPI.annis_annotation_val(a).toBytesAndDispose();
+        numberOfLazy++;
+      } else if (keys.contains(key)) {
+        labels.put(key, CAPI.annis_annotation_val(a).toStringAndDispose());
       }
     }
+
     annos.dispose();
 
-    return labels;
+    if (name == null) {
+      return null;
+    }
+    if (numberOfLazy > 0) {
+      labels = new LazyLabelMap(Arrays.copyOf(lazyKeys, numberOfLazy),
+          Arrays.copyOf(lazyValues, numberOfLazy));
+    }
+
+    Node n;
+    if (type == null) {
+      n = new Node(id, name, labels);
+    } else {
+      n = new Node(id, name, type, labels);
+    }
+    if (keys == null) {
+      nodeCache.put(id, n);
+    }
+    return n;
   }
 
   private Map<QName, String> getEdgeLabels(int source, int target, AnnisComponentConst component)
@@ -192,12 +647,13 @@ public class Graph {
         CAPI.annis_graph_annotations_for_edge(graph, copyEdge, component, err);
     err.checkErrors();
 
-    for (long i = 0; i < CAPI.annis_vec_annotation_size(annos).longValue(); i++) {
-      AnnisAnnotation a = CAPI.annis_vec_annotation_get(annos, new NativeLong(i));
+    final long numberOfAnnos = CAPI.annis_vec_annotation_size(annos).longValue();
+    for (long i = 0; i < numberOfAnnos; i++) {
+      AnnisAnnotation a = CAPI.annis_vec_annotation_get(annos, i);
 
-      String ns = CAPI.annis_annotation_ns(a).toString();
-      String name = CAPI.annis_annotation_name(a).toString();
-      String value = CAPI.annis_annotation_val(a).toString();
+      String ns = CAPI.annis_annotation_ns(a).toStringAndDispose();
+      String name = CAPI.annis_annotation_name(a).toStringAndDispose();
+      String value = CAPI.annis_annotation_val(a).toStringAndDispose();
 
       if (name != null && value != null) {
         if (ns == null) {
@@ -217,18 +673,29 @@ public class Graph {
 
     private final AnnisIterPtr_AnnisNodeID delegate;
 
+    private final Set<QName> keys;
+
     private Optional<NodeIDByRef> nextID = Optional.empty();
 
-    public NodeIterator(AnnisIterPtr_AnnisNodeID delegate) throws GraphANNISException {
+    public NodeIterator(AnnisIterPtr_AnnisNodeID delegate, Set<QName> keys)
+        throws GraphANNISException {
       this.delegate = delegate;
+      this.keys = keys;
       getNext();
     }
 
     private void getNext() throws GraphANNISException {
-      if (this.delegate != null) {
+      if (this.delegate != null && !this.delegate.isClosed()) {
+        checkNotClosed();
         AnnisErrorListRef err = new AnnisErrorListRef();
         this.nextID = Optional.ofNullable(CAPI.annis_iter_nodeid_next(this.delegate, err));
         err.checkErrors();
+        if (!this.nextID.isPresent()) {
+          // free the iterator as soon as it is exhausted
+          this.delegate.dispose();
+        }
+      } else {
+        this.nextID = Optional.empty();
       }
     }
 
@@ -243,7 +710,9 @@ public class Graph {
       if (this.nextID.isPresent()) {
         Node n;
         try {
-          n = getNodeForID(this.nextID.get().getValue());
+          NodeIDByRef id = this.nextID.get();
+          n = getNodeForID(id.getValue(), keys);
+          id.dispose();
           getNext();
           return n;
         } catch (GraphANNISException ex) {
@@ -0,0 +1,560 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.corpus_tools.graphannis.capi.AnnisEdge;
+import org.corpus_tools.graphannis.capi.AnnisErrorListRef;
+import org.corpus_tools.graphannis.capi.CAPI;
+import org.corpus_tools.graphannis.capi.CAPI.AnnisAnnotation;
+import org.corpus_tools.graphannis.capi.CAPI.AnnisComponentConst;
+import org.corpus_tools.graphannis.capi.CAPI.AnnisIterPtr_AnnisNodeID;
+import org.corpus_tools.graphannis.capi.CAPI.AnnisVec_AnnisAnnotation;
+import org.corpus_tools.graphannis.capi.CAPI.AnnisVec_AnnisComponent;
+import org.corpus_tools.graphannis.capi.CAPI.AnnisVec_AnnisEdge;
+import org.corpus_tools.graphannis.capi.CharPointer;
+import org.corpus_tools.graphannis.capi.NodeID;
+import org.corpus_tools.graphannis.capi.NodeIDByRef;
+import org.corpus_tools.graphannis.errors.GraphANNISException;
+
+/**
+ * An immutable, compact Java copy of a native graph.
+ *
+ * All nodes, edges and annotations are copied in one pass and stored in primitive arrays. Nodes are
+ * addressed by their <em>index</em> in this snapshot (0 to {@link #getNodeCount()} - 1) and the
+ * edges of each component are stored as compressed sparse rows, so that the snapshot can be
+ * traversed without any further calls to the native library. Annotation keys and values are
+ * dictionary encoded.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class GraphSnapshot {
+
+  /** The node types that are included in a snapshot by default. */
+  public static final String[] DEFAULT_NODE_TYPES = {"node", "corpus", "datasource", "file"};
+
+  /** Native node IDs, sorted ascending. The position in this array is the node index. */
+  private final int[] nodeIDs;
+
+  private final QName[] keys;
+  private final Map<QName, Integer> keyIDs;
+  private final String[] values;
+
+  /** Annotations of node i are in the range [nodeAnnoStart[i], nodeAnnoStart[i+1]). */
+  private final int[] nodeAnnoStart;
+  private final int[] nodeAnnoKey;
+  private final int[] nodeAnnoValue;
+
+  private final Component[] components;
+  private final Map<Component, Integer> componentIndex;
+  /** Outgoing edges of node i in component c are in [edgeStart[c][i], edgeStart[c][i+1]). */
+  private final int[][] edgeStart;
+  private final int[][] edgeTarget;
+  /** Annotations of edge e in component c are in [edgeAnnoStart[c][e], edgeAnnoStart[c][e+1]). */
+  private final int[][] edgeAnnoStart;
+  private final int[][] edgeAnnoKey;
+  private final int[][] edgeAnnoValue;
+
+  /** Edges of the original graph which have an endpoint that is not part of this snapshot. */
+  private final long droppedEdges;
+
+  private final int nameKey;
+  private final int typeKey;
+
+  private GraphSnapshot(Builder b) {
+    this(b.nodeIDs, b.keyList.toArray(new QName[0]), b.keyIDs, b.valueList.toArray(new String[0]),
+        b.nodeAnnoStart, b.nodeAnnoKey.toArray(), b.nodeAnnoValue.toArray(), b.components,
+        b.edgeStart, b.edgeTarget, b.edgeAnnoStart, b.edgeAnnoKey, b.edgeAnnoValue,
+        b.droppedEdges);
+  }
+
+  private GraphSnapshot(int[] nodeIDs, QName[] keys, Map<QName, Integer> keyIDs, String[] values,
+      int[] nodeAnnoStart, int[] nodeAnnoKey, int[] nodeAnnoValue, Component[] components,
+      int[][] edgeStart, int[][] edgeTarget, int[][] edgeAnnoStart, int[][] edgeAnnoKey,
+      int[][] edgeAnnoValue, long droppedEdges) {
+    this.nodeIDs = nodeIDs;
+    this.keys = keys;
+    this.keyIDs = keyIDs;
+    this.values = values;
+    this.nodeAnnoStart = nodeAnnoStart;
+    this.nodeAnnoKey = nodeAnnoKey;
+    this.nodeAnnoValue = nodeAnnoValue;
+    this.components = components;
+    this.componentIndex = new HashMap<>();
+    for (int c = 0; c < components.length; c++) {
+      componentIndex.put(components[c], c);
+    }
+    this.edgeStart = edgeStart;
+    this.edgeTarget = edgeTarget;
+    this.edgeAnnoStart = edgeAnnoStart;
+    this.edgeAnnoKey = edgeAnnoKey;
+    this.edgeAnnoValue = edgeAnnoValue;
+    this.droppedEdges = droppedEdges;
+
+    Integer name = keyIDs.get(Graph.NODE_NAME);
+    this.nameKey = name == null ? -1 : name;
+    Integer type = keyIDs.get(Graph.NODE_TYPE);
+    this.typeKey = type == null ? -1 : type;
+  }
+
+  /**
+   * Copy all nodes of the {@link #DEFAULT_NODE_TYPES default node types} of a graph.
+   *
+   * @param graph The native graph.
+   * @return The snapshot.
+   * @throws GraphANNISException
+   */
+  public static GraphSnapshot build(CAPI.AnnisGraph graph) throws GraphANNISException {
+    return build(graph, DEFAULT_NODE_TYPES);
+  }
+
+  /**
+   * Copy all nodes of the given types of a graph, together with all edges between these nodes.
+   *
+   * Edges from an included node to a node of a different type are not part of the snapshot. Their
+   * number is available with {@link #getDroppedEdgeCount()}.
+   *
+   * @param graph The native graph.
+   * @param nodeTypes The value of the "annis::node_type" annotation of the nodes to include.
+   * @return The snapshot.
+   * @throws GraphANNISException
+   */
+  public static GraphSnapshot build(CAPI.AnnisGraph graph, String... nodeTypes)
+      throws GraphANNISException {
+    if (graph == null) {
+      throw new NullPointerException();
+    }
+    Builder b = new Builder();
+    b.collectNodes(graph, nodeTypes);
+    b.collectNodeAnnotations(graph);
+    b.collectEdges(graph);
+    return new GraphSnapshot(b);
+  }
+
+  public int getNodeCount() {
+    return nodeIDs.length;
+  }
+
+  /**
+   * @param index The index of the node in this snapshot.
+   * @return The ID of the node in the original native graph.
+   */
+  public int getNodeID(int index) {
+    return nodeIDs[index];
+  }
+
+  /**
+   * @param nodeID The ID of the node in the original native graph.
+   * @return The index of the node in this snapshot or -1 if the node is not included.
+   */
+  public int indexOf(int nodeID) {
+    int idx = Arrays.binarySearch(nodeIDs, nodeID);
+    return idx < 0 ? -1 : idx;
+  }
+
+  public String getNodeName(int index) {
+    return nameKey < 0 ? null : getAnnotation(index, nameKey);
+  }
+
+  public String getNodeType(int index) {
+    return typeKey < 0 ? null : getAnnotation(index, typeKey);
+  }
+
+  /**
+   * Get the value of a single node annotation.
+   *
+   * @param index The index of the node in this snapshot.
+   * @param key The qualified annotation name.
+   * @return The value or null if the node has no such annotation.
+   */
+  public String getAnnotation(int index, QName key) {
+    Integer keyID = keyIDs.get(key);
+    return keyID == null ? null : getAnnotation(index, keyID);
+  }
+
+  private String getAnnotation(int index, int keyID) {
+    for (int a = nodeAnnoStart[index]; a < nodeAnnoStart[index + 1]; a++) {
+      if (nodeAnnoKey[a] == keyID) {
+        return values[nodeAnnoValue[a]];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get all annotations of a node, including the node name and type.
+   *
+   * @param index The index of the node in this snapshot.
+   * @return A new map with all annotations.
+   */
+  public Map<QName, String> getLabels(int index) {
+    return labels(nodeAnnoStart[index], nodeAnnoStart[index + 1], nodeAnnoKey, nodeAnnoValue);
+  }
+
+  /**
+   * @return Copies of all components of the graph. The position in this list is the component
+   *         index used by the edge access functions.
+   */
+  public List<Component> getComponents() {
+    List<Component> result = new ArrayList<>(components.length);
+    for (Component c : components) {
+      result.add(new Component(c.getType(), c.getLayer(), c.getName()));
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  /**
+   * @param component The component.
+   * @return The index of the component or -1 if the graph has no such component.
+   */
+  public int getComponentIndex(Component component) {
+    Integer c = componentIndex.get(component);
+    return c == null ? -1 : c;
+  }
+
+  /**
+   * The outgoing edges of a node in a component are stored in a consecutive range of edge
+   * positions, starting with this position.
+   *
+   * @param component The index of the component.
+   * @param index The index of the source node.
+   * @return The position of the first outgoing edge.
+   */
+  public int getOutgoingStart(int component, int index) {
+    return edgeStart[component][index];
+  }
+
+  /**
+   * @param component The index of the component.
+   * @param index The index of the source node.
+   * @return The position after the last outgoing edge.
+   */
+  public int getOutgoingEnd(int component, int index) {
+    return edgeStart[component][index + 1];
+  }
+
+  /**
+   * @param component The index of the component.
+   * @param edge The position of the edge.
+   * @return The index of the target node of the edge.
+   */
+  public int getEdgeTarget(int component, int edge) {
+    return edgeTarget[component][edge];
+  }
+
+  /**
+   * @param component The index of the component.
+   * @return The number of edges in this component.
+   */
+  public int getEdgeCount(int component) {
+    return edgeTarget[component].length;
+  }
+
+  /**
+   * @return The number of edges of the original graph from a node of this snapshot to a node which
+   *         is not part of this snapshot. These edges are not included.
+   */
+  public long getDroppedEdgeCount() {
+    return droppedEdges;
+  }
+
+  public String getEdgeAnnotation(int component, int edge, QName key) {
+    Integer keyID = keyIDs.get(key);
+    if (keyID != null) {
+      int[] annoStart = edgeAnnoStart[component];
+      for (int a = annoStart[edge]; a < annoStart[edge + 1]; a++) {
+        if (edgeAnnoKey[component][a] == keyID) {
+          return values[edgeAnnoValue[component][a]];
+        }
+      }
+    }
+    return null;
+  }
+
+  public Map<QName, String> getEdgeLabels(int component, int edge) {
+    return labels(edgeAnnoStart[component][edge], edgeAnnoStart[component][edge + 1],
+        edgeAnnoKey[component], edgeAnnoValue[component]);
+  }
+
+  private Map<QName, String> labels(int start, int end, int[] annoKey, int[] annoValue) {
+    Map<QName, String> result = new LinkedHashMap<>();
+    for (int a = start; a < end; a++) {
+      result.put(keys[annoKey[a]], values[annoValue[a]]);
+    }
+    return result;
+  }
+
+  /**
+   * Create a snapshot which only contains some of the nodes of this snapshot, together with their
+   * annotations and all edges between them. The annotation dictionaries are shared with this
+   * snapshot.
+   *
+   * @param indexes The indexes of the nodes to include, sorted ascending and without duplicates.
+   * @return The new snapshot. The nodes are addressed by their position in {@code indexes}.
+   */
+  public GraphSnapshot subset(int[] indexes) {
+    int[] newIndex = new int[nodeIDs.length];
+    Arrays.fill(newIndex, -1);
+    int[] subNodeIDs = new int[indexes.length];
+    int[] subAnnoStart = new int[indexes.length + 1];
+    for (int i = 0; i < indexes.length; i++) {
+      newIndex[indexes[i]] = i;
+      subNodeIDs[i] = nodeIDs[indexes[i]];
+      subAnnoStart[i + 1] =
+          subAnnoStart[i] + nodeAnnoStart[indexes[i] + 1] - nodeAnnoStart[indexes[i]];
+    }
+    int[] subAnnoKey = new int[subAnnoStart[indexes.length]];
+    int[] subAnnoValue = new int[subAnnoKey.length];
+    for (int i = 0; i < indexes.length; i++) {
+      int from = nodeAnnoStart[indexes[i]];
+      int length = subAnnoStart[i + 1] - subAnnoStart[i];
+      System.arraycopy(nodeAnnoKey, from, subAnnoKey, subAnnoStart[i], length);
+      System.arraycopy(nodeAnnoValue, from, subAnnoValue, subAnnoStart[i], length);
+    }
+
+    int[][] subEdgeStart = new int[components.length][];
+    int[][] subEdgeTarget = new int[components.length][];
+    int[][] subEdgeAnnoStart = new int[components.length][];
+    int[][] subEdgeAnnoKey = new int[components.length][];
+    int[][] subEdgeAnnoValue = new int[components.length][];
+    long subDroppedEdges = droppedEdges;
+    for (int c = 0; c < components.length; c++) {
+      int[] start = new int[indexes.length + 1];
+      IntBuffer targets = new IntBuffer();
+      IntBuffer annoStart = new IntBuffer();
+      IntBuffer annoKey = new IntBuffer();
+      IntBuffer annoValue = new IntBuffer();
+      for (int i = 0; i < indexes.length; i++) {
+        start[i] = targets.size();
+        for (int e = edgeStart[c][indexes[i]]; e < edgeStart[c][indexes[i] + 1]; e++) {
+          int target = newIndex[edgeTarget[c][e]];
+          if (target < 0) {
+            subDroppedEdges++;
+            continue;
+          }
+          targets.add(target);
+          annoStart.add(annoKey.size());
+          for (int a = edgeAnnoStart[c][e]; a < edgeAnnoStart[c][e + 1]; a++) {
+            annoKey.add(edgeAnnoKey[c][a]);
+            annoValue.add(edgeAnnoValue[c][a]);
+          }
+        }
+      }
+      start[indexes.length] = targets.size();
+      annoStart.add(annoKey.size());
+
+      subEdgeStart[c] = start;
+      subEdgeTarget[c] = targets.toArray();
+      subEdgeAnnoStart[c] = annoStart.toArray();
+      subEdgeAnnoKey[c] = annoKey.toArray();
+      subEdgeAnnoValue[c] = annoValue.toArray();
+    }
+
+    return new GraphSnapshot(subNodeIDs, keys, keyIDs, values, subAnnoStart, subAnnoKey,
+        subAnnoValue, components, subEdgeStart, subEdgeTarget, subEdgeAnnoStart, subEdgeAnnoKey,
+        subEdgeAnnoValue, subDroppedEdges);
+  }
+
+  /**
+   * @return A rough estimation of the memory used by this snapshot in bytes.
+   */
+  public long estimatedSize() {
+    long size = 4L * (nodeIDs.length + nodeAnnoStart.length + nodeAnnoKey.length
+        + nodeAnnoValue.length);
+    for (int c = 0; c < components.length; c++) {
+      size += 4L * (edgeStart[c].length + edgeTarget[c].length + edgeAnnoStart[c].length
+          + edgeAnnoKey[c].length + edgeAnnoValue[c].length);
+    }
+    for (String v : values) {
+      // object header, fields and character array
+      size += 40 + 2L * v.length();
+    }
+    return size;
+  }
+
+  private static class Builder {
+    private int[] nodeIDs;
+
+    private final List<QName> keyList = new ArrayList<>();
+    private final Map<QName, Integer> keyIDs = new HashMap<>();
+    private final List<String> valueList = new ArrayList<>();
+    private final Map<String, Integer> valueIDs = new HashMap<>();
+
+    private int[] nodeAnnoStart;
+    private final IntBuffer nodeAnnoKey = new IntBuffer();
+    private final IntBuffer nodeAnnoValue = new IntBuffer();
+
+    private Component[] components;
+    private int[][] edgeStart;
+    private int[][] edgeTarget;
+    private int[][] edgeAnnoStart;
+    private int[][] edgeAnnoKey;
+    private int[][] edgeAnnoValue;
+    private long droppedEdges;
+
+    private void collectNodes(CAPI.AnnisGraph graph, String[] nodeTypes)
+        throws GraphANNISException {
+      IntBuffer ids = new IntBuffer();
+      for (String type : nodeTypes) {
+        AnnisIterPtr_AnnisNodeID it = CAPI.annis_graph_nodes_by_type(graph, type);
+        if (it == null) {
+          continue;
+        }
+        while (true) {
+          AnnisErrorListRef err = new AnnisErrorListRef();
+          NodeIDByRef next = CAPI.annis_iter_nodeid_next(it, err);
+          err.checkErrors();
+          if (next == null) {
+            break;
+          }
+          ids.add(next.getValue());
+          next.dispose();
+        }
+        it.dispose();
+      }
+      nodeIDs = ids.toArray();
+      Arrays.sort(nodeIDs);
+    }
+
+    private void collectNodeAnnotations(CAPI.AnnisGraph graph) throws GraphANNISException {
+      nodeAnnoStart = new int[nodeIDs.length + 1];
+      for (int i = 0; i < nodeIDs.length; i++) {
+        nodeAnnoStart[i] = nodeAnnoKey.size();
+
+        AnnisErrorListRef err = new AnnisErrorListRef();
+        AnnisVec_AnnisAnnotation annos =
+            CAPI.annis_graph_annotations_for_node(graph, new NodeID(nodeIDs[i]), err);
+        err.checkErrors();
+        addAnnotations(annos, nodeAnnoKey, nodeAnnoValue);
+      }
+      nodeAnnoStart[nodeIDs.length] = nodeAnnoKey.size();
+    }
+
+    private void collectEdges(CAPI.AnnisGraph graph) throws GraphANNISException {
+      AnnisVec_AnnisComponent componentVec = CAPI.annis_graph_all_components(graph);
+      final int numberOfComponents = CAPI.annis_vec_component_size(componentVec).intValue();
+
+      components = new Component[numberOfComponents];
+      edgeStart = new int[numberOfComponents][];
+      edgeTarget = new int[numberOfComponents][];
+      edgeAnnoStart = new int[numberOfComponents][];
+      edgeAnnoKey = new int[numberOfComponents][];
+      edgeAnnoValue = new int[numberOfComponents][];
+
+      for (int c = 0; c < numberOfComponents; c++) {
+        AnnisComponentConst cOrig = CAPI.annis_vec_component_get(componentVec, c);
+        components[c] = Graph.mapComponent(cOrig);
+
+        int[] start = new int[nodeIDs.length + 1];
+        IntBuffer targets = new IntBuffer();
+        IntBuffer annoStart = new IntBuffer();
+        IntBuffer annoKey = new IntBuffer();
+        IntBuffer annoValue = new IntBuffer();
+
+        for (int i = 0; i < nodeIDs.length; i++) {
+          start[i] = targets.size();
+
+          AnnisErrorListRef err = new AnnisErrorListRef();
+          AnnisVec_AnnisEdge outEdges =
+              CAPI.annis_graph_outgoing_edges(graph, new NodeID(nodeIDs[i]), cOrig, err);
+          err.checkErrors();
+
+          final int numberOfEdges = CAPI.annis_vec_edge_size(outEdges).intValue();
+          for (int e = 0; e < numberOfEdges; e++) {
+            AnnisEdge edge = CAPI.annis_vec_edge_get(outEdges, e);
+            int target = Arrays.binarySearch(nodeIDs, edge.target.intValue());
+            if (target < 0) {
+              // only include edges between nodes of the snapshot
+              droppedEdges++;
+              continue;
+            }
+            targets.add(target);
+            annoStart.add(annoKey.size());
+
+            AnnisEdge.ByValue copyEdge = new AnnisEdge.ByValue();
+            copyEdge.source = edge.source;
+            copyEdge.target = edge.target;
+            err = new AnnisErrorListRef();
+            AnnisVec_AnnisAnnotation annos =
+                CAPI.annis_graph_annotations_for_edge(graph, copyEdge, cOrig, err);
+            err.checkErrors();
+            addAnnotations(annos, annoKey, annoValue);
+          }
+          outEdges.dispose();
+        }
+        start[nodeIDs.length] = targets.size();
+        annoStart.add(annoKey.size());
+
+        edgeStart[c] = start;
+        edgeTarget[c] = targets.toArray();
+        edgeAnnoStart[c] = annoStart.toArray();
+        edgeAnnoKey[c] = annoKey.toArray();
+        edgeAnnoValue[c] = annoValue.toArray();
+      }
+      componentVec.dispose();
+    }
+
+    private void addAnnotations(AnnisVec_AnnisAnnotation annos, IntBuffer keyTarget,
+        IntBuffer valueTarget) {
+      if (annos == null) {
+        return;
+      }
+      final long size = CAPI.annis_vec_annotation_size(annos).longValue();
+      for (long a = 0; a < size; a++) {
+        AnnisAnnotation anno = CAPI.annis_vec_annotation_get(annos, a);
+        String ns = decode(CAPI.annis_annotation_ns(anno));
+        String name = decode(CAPI.annis_annotation_name(anno));
+        String value = decode(CAPI.annis_annotation_val(anno));
+        if (name != null && value != null) {
+          keyTarget.add(keyID(new QName(ns == null ? "" : ns, name)));
+          valueTarget.add(valueID(value));
+        }
+      }
+      annos.dispose();
+    }
+
+    private int keyID(QName key) {
+      Integer id = keyIDs.get(key);
+      if (id == null) {
+        id = keyList.size();
+        keyList.add(key);
+        keyIDs.put(key, id);
+      }
+      return id;
+    }
+
+    private int valueID(String value) {
+      Integer id = valueIDs.get(value);
+      if (id == null) {
+        id = valueList.size();
+        valueList.add(value);
+        valueIDs.put(value, id);
+      }
+      return id;
+    }
+
+    private static String decode(CharPointer ptr) {
+      if (ptr == null) {
+        return null;
+      }
+      return ptr.toStringAndDispose();
+    }
+  }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.corpus_tools.graphannis.errors.GraphANNISException;
+
+/**
+ * Traversal algorithms over internal node IDs.
+ *
+ * The neighbors of a node are provided by a callback, so the same algorithms work on outgoing and
+ * ingoing edges of one or several components. Queues and stacks are primitive {@link IntBuffer}s
+ * and the visited nodes are marked in a bit set over the position of the node ID in the sorted list
+ * of all node IDs of the graph.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+class GraphTraversal {
+
+  /** Provides the neighbors of a node. */
+  @FunctionalInterface
+  interface Neighbors {
+    void addNeighbors(int nodeID, IntBuffer result) throws GraphANNISException;
+  }
+
+  private final int[] nodeIDs;
+  private final Neighbors neighbors;
+
+  private final IntBuffer neighborBuffer = new IntBuffer();
+
+  /**
+   * @param nodeIDs All node IDs of the graph, sorted ascending.
+   * @param neighbors The neighbors of each node.
+   */
+  GraphTraversal(int[] nodeIDs, Neighbors neighbors) {
+    this.nodeIDs = nodeIDs;
+    this.neighbors = neighbors;
+  }
+
+  /**
+   * Visit all nodes reachable from the start node with at most {@code maxDistance} edges. Each node
+   * is visited at most once.
+   *
+   * A depth first traversal can reach a node by a long path before it finds a shorter one. The
+   * node is then expanded again with the shorter distance, so all nodes within the maximum distance
+   * are visited, but the visitor is still only called for the first path.
+   */
+  void traverse(int start, TraversalOrder order, int maxDistance, NodeVisitor visitor)
+      throws GraphANNISException {
+    if (order == TraversalOrder.BreadthFirst) {
+      breadthFirst(start, maxDistance, visitor);
+    } else {
+      depthFirst(start, maxDistance, visitor);
+    }
+  }
+
+  private void breadthFirst(int start, int maxDistance, NodeVisitor visitor)
+      throws GraphANNISException {
+    VisitedSet visited = new VisitedSet();
+    visited.add(start);
+    IntBuffer current = new IntBuffer();
+    IntBuffer next = new IntBuffer();
+    current.add(start);
+    for (int distance = 0; current.size() > 0; distance++) {
+      for (int i = 0; i < current.size(); i++) {
+        int node = current.get(i);
+        if (visitor.visit(node, distance) && distance < maxDistance) {
+          neighborBuffer.clear();
+          neighbors.addNeighbors(node, neighborBuffer);
+          for (int n = 0; n < neighborBuffer.size(); n++) {
+            if (visited.add(neighborBuffer.get(n))) {
+              next.add(neighborBuffer.get(n));
+            }
+          }
+        }
+      }
+      IntBuffer tmp = current;
+      current = next;
+      next = tmp;
+      next.clear();
+    }
+  }
+
+  private void depthFirst(int start, int maxDistance, NodeVisitor visitor)
+      throws GraphANNISException {
+    // without a limit, a shorter path can not reach any additional nodes
+    final boolean reexpand = maxDistance < Integer.MAX_VALUE;
+    DistanceMap best = new DistanceMap();
+    // pairs of node ID and distance
+    IntBuffer stack = new IntBuffer();
+    stack.add(start);
+    stack.add(0);
+    while (stack.size() > 0) {
+      int distance = stack.removeLast();
+      int node = stack.removeLast();
+      int bestDistance = best.get(node);
+      if (bestDistance != DistanceMap.UNREACHED && (!reexpand || distance >= bestDistance)) {
+        continue;
+      }
+      if (bestDistance == DistanceMap.UNREACHED && !visitor.visit(node, distance)) {
+        // never expand this node, even if it is reached by a shorter path
+        best.put(node, DistanceMap.PRUNED);
+        continue;
+      }
+      best.put(node, distance);
+      if (distance < maxDistance) {
+        neighborBuffer.clear();
+        neighbors.addNeighbors(node, neighborBuffer);
+        // push in reverse order, so the first neighbor is visited first
+        for (int n = neighborBuffer.size() - 1; n >= 0; n--) {
+          int neighborDistance = best.get(neighborBuffer.get(n));
+          if (neighborDistance == DistanceMap.UNREACHED
+              || (reexpand && distance + 1 < neighborDistance)) {
+            stack.add(neighborBuffer.get(n));
+            stack.add(distance + 1);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Find all nodes which can be reached from the start node by a path with at least
+   * {@code minDistance} and at most {@code maxDistance} edges.
+   *
+   * @return The reached node IDs, sorted ascending.
+   */
+  int[] reachable(int start, int minDistance, int maxDistance) throws GraphANNISException {
+    IntBuffer result = new IntBuffer();
+    search(start, minDistance, maxDistance, 0, false, result);
+    int[] ids = result.toArray();
+    Arrays.sort(ids);
+    return ids;
+  }
+
+  /**
+   * @return True if there is a path from source to target with at least {@code minDistance} and at
+   *         most {@code maxDistance} edges.
+   */
+  boolean isConnected(int source, int target, int minDistance, int maxDistance)
+      throws GraphANNISException {
+    return search(source, minDistance, maxDistance, target, true, null);
+  }
+
+  /**
+   * @return The number of edges of the shortest path from source to target or -1 if the target is
+   *         not reachable.
+   */
+  int distance(int source, int target) throws GraphANNISException {
+    final int[] result = {-1};
+    breadthFirst(source, Integer.MAX_VALUE, (node, distance) -> {
+      if (node == target) {
+        result[0] = distance;
+      }
+      // stop expanding any node once the target has been found
+      return result[0] < 0;
+    });
+    return result[0];
+  }
+
+  /**
+   * Search the nodes reachable by a path with a length in the given range.
+   *
+   * The nodes reachable with exactly {@code minDistance} edges are collected level by level, since
+   * a node can be reached with different path lengths. From these nodes, a normal breadth first
+   * search with a global visited set finds the nodes reachable with the remaining distance.
+   *
+   * @return True if the target has been found.
+   */
+  private boolean search(int start, int minDistance, int maxDistance, int target,
+      boolean hasTarget, IntBuffer result) throws GraphANNISException {
+    if (minDistance > maxDistance) {
+      return false;
+    }
+
+    IntBuffer frontier = new IntBuffer();
+    IntBuffer next = new IntBuffer();
+    frontier.add(start);
+    VisitedSet level = new VisitedSet();
+    for (int distance = 0; distance < minDistance; distance++) {
+      level.clear();
+      for (int i = 0; i < frontier.size(); i++) {
+        neighborBuffer.clear();
+        neighbors.addNeighbors(frontier.get(i), neighborBuffer);
+        for (int n = 0; n < neighborBuffer.size(); n++) {
+          if (level.add(neighborBuffer.get(n))) {
+            next.add(neighborBuffer.get(n));
+          }
+        }
+      }
+      IntBuffer tmp = frontier;
+      frontier = next;
+      next = tmp;
+      next.clear();
+      if (frontier.size() == 0) {
+        return false;
+      }
+    }
+
+    VisitedSet visited = new VisitedSet();
+    for (int i = 0; i < frontier.size(); i++) {
+      visited.add(frontier.get(i));
+    }
+    for (int distance = minDistance; frontier.size() > 0; distance++) {
+      for (int i = 0; i < frontier.size(); i++) {
+        int node = frontier.get(i);
+        if (hasTarget && node == target) {
+          return true;
+        }
+        if (result != null) {
+          result.add(node);
+        }
+        if (distance < maxDistance) {
+          neighborBuffer.clear();
+          neighbors.addNeighbors(node, neighborBuffer);
+          for (int n = 0; n < neighborBuffer.size(); n++) {
+            if (visited.add(neighborBuffer.get(n))) {
+              next.add(neighborBuffer.get(n));
+            }
+          }
+        }
+      }
+      IntBuffer tmp = frontier;
+      frontier = next;
+      next = tmp;
+      next.clear();
+    }
+    return false;
+  }
+
+  /**
+   * The shortest known distance of each reached node, which uses an array for all node IDs of the
+   * graph.
+   */
+  private class DistanceMap {
+    static final int UNREACHED = Integer.MAX_VALUE;
+    /** Smaller than any distance, so the node is never expanded again. */
+    static final int PRUNED = -1;
+
+    private int[] distances;
+    /** Node IDs which are not part of the sorted node ID list. */
+    private Map<Integer, Integer> others;
+
+    int get(int nodeID) {
+      int idx = Arrays.binarySearch(nodeIDs, nodeID);
+      if (idx >= 0) {
+        return distances == null ? UNREACHED : distances[idx];
+      }
+      Integer d = others == null ? null : others.get(nodeID);
+      return d == null ? UNREACHED : d;
+    }
+
+    void put(int nodeID, int distance) {
+      int idx = Arrays.binarySearch(nodeIDs, nodeID);
+      if (idx >= 0) {
+        if (distances == null) {
+          distances = new int[nodeIDs.length];
+          Arrays.fill(distances, UNREACHED);
+        }
+        distances[idx] = distance;
+      } else {
+        if (others == null) {
+          others = new HashMap<>();
+        }
+        others.put(nodeID, distance);
+      }
+    }
+  }
+
+  /**
+   * A set of node IDs, which uses a bit set for all node IDs of the graph.
+   */
+  private class VisitedSet {
+    private final BitSet bits = new BitSet(nodeIDs.length);
+    /** Node IDs which are not part of the sorted node ID list. */
+    private Set<Integer> others;
+
+    /**
+     * @return True if the node has not been in the set before.
+     */
+    boolean add(int nodeID) {
+      int idx = Arrays.binarySearch(nodeIDs, nodeID);
+      if (idx >= 0) {
+        if (bits.get(idx)) {
+          return false;
+        }
+        bits.set(idx);
+        return true;
+      }
+      if (others == null) {
+        others = new HashSet<>();
+      }
+      return others.add(nodeID);
+    }
+
+    void clear() {
+      bits.clear();
+      others = null;
+    }
+  }
+}
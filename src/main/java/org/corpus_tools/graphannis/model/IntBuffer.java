@@ -0,0 +1,65 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.model;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive integers.
+ */
+class IntBuffer {
+
+  private int[] data;
+  private int size;
+
+  IntBuffer() {
+    this(16);
+  }
+
+  IntBuffer(int initialCapacity) {
+    this.data = new int[Math.max(initialCapacity, 1)];
+  }
+
+  void add(int value) {
+    if (size == data.length) {
+      data = Arrays.copyOf(data, data.length * 2);
+    }
+    data[size++] = value;
+  }
+
+  int get(int i) {
+    return data[i];
+  }
+
+  /**
+   * Remove the last value, which allows using this buffer as a stack.
+   *
+   * @return The removed value.
+   */
+  int removeLast() {
+    return data[--size];
+  }
+
+  void clear() {
+    size = 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int[] toArray() {
+    return Arrays.copyOf(data, size);
+  }
+}
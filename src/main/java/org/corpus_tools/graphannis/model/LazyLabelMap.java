@@ -0,0 +1,147 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.corpus_tools.graphannis.capi.CharPointer;
+
+/**
+ * An immutable map of labels whose values are decoded into strings when they are first accessed.
+ *
+ * The map only holds the encoded bytes of the values, which are copied from the native annotation
+ * vector before it is freed, so it does not keep any native memory alive.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+class LazyLabelMap extends AbstractMap<QName, String> {
+
+  private final QName[] keys;
+  /** The encoded value for each key which has not been decoded yet. */
+  private final byte[][] encodedValues;
+  private final String[] values;
+
+  /**
+   * @param keys The keys of the labels.
+   * @param encodedValues The values as returned by {@link CharPointer#toBytesAndDispose()}.
+   */
+  LazyLabelMap(QName[] keys, byte[][] encodedValues) {
+    this.keys = keys;
+    this.encodedValues = encodedValues;
+    this.values = new String[keys.length];
+  }
+
+  private int indexOf(Object key) {
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i].equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private synchronized String value(int i) {
+    if (values[i] == null) {
+      values[i] = CharPointer.decode(encodedValues[i]);
+      encodedValues[i] = null;
+    }
+    return values[i];
+  }
+
+  @Override
+  public int size() {
+    return keys.length;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public String get(Object key) {
+    int i = indexOf(key);
+    return i < 0 ? null : value(i);
+  }
+
+  @Override
+  public Set<Entry<QName, String>> entrySet() {
+    return new AbstractSet<Entry<QName, String>>() {
+
+      @Override
+      public int size() {
+        return keys.length;
+      }
+
+      @Override
+      public Iterator<Entry<QName, String>> iterator() {
+        return new Iterator<Entry<QName, String>>() {
+          private int next = 0;
+
+          @Override
+          public boolean hasNext() {
+            return next < keys.length;
+          }
+
+          @Override
+          public Entry<QName, String> next() {
+            if (next >= keys.length) {
+              throw new NoSuchElementException();
+            }
+            final int i = next++;
+            return new Entry<QName, String>() {
+
+              @Override
+              public QName getKey() {
+                return keys[i];
+              }
+
+              @Override
+              public String getValue() {
+                return value(i);
+              }
+
+              @Override
+              public String setValue(String value) {
+                throw new UnsupportedOperationException();
+              }
+
+              @Override
+              public boolean equals(Object o) {
+                if (o instanceof Entry) {
+                  Entry<?, ?> other = (Entry<?, ?>) o;
+                  return keys[i].equals(other.getKey()) && getValue().equals(other.getValue());
+                }
+                return false;
+              }
+
+              @Override
+              public int hashCode() {
+                return keys[i].hashCode() ^ getValue().hashCode();
+              }
+
+              @Override
+              public String toString() {
+                return keys[i] + "=" + getValue();
+              }
+            };
+          }
+        };
+      }
+    };
+  }
+}
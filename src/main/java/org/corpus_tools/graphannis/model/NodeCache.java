@@ -0,0 +1,104 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.model;
+
+import java.util.Arrays;
+
+/**
+ * A bounded cache of nodes by their internal ID, implemented as an open addressing hash table with
+ * linear probing over primitive keys.
+ *
+ * Entries are never removed, only replaced: if all slots of the probe sequence of a new node are
+ * occupied, one of them is overwritten. Lookups therefore never need to look beyond the probe
+ * sequence.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+class NodeCache {
+
+  private static final int MAX_PROBES = 8;
+
+  private final int[] keys;
+  private final Node[] values;
+  private final int mask;
+
+  private int nextVictim;
+
+  private long hits;
+  private long misses;
+
+  /**
+   * @param capacity The maximum number of cached nodes, rounded up to the next power of two.
+   */
+  NodeCache(int capacity) {
+    int size = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+    this.keys = new int[size];
+    this.values = new Node[size];
+    this.mask = size - 1;
+  }
+
+  private static int hash(int id) {
+    int h = id * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * @return The cached node or null if the node is not cached.
+   */
+  synchronized Node get(int id) {
+    int slot = hash(id) & mask;
+    for (int p = 0; p < MAX_PROBES; p++) {
+      Node n = values[slot];
+      if (n == null) {
+        break;
+      } else if (keys[slot] == id) {
+        hits++;
+        return n;
+      }
+      slot = (slot + 1) & mask;
+    }
+    misses++;
+    return null;
+  }
+
+  synchronized void put(int id, Node node) {
+    final int home = hash(id) & mask;
+    int slot = home;
+    for (int p = 0; p < MAX_PROBES; p++) {
+      if (values[slot] == null || keys[slot] == id) {
+        keys[slot] = id;
+        values[slot] = node;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    // replace a node of the probe sequence
+    slot = (home + nextVictim) & mask;
+    nextVictim = (nextVictim + 1) % MAX_PROBES;
+    keys[slot] = id;
+    values[slot] = node;
+  }
+
+  synchronized void clear() {
+    Arrays.fill(values, null);
+  }
+
+  synchronized long getHits() {
+    return hits;
+  }
+
+  synchronized long getMisses() {
+    return misses;
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.model;
+
+import org.corpus_tools.graphannis.errors.GraphANNISException;
+
+/**
+ * Callback for the nodes reached by a traversal of a {@link Graph}.
+ *
+ * Only the internal node ID is passed to the visitor. If the labels of the node are needed, they
+ * can be fetched with {@link Graph#getNodeForID(int)}.
+ */
+@FunctionalInterface
+public interface NodeVisitor {
+
+  /**
+   * Called once for each reached node, including the start node with distance 0.
+   *
+   * @param nodeID The internal ID of the node.
+   * @param distance The number of edges between the start node and this node on the path of the
+   *        traversal.
+   * @return True if the traversal should continue with the neighbors of this node, false if they
+   *         should be skipped.
+   * @throws GraphANNISException
+   */
+  boolean visit(int nodeID, int distance) throws GraphANNISException;
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.model;
+
+import java.util.Arrays;
+
+/**
+ * The ingoing edges of all nodes of one component, stored as compact arrays.
+ *
+ * The targets are sorted ascending and the sources of the edges of each target are stored in a
+ * consecutive range, so the sources of a node are found with a binary search.
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+class ReverseIndex {
+
+  private static final int[] EMPTY = new int[0];
+
+  /** All nodes with at least one ingoing edge, sorted ascending. */
+  private final int[] targets;
+  /** The position of the first source of each target, with an additional end position. */
+  private final int[] start;
+  private final int[] sources;
+
+  /**
+   * Create the index from a list of edges.
+   *
+   * @param edgeSources The source node of each edge.
+   * @param edgeTargets The target node of each edge.
+   */
+  ReverseIndex(IntBuffer edgeSources, IntBuffer edgeTargets) {
+    final int numberOfEdges = edgeSources.size();
+    // sort the edges by their target and source
+    long[] edges = new long[numberOfEdges];
+    for (int i = 0; i < numberOfEdges; i++) {
+      edges[i] = ((long) edgeTargets.get(i) << 32) | (edgeSources.get(i) & 0xFFFFFFFFL);
+    }
+    Arrays.sort(edges);
+
+    IntBuffer distinctTargets = new IntBuffer();
+    IntBuffer targetStart = new IntBuffer();
+    this.sources = new int[numberOfEdges];
+    for (int i = 0; i < numberOfEdges; i++) {
+      int target = (int) (edges[i] >> 32);
+      if (i == 0 || target != distinctTargets.get(distinctTargets.size() - 1)) {
+        distinctTargets.add(target);
+        targetStart.add(i);
+      }
+      sources[i] = (int) edges[i];
+    }
+    targetStart.add(numberOfEdges);
+
+    this.targets = distinctTargets.toArray();
+    this.start = targetStart.toArray();
+  }
+
+  /**
+   * @return The sources of all edges to the given node, sorted ascending.
+   */
+  int[] sourcesOf(int target) {
+    int i = Arrays.binarySearch(targets, target);
+    if (i < 0) {
+      return EMPTY;
+    }
+    return Arrays.copyOfRange(sources, start[i], start[i + 1]);
+  }
+
+  /**
+   * Add the sources of all edges to the given node to the result.
+   */
+  void addSourcesOf(int target, IntBuffer result) {
+    int i = Arrays.binarySearch(targets, target);
+    if (i >= 0) {
+      for (int s = start[i]; s < start[i + 1]; s++) {
+        result.add(sources[s]);
+      }
+    }
+  }
+
+  /**
+   * @return The number of edges in this index.
+   */
+  int size() {
+    return sources.length;
+  }
+}
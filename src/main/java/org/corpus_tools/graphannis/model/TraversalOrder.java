@@ -0,0 +1,24 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.corpus_tools.graphannis.model;
+
+/**
+ * The order in which the nodes of a {@link Graph} are visited by a traversal.
+ */
+public enum TraversalOrder {
+  /** Visit all nodes with distance {@code n} before the nodes with distance {@code n + 1}. */
+  BreadthFirst,
+  /** Visit all descendants of a node before its next sibling (pre-order). */
+  DepthFirst
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corpus_tools.graphannis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.corpus_tools.graphannis.errors.GraphANNISException;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class GraphUpdateBuilderTest {
+
+	@Test
+	public void testEstimatedSizeIgnoresCapacity() throws GraphANNISException {
+		GraphUpdateBuilder builder = new GraphUpdateBuilder();
+		assertEquals(0, builder.estimatedSize());
+
+		builder.addNode("doc#t1");
+		long oneNode = builder.estimatedSize();
+		assertTrue(oneNode > 0);
+
+		// grow the event buffer far beyond its initial capacity
+		for (int i = 0; i < 10000; i++) {
+			builder.addNode("doc#t1");
+		}
+		// the strings are shared, so only the events themselves add to the size
+		assertEquals(oneNode + 10000L * 3 * 4, builder.estimatedSize());
+
+		builder.close();
+		assertEquals(0, builder.estimatedSize());
+	}
+}
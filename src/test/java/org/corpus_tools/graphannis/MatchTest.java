@@ -0,0 +1,113 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corpus_tools.graphannis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.corpus_tools.graphannis.model.QName;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class MatchTest {
+
+	@Test
+	public void testParse() {
+		Match m = Match.parse("tiger::pos::pcc2/4282#tok_1 cat::pcc2/4282#n2  pcc2/4282#tok_3");
+
+		assertEquals(3, m.size());
+		assertEquals(Arrays.asList("pcc2/4282#tok_1", "pcc2/4282#n2", "pcc2/4282#tok_3"), m.getNodeNames());
+
+		assertTrue(m.hasAnnoKey(0));
+		assertEquals("tiger", m.getAnnoNamespace(0));
+		assertEquals("pos", m.getAnnoName(0));
+		assertEquals(new QName("tiger", "pos"), m.getAnnoKey(0));
+
+		assertTrue(m.hasAnnoKey(1));
+		assertNull(m.getAnnoNamespace(1));
+		assertEquals("cat", m.getAnnoName(1));
+		assertEquals(new QName("", "cat"), m.getAnnoKey(1));
+
+		assertFalse(m.hasAnnoKey(2));
+		assertNull(m.getAnnoName(2));
+		assertNull(m.getAnnoKey(2));
+
+		for (int i = 0; i < m.size(); i++) {
+			assertEquals("pcc2/4282", m.getDocumentPath(i));
+		}
+	}
+
+	@Test
+	public void testSameAsSplit() {
+		String[] lines = { "a::b::c::d", "ns::name::salt:/corpus/doc#node", " leading", "x#y#z", "" };
+		for (String line : lines) {
+			Match m = Match.parse(line);
+			int n = 0;
+			for (String part : line.split("\\s+")) {
+				if (part.isEmpty()) {
+					continue;
+				}
+				String[] elements = part.split("::", 3);
+				assertEquals(elements[elements.length - 1], m.getNodeName(n++));
+			}
+			assertEquals(n, m.size());
+		}
+		assertEquals("c::d", Match.parse("a::b::c::d").getNodeName(0));
+		assertEquals("x", Match.parse("x#y#z").getDocumentPath(0));
+		assertNull(Match.parse("ns::na#me::node").getDocumentPath(0));
+		assertEquals(0, Match.parse(null).size());
+	}
+
+	@Test
+	public void testNodeNamesLikeSplit() {
+		String[] lines = { "", " ", "  ", " leading", "trailing ", "\ta\n b\r\n", "a::", "::x", "a:::b",
+				"\u001Ca b", "\u00A0a", "tiger::pos::pcc2/4282#tok_1 cat::pcc2/4282#n2" };
+		for (String line : lines) {
+			assertEquals("Match \"" + line + "\"", splitNodeNames(line), Util.nodeNamesFromMatch(line));
+		}
+		assertEquals(Arrays.asList(""), Util.nodeNamesFromMatch(""));
+		assertEquals(Arrays.asList("", "leading"), Util.nodeNamesFromMatch(" leading"));
+		assertTrue(Util.nodeNamesFromMatch(null).isEmpty());
+
+		// the Match type itself has no empty node names
+		assertEquals(0, Match.parse("").size());
+		assertEquals(Arrays.asList("leading"), Match.parse(" leading").getNodeNames());
+	}
+
+	/** The implementation of {@link Util#nodeNamesFromMatch(String)} before the Match parser. */
+	private static List<String> splitNodeNames(String matchLine) {
+		List<String> result = new ArrayList<>();
+		for (String m : matchLine.split("\\s+")) {
+			String[] elements = m.split("::", 3);
+			result.add(elements[elements.length - 1]);
+		}
+		return result;
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testOutOfBounds() {
+		Match.parse("a b").getNodeName(2);
+	}
+}
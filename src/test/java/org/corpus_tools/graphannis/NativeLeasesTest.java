@@ -0,0 +1,70 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corpus_tools.graphannis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class NativeLeasesTest {
+
+	@Test
+	public void testCloseWaitsForLeases() throws Exception {
+		NativeLeases leases = new NativeLeases();
+		assertTrue(leases.tryAcquire());
+		assertTrue(leases.tryAcquire());
+
+		CompletableFuture<Boolean> closed = CompletableFuture.supplyAsync(() -> {
+			try {
+				return leases.close(TimeUnit.SECONDS.toNanos(10));
+			} catch (InterruptedException ex) {
+				throw new RuntimeException(ex);
+			}
+		});
+		for (int i = 0; i < 500 && !leases.isClosed(); i++) {
+			Thread.sleep(10);
+		}
+		assertTrue(leases.isClosed());
+		assertFalse(leases.tryAcquire());
+
+		leases.release();
+		Thread.sleep(50);
+		assertFalse(closed.isDone());
+
+		leases.release();
+		assertTrue(closed.get(10, TimeUnit.SECONDS));
+		assertEquals(0, leases.getActive());
+	}
+
+	@Test
+	public void testCloseTimeout() throws Exception {
+		NativeLeases leases = new NativeLeases();
+		assertTrue(leases.tryAcquire());
+		assertFalse(leases.close(TimeUnit.MILLISECONDS.toNanos(50)));
+		assertEquals(1, leases.getActive());
+		leases.release();
+		assertTrue(leases.close(0));
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corpus_tools.graphannis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.corpus_tools.graphannis.QueryScheduler.Priority;
+import org.corpus_tools.graphannis.errors.QueryRejectedException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class QuerySchedulerTest {
+
+	/**
+	 * Threads for the blocked and waiting calls, independent of the number of available cores.
+	 */
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		executor.shutdownNow();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Block the only slot of the scheduler until the returned latch is released.
+	 */
+	private CountDownLatch blockSlot(QueryScheduler scheduler) throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		executor.submit(() -> scheduler.execute(Priority.Batch, () -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			return null;
+		}));
+		started.await();
+		return release;
+	}
+
+	private static void awaitQueued(QueryScheduler scheduler, Priority priority, int expected)
+			throws InterruptedException {
+		for (int i = 0; i < 500 && scheduler.getQueued(priority) < expected; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(expected, scheduler.getQueued(priority));
+	}
+
+	@Test
+	public void testInteractiveBeforeBatch() throws Exception {
+		QueryScheduler scheduler = new QueryScheduler(1);
+		CountDownLatch release = blockSlot(scheduler);
+
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+		List<Future<Boolean>> calls = new ArrayList<>();
+		calls.add(executor.submit(() -> scheduler.execute(Priority.Batch, () -> order.add("batch"))));
+		awaitQueued(scheduler, Priority.Batch, 1);
+		calls.add(executor.submit(
+				() -> scheduler.execute(Priority.Interactive, () -> order.add("interactive"))));
+		awaitQueued(scheduler, Priority.Interactive, 1);
+
+		release.countDown();
+		for (Future<Boolean> c : calls) {
+			c.get(10, TimeUnit.SECONDS);
+		}
+		assertEquals("interactive", order.get(0));
+		assertEquals("batch", order.get(1));
+		assertEquals(0, scheduler.getRunning());
+	}
+
+	@Test
+	public void testQueueLimit() throws Exception {
+		QueryScheduler scheduler = new QueryScheduler(1);
+		scheduler.setMaxQueued(Priority.Batch, 0);
+		CountDownLatch release = blockSlot(scheduler);
+		try {
+			scheduler.execute(Priority.Batch, () -> null);
+			fail("Call should have been rejected");
+		} catch (QueryRejectedException ex) {
+			assertEquals(1, scheduler.getRejected());
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void testMaxQueueTime() throws Exception {
+		QueryScheduler scheduler = new QueryScheduler(1);
+		scheduler.setMaxQueueTime(Priority.Interactive, 50, TimeUnit.MILLISECONDS);
+		CountDownLatch release = blockSlot(scheduler);
+		try {
+			Future<String> call =
+					executor.submit(() -> scheduler.execute(Priority.Interactive, () -> "executed"));
+			try {
+				call.get(10, TimeUnit.SECONDS);
+				fail("Call should have expired");
+			} catch (ExecutionException ex) {
+				assertTrue(ex.getCause() instanceof QueryRejectedException);
+			}
+			assertEquals(1, scheduler.getExpired());
+			assertEquals(0, scheduler.getQueued(Priority.Interactive));
+		} finally {
+			release.countDown();
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corpus_tools.graphannis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.corpus_tools.graphannis.CorpusStorageManager.QueryLanguage;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class SingleFlightTest {
+
+	@Test
+	public void testCoalescing() throws Exception {
+		final int callers = 4;
+		SingleFlight flights = new SingleFlight();
+		QueryCache.Key key = QueryCache.key("find", Arrays.asList("corpus"), "tok", QueryLanguage.AQL);
+
+		AtomicInteger executions = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(callers);
+		try {
+			List<Future<String[]>> results = new ArrayList<>();
+			for (int i = 0; i < callers; i++) {
+				results.add(executor.submit(() -> flights.execute(key, () -> {
+					executions.incrementAndGet();
+					started.countDown();
+					// keep the execution running until all other callers are waiting for it
+					try {
+						release.await();
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+					}
+					return new String[] { "a", "b" };
+				}, String[]::clone)));
+			}
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+			for (int i = 0; i < 1000 && flights.getCoalesced() < callers - 1; i++) {
+				Thread.sleep(10);
+			}
+			release.countDown();
+
+			List<String[]> copies = new ArrayList<>();
+			for (Future<String[]> r : results) {
+				String[] actual = r.get(10, TimeUnit.SECONDS);
+				assertArrayEquals(new String[] { "a", "b" }, actual);
+				for (String[] other : copies) {
+					// each caller must get its own copy
+					assertTrue(other != actual);
+				}
+				copies.add(actual);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertEquals(1, executions.get());
+		assertEquals(callers - 1, flights.getCoalesced());
+	}
+}
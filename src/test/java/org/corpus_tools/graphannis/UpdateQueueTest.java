@@ -0,0 +1,90 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corpus_tools.graphannis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class UpdateQueueTest {
+
+	/**
+	 * A builder which kills the worker, like an error of the native library would.
+	 */
+	private static class FailingBuilder extends GraphUpdateBuilder {
+		@Override
+		public int getPendingEvents() {
+			throw new UnsatisfiedLinkError("no native library");
+		}
+	}
+
+	private static void assertFailed(CompletableFuture<Void> result) throws Exception {
+		try {
+			result.get(10, TimeUnit.SECONDS);
+			fail("Update should have failed");
+		} catch (ExecutionException ex) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testWorkerError() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// the storage is never used, since the worker fails before the first update
+			UpdateQueue queue = new UpdateQueue(null, 100, executor);
+
+			// block the executor until both updates are queued
+			CountDownLatch release = new CountDownLatch(1);
+			executor.execute(() -> {
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			CompletableFuture<Void> failing = queue.submit("corpus", new FailingBuilder());
+			GraphUpdateBuilder other = new GraphUpdateBuilder();
+			other.addNode("doc#t1");
+			CompletableFuture<Void> pending = queue.submit("corpus", other);
+			assertEquals(2, queue.getPendingUpdates());
+			release.countDown();
+
+			assertFailed(failing);
+			assertFailed(pending);
+			assertEquals(0, queue.getPendingUpdates());
+			// the remaining update has been disposed
+			assertEquals(0, other.getPendingEvents());
+
+			// the queue of the corpus has been removed, so closing does not wait forever
+			queue.close();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -15,18 +15,59 @@
  */
 package org.corpus_tools.graphannis.api;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.corpus_tools.graphannis.AsyncCorpusStorageManager;
 import org.corpus_tools.graphannis.CorpusStorageManager;
+import org.corpus_tools.graphannis.CorpusStorageManager.CountResult;
+import org.corpus_tools.graphannis.CorpusStorageManager.QueryLanguage;
+import org.corpus_tools.graphannis.CorpusStorageManager.ResultOrder;
+import org.corpus_tools.graphannis.DocumentGraphCache;
+import org.corpus_tools.graphannis.GraphUpdate;
+import org.corpus_tools.graphannis.GraphUpdateBuilder;
 import org.corpus_tools.graphannis.LogLevel;
+import org.corpus_tools.graphannis.MatchCursor;
+import org.corpus_tools.graphannis.QueryCache;
 import org.corpus_tools.graphannis.SaltImport;
+import org.corpus_tools.graphannis.UpdateQueue;
+import org.corpus_tools.graphannis.UpdateSession;
+import org.corpus_tools.graphannis.Util;
 import org.corpus_tools.graphannis.errors.GraphANNISException;
+import org.corpus_tools.graphannis.errors.QueryRejectedException;
+import org.corpus_tools.graphannis.errors.QueryTimeoutException;
+import org.corpus_tools.graphannis.model.Component;
+import org.corpus_tools.graphannis.model.ComponentType;
+import org.corpus_tools.graphannis.model.Edge;
+import org.corpus_tools.graphannis.model.FrequencyTableEntry;
 import org.corpus_tools.graphannis.model.Graph;
+import org.corpus_tools.graphannis.model.GraphSnapshot;
+import org.corpus_tools.graphannis.model.Node;
+import org.corpus_tools.graphannis.model.QName;
+import org.corpus_tools.graphannis.model.TraversalOrder;
 import org.corpus_tools.salt.common.SDocument;
 import org.corpus_tools.salt.common.SDocumentGraph;
+import org.corpus_tools.salt.common.SToken;
 import org.corpus_tools.salt.common.SaltProject;
 import org.corpus_tools.salt.samples.SampleGenerator;
 import org.junit.After;
@@ -104,4 +145,755 @@ public class CorpusStorageManagerTest {
 		assertFalse(storage.deleteCorpus("nonexistingcorpus"));
 	}
 
+	@Test
+	public void testFindCursor() throws GraphANNISException {
+		System.out.println("findCursor");
+
+		String corpusName = "findCursorExample";
+
+		importSampleCorpus(corpusName);
+
+		String[] expected = storage.find(Arrays.asList(corpusName), "tok", QueryLanguage.AQL, 0,
+				Optional.empty());
+
+		List<String> actual = new ArrayList<>();
+		// use a page size which does not divide the number of results
+		try (MatchCursor cursor = storage.findCursor(Arrays.asList(corpusName), "tok", QueryLanguage.AQL,
+				3)) {
+			while (cursor.hasNext()) {
+				actual.add(cursor.next());
+			}
+		}
+		assertArrayEquals(expected, actual.toArray(new String[0]));
+	}
+
+	@Test
+	public void testSnapshot() throws GraphANNISException {
+		System.out.println("snapshot");
+
+		String corpusName = "snapshotExample";
+
+		SaltProject p = importSampleCorpus(corpusName);
+
+		SDocumentGraph docOrig = p.getCorpusGraphs().get(0).getDocuments().get(0).getDocumentGraph();
+		Graph graph = storage.subcorpusGraph(corpusName, Arrays.asList(docOrig.getId()));
+		GraphSnapshot snapshot = graph.snapshot();
+
+		int numberOfNodes = 0;
+		for (Node n : graph.getNodesByType("node")) {
+			int idx = snapshot.indexOf(n.getId());
+			assertEquals(n.getName(), snapshot.getNodeName(idx));
+			assertEquals(n.getLabels().get(Graph.TOK), snapshot.getAnnotation(idx, Graph.TOK));
+			numberOfNodes++;
+		}
+		int numberOfSnapshotNodes = 0;
+		for (int idx = 0; idx < snapshot.getNodeCount(); idx++) {
+			if ("node".equals(snapshot.getNodeType(idx))) {
+				numberOfSnapshotNodes++;
+			}
+		}
+		assertEquals(numberOfNodes, numberOfSnapshotNodes);
+
+		// each outgoing edge of the native graph must be part of the adjacency of its source node
+		int numberOfEdges = 0;
+		for (String type : GraphSnapshot.DEFAULT_NODE_TYPES) {
+			for (Node n : graph.getNodesByType(type)) {
+				int source = snapshot.indexOf(n.getId());
+				for (Edge e : graph.getOutgoingEdges(n)) {
+					int c = snapshot.getComponentIndex(e.getComponent());
+					assertTrue(c >= 0);
+					int target = snapshot.indexOf(e.getTargetID());
+					assertTrue(target >= 0);
+					int found = -1;
+					for (int pos = snapshot.getOutgoingStart(c, source); pos < snapshot.getOutgoingEnd(c,
+							source); pos++) {
+						if (snapshot.getEdgeTarget(c, pos) == target) {
+							found = pos;
+						}
+					}
+					assertTrue(found >= 0);
+					assertEquals(e.getLabels(), snapshot.getEdgeLabels(c, found));
+					numberOfEdges++;
+				}
+			}
+		}
+		assertTrue(numberOfEdges > 0);
+		int numberOfSnapshotEdges = 0;
+		for (int c = 0; c < snapshot.getComponents().size(); c++) {
+			numberOfSnapshotEdges += snapshot.getEdgeCount(c);
+		}
+		assertEquals(numberOfEdges, numberOfSnapshotEdges);
+		assertEquals(0, snapshot.getDroppedEdgeCount());
+
+		// a subset without the corpus nodes drops the edges to them
+		List<Integer> nodeIndexes = new ArrayList<>();
+		for (int idx = 0; idx < snapshot.getNodeCount(); idx++) {
+			if ("node".equals(snapshot.getNodeType(idx))) {
+				nodeIndexes.add(idx);
+			}
+		}
+		int expectedDropped = 0;
+		for (int c = 0; c < snapshot.getComponents().size(); c++) {
+			for (int idx : nodeIndexes) {
+				for (int pos = snapshot.getOutgoingStart(c, idx); pos < snapshot.getOutgoingEnd(c, idx); pos++) {
+					if (!"node".equals(snapshot.getNodeType(snapshot.getEdgeTarget(c, pos)))) {
+						expectedDropped++;
+					}
+				}
+			}
+		}
+		GraphSnapshot subset = snapshot.subset(nodeIndexes.stream().mapToInt(Integer::intValue).toArray());
+		assertTrue(expectedDropped > 0);
+		assertEquals(expectedDropped, subset.getDroppedEdgeCount());
+	}
+
+	@Test
+	public void testOutgoingEdgesByComponent() throws GraphANNISException {
+		System.out.println("outgoingEdgesByComponent");
+
+		String corpusName = "componentExample";
+
+		SaltProject p = importSampleCorpus(corpusName);
+
+		SDocumentGraph docOrig = p.getCorpusGraphs().get(0).getDocuments().get(0).getDocumentGraph();
+		try (Graph graph = storage.subcorpusGraph(corpusName, Arrays.asList(docOrig.getId()))) {
+			int numberOfEdges = 0;
+			for (Node n : graph.getNodesByType("node")) {
+				for (Edge e : graph.getOutgoingEdges(n, ComponentType.Coverage)) {
+					// a new but equal component instance must find the same edges
+					Component c = new Component(e.getComponent().getType(), e.getComponent().getLayer(),
+							e.getComponent().getName());
+					assertTrue(graph.getOutgoingEdges(n, c).contains(e));
+
+					// changing the component of a returned edge must not change the component table
+					e.getComponent().setName("changed");
+					assertTrue(graph.getOutgoingEdges(n, c).contains(new Edge(e.getSourceID(), e.getTargetID(), c,
+							null, graph)));
+					numberOfEdges++;
+				}
+			}
+			assertTrue(numberOfEdges > 0);
+		}
+	}
+
+	@Test
+	public void testQueryCache() throws GraphANNISException {
+		System.out.println("queryCache");
+
+		String corpusName = "queryCacheExample";
+
+		importSampleCorpus(corpusName);
+
+		QueryCache cache = new QueryCache();
+		storage.setQueryCache(cache);
+
+		long count = storage.count(Arrays.asList(corpusName), "tok", QueryLanguage.AQL);
+		// different whitespace must not prevent a cache hit
+		assertEquals(count, storage.count(Arrays.asList(corpusName), " tok\n", QueryLanguage.AQL));
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+
+		// updating the corpus must remove the cached count
+		GraphUpdate update = new GraphUpdate();
+		update.addNode(corpusName + "/additional#tok1");
+		update.addNodeLabel(corpusName + "/additional#tok1", "annis", "tok", "additional");
+		storage.applyUpdate(corpusName, update);
+		assertEquals(1, cache.getInvalidations());
+		assertEquals(count + 1, storage.count(Arrays.asList(corpusName), "tok", QueryLanguage.AQL));
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void testAsync() throws Exception {
+		System.out.println("async");
+
+		String corpusName = "asyncExample";
+
+		importSampleCorpus(corpusName);
+
+		try (AsyncCorpusStorageManager async = new AsyncCorpusStorageManager(storage, 2)) {
+			CompletableFuture<Long> count = async.count(Arrays.asList(corpusName), "tok", QueryLanguage.AQL);
+			CompletableFuture<String[]> matches = async.find(Arrays.asList(corpusName), "tok", QueryLanguage.AQL,
+					0, Optional.empty());
+			assertEquals(storage.count(Arrays.asList(corpusName), "tok", QueryLanguage.AQL), count.get().longValue());
+			assertEquals(count.get().longValue(), matches.get().length);
+
+			CompletableFuture<Long> invalid = async.count(Arrays.asList(corpusName), "tok &", QueryLanguage.AQL);
+			try {
+				invalid.get();
+				fail("Invalid query did not fail");
+			} catch (ExecutionException ex) {
+				assertTrue(ex.getCause() instanceof GraphANNISException);
+			}
+		}
+	}
+
+	@Test
+	public void testParallelCorpusExecution() throws GraphANNISException {
+		System.out.println("parallelCorpusExecution");
+
+		List<String> corpora = Arrays.asList("parallelExample1", "parallelExample2", "parallelExample3");
+		for (String corpusName : corpora) {
+			importSampleCorpus(corpusName);
+		}
+
+		CountResult expectedCount = storage.countExtra(corpora, "tok", QueryLanguage.AQL);
+		long expectedPlainCount = storage.count(corpora, "tok", QueryLanguage.AQL);
+		List<FrequencyTableEntry<String>> expectedFrequency = storage.frequency(corpora, "tok",
+				QueryLanguage.AQL, "1:tok");
+		List<FrequencyTableEntry<String>> expectedEmptyFrequency = storage.frequency(corpora,
+				"pos=\"nonexisting\"", QueryLanguage.AQL, "1:pos");
+		assertNotNull(expectedEmptyFrequency);
+		assertTrue(expectedEmptyFrequency.isEmpty());
+
+		storage.setParallelCorpusExecution(true);
+		try {
+			CountResult count = storage.countExtra(corpora, "tok", QueryLanguage.AQL);
+			assertEquals(expectedCount.matchCount, count.matchCount);
+			assertEquals(expectedCount.documentCount, count.documentCount);
+			assertEquals(expectedPlainCount, storage.count(corpora, "tok", QueryLanguage.AQL));
+			assertEquals(0, storage.count(corpora, "pos=\"nonexisting\"", QueryLanguage.AQL));
+
+			Map<String, CountResult> byCorpus = storage.countExtraByCorpus(corpora, "tok", QueryLanguage.AQL);
+			assertEquals(corpora, new ArrayList<>(byCorpus.keySet()));
+			assertEquals(expectedCount.matchCount / corpora.size(), byCorpus.get(corpora.get(0)).matchCount);
+
+			List<FrequencyTableEntry<String>> frequency = storage.frequency(corpora, "tok", QueryLanguage.AQL,
+					"1:tok");
+			assertEquals(expectedFrequency.size(), frequency.size());
+			Map<List<String>, Long> expectedByTuple = new HashMap<>();
+			for (FrequencyTableEntry<String> e : expectedFrequency) {
+				expectedByTuple.put(Arrays.asList(e.getTuple()), e.getCount());
+			}
+			for (FrequencyTableEntry<String> e : frequency) {
+				assertEquals(expectedByTuple.get(Arrays.asList(e.getTuple())), Long.valueOf(e.getCount()));
+			}
+
+			assertEquals(expectedEmptyFrequency,
+					storage.frequency(corpora, "pos=\"nonexisting\"", QueryLanguage.AQL, "1:pos"));
+		} finally {
+			storage.setParallelCorpusExecution(false);
+		}
+	}
+
+	@Test
+	public void testFindParallel() throws GraphANNISException {
+		System.out.println("findParallel");
+
+		List<String> corpora = Arrays.asList("findParallelB", "findParallelA", "findParallelC");
+		for (String corpusName : corpora) {
+			importSampleCorpus(corpusName);
+		}
+
+		long count = storage.count(corpora, "tok", QueryLanguage.AQL);
+		for (ResultOrder order : Arrays.asList(ResultOrder.Normal, ResultOrder.Inverted)) {
+			// pages which start and end inside a corpus, span several corpora or exceed the result
+			long[][] pages = { { 0, 5 }, { count / 3 - 2, 4 }, { 1, count }, { count - 3, 10 } };
+			for (long[] page : pages) {
+				String[] expected = storage.find(corpora, "tok", QueryLanguage.AQL, page[0], Optional.of(page[1]),
+						order);
+				String[] actual = storage.findParallel(corpora, "tok", QueryLanguage.AQL, page[0],
+						Optional.of(page[1]), order);
+				assertArrayEquals(expected, actual);
+			}
+			assertArrayEquals(storage.find(corpora, "tok", QueryLanguage.AQL, 0, Optional.empty(), order),
+					storage.findParallel(corpora, "tok", QueryLanguage.AQL, 0, Optional.empty(), order));
+		}
+	}
+
+	@Test
+	public void testGraphUpdateBuilder() throws GraphANNISException {
+		System.out.println("graphUpdateBuilder");
+
+		// use a threshold which causes several flushes
+		GraphUpdateBuilder builder = new GraphUpdateBuilder(7);
+		GraphUpdate update = new GraphUpdate();
+		for (int t = 0; t < 20; t++) {
+			String tokName = "root/doc#t" + t;
+			builder.addNode(tokName);
+			update.addNode(tokName);
+			builder.addNodeLabel(tokName, "annis", "tok", "token" + (t % 3));
+			update.addNodeLabel(tokName, "annis", "tok", "token" + (t % 3));
+			if (t > 0) {
+				builder.addEdge("root/doc#t" + (t - 1), tokName, "annis", "Ordering", "");
+				update.addEdge("root/doc#t" + (t - 1), tokName, "annis", "Ordering", "");
+			}
+		}
+		builder.deleteNode("root/doc#t19");
+		update.deleteNode("root/doc#t19");
+		storage.applyUpdate("builderExample", builder);
+		storage.applyUpdate("updateExample", update);
+
+		assertEquals(0, builder.getPendingEvents());
+		assertEquals(storage.count(Arrays.asList("updateExample"), "tok . tok", QueryLanguage.AQL),
+				storage.count(Arrays.asList("builderExample"), "tok . tok", QueryLanguage.AQL));
+		assertEquals(storage.count(Arrays.asList("updateExample"), "tok=\"token1\"", QueryLanguage.AQL),
+				storage.count(Arrays.asList("builderExample"), "tok=\"token1\"", QueryLanguage.AQL));
+	}
+
+	@Test
+	public void testUpdateSession() throws GraphANNISException {
+		System.out.println("updateSession");
+
+		List<UpdateSession.Progress> reported = new ArrayList<>();
+		UpdateSession session = storage.createUpdateSession("sessionExample", 10, Long.MAX_VALUE);
+		session.setProgressListener(reported::add);
+		for (int t = 0; t < 25; t++) {
+			String tokName = "sessionExample/doc#t" + t;
+			session.addNode(tokName);
+			session.addNodeLabel(tokName, "annis", "tok", "token" + t);
+		}
+		UpdateSession.Progress progress = session.finish();
+
+		assertEquals(50, progress.getAppliedEvents());
+		assertEquals(5, progress.getAppliedChunks());
+		assertEquals(5, reported.size());
+		assertEquals(25, storage.count(Arrays.asList("sessionExample"), "tok", QueryLanguage.AQL));
+	}
+
+	@Test
+	public void testUpdateSessionByteLimit() throws GraphANNISException {
+		System.out.println("updateSessionByteLimit");
+
+		// use the size of 10 tokens as limit, all token names have the same length
+		GraphUpdateBuilder tenTokens = new GraphUpdateBuilder();
+		for (int t = 0; t < 10; t++) {
+			addSessionToken(tenTokens, t);
+		}
+		UpdateSession session = storage.createUpdateSession("sessionBytesExample", Integer.MAX_VALUE,
+				tenTokens.estimatedSize());
+		tenTokens.close();
+
+		for (int t = 0; t < 25; t++) {
+			String tokName = String.format("sessionBytesExample/doc#t%03d", t);
+			session.addNode(tokName);
+			session.addNodeLabel(tokName, "annis", "tok", String.format("token%03d", t));
+		}
+		UpdateSession.Progress progress = session.finish();
+
+		// two full chunks with 10 tokens and the remaining 5 tokens when finishing the session
+		assertEquals(50, progress.getAppliedEvents());
+		assertEquals(3, progress.getAppliedChunks());
+		assertEquals(25, storage.count(Arrays.asList("sessionBytesExample"), "tok", QueryLanguage.AQL));
+	}
+
+	private static void addSessionToken(GraphUpdateBuilder builder, int t) throws GraphANNISException {
+		String tokName = String.format("sessionBytesExample/doc#t%03d", t);
+		builder.addNode(tokName);
+		builder.addNodeLabel(tokName, "annis", "tok", String.format("token%03d", t));
+	}
+
+	@Test
+	public void testUpdateQueue() throws Exception {
+		System.out.println("updateQueue");
+
+		List<CompletableFuture<Void>> results = new ArrayList<>();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try (UpdateQueue queue = new UpdateQueue(storage, 100_000, executor)) {
+			// block the only worker thread, so all updates are queued before the first one is applied
+			CountDownLatch workerBlocked = new CountDownLatch(1);
+			executor.execute(() -> {
+				try {
+					workerBlocked.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			for (int t = 0; t < 50; t++) {
+				GraphUpdateBuilder update = new GraphUpdateBuilder();
+				update.addNode("queueExample/doc#t" + t);
+				update.addNodeLabel("queueExample/doc#t" + t, "annis", "tok", "token" + t);
+				results.add(queue.submit("queueExample", update));
+			}
+			assertEquals(50, queue.getPendingUpdates());
+			workerBlocked.countDown();
+
+			for (CompletableFuture<Void> r : results) {
+				r.get();
+			}
+			assertEquals(50, queue.getAppliedUpdates());
+			// all queued updates have been merged into a single native update
+			assertEquals(1, queue.getAppliedBatches());
+
+			// an invalid update merged with valid ones must only fail its own future
+			CountDownLatch workerBlockedAgain = new CountDownLatch(1);
+			executor.execute(() -> {
+				try {
+					workerBlockedAgain.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			GraphUpdateBuilder invalid = new GraphUpdateBuilder();
+			invalid.addEdge("queueExample/doc#t0", "queueExample/doc#t1", "annis", "NoSuchComponentType", "");
+			CompletableFuture<Void> invalidResult = queue.submit("queueExample", invalid);
+			GraphUpdateBuilder valid = new GraphUpdateBuilder();
+			valid.addNode("queueExample/doc#t50");
+			valid.addNodeLabel("queueExample/doc#t50", "annis", "tok", "token50");
+			CompletableFuture<Void> validResult = queue.submit("queueExample", valid);
+			workerBlockedAgain.countDown();
+
+			try {
+				invalidResult.get();
+				fail("Invalid update did not fail");
+			} catch (ExecutionException ex) {
+				assertTrue(ex.getCause() instanceof GraphANNISException);
+			}
+			validResult.get();
+			assertEquals(51, queue.getAppliedUpdates());
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(51, storage.count(Arrays.asList("queueExample"), "tok", QueryLanguage.AQL));
+	}
+
+	@Test
+	public void testSubgraphs() throws GraphANNISException {
+		System.out.println("subgraphs");
+
+		String corpusName = "subgraphsExample";
+
+		importSampleCorpus(corpusName);
+
+		List<List<String>> matches = new ArrayList<>();
+		for (String m : storage.find(Arrays.asList(corpusName), "tok", QueryLanguage.AQL, 0, Optional.of(5L))) {
+			matches.add(Util.nodeNamesFromMatch(m));
+		}
+		// add a duplicate match
+		matches.add(matches.get(0));
+
+		List<Graph> graphs = storage.subgraphs(corpusName, matches, 2, 2, Optional.empty());
+		assertEquals(matches.size(), graphs.size());
+		assertTrue(graphs.get(0) != graphs.get(matches.size() - 1));
+		for (int m = 0; m < matches.size(); m++) {
+			Graph expected = storage.subgraph(corpusName, matches.get(m), 2, 2, Optional.empty());
+			List<String> expectedNames = new ArrayList<>();
+			for (Node n : expected.getNodesByType("node")) {
+				expectedNames.add(n.getName());
+			}
+			List<String> actualNames = new ArrayList<>();
+			for (Node n : graphs.get(m).getNodesByType("node")) {
+				actualNames.add(n.getName());
+			}
+			expectedNames.sort(null);
+			actualNames.sort(null);
+			assertEquals(expectedNames, actualNames);
+			expected.close();
+		}
+
+		// the graph of the duplicate match must stay usable when the first one is closed
+		Graph first = graphs.get(0);
+		Graph duplicate = graphs.get(matches.size() - 1);
+		first.close();
+		try {
+			first.getNodesByType("node");
+			fail("Closed graph can still be used");
+		} catch (GraphANNISException ex) {
+			// expected
+		}
+		assertTrue(duplicate.getNodesByType("node").iterator().hasNext());
+		for (Graph g : graphs) {
+			g.close();
+		}
+
+		// the same subgraphs are retrieved in parallel if a pool is set
+		storage.setParallelCorpusExecution(true);
+		try {
+			List<Graph> parallel = storage.subgraphs(corpusName, matches, 2, 2, Optional.empty());
+			assertEquals(matches.size(), parallel.size());
+			for (Graph g : parallel) {
+				assertTrue(g.getNodesByType("node").iterator().hasNext());
+				g.close();
+			}
+		} finally {
+			storage.setParallelCorpusExecution(false);
+		}
+	}
+
+	@Test
+	public void testDocumentGraphCache() throws GraphANNISException {
+		System.out.println("documentGraphCache");
+
+		String corpusName = "documentCacheExample";
+
+		importSampleCorpus(corpusName);
+
+		String[] matches = storage.find(Arrays.asList(corpusName), "tok", QueryLanguage.AQL, 0, Optional.of(10L));
+		assertTrue(matches.length > 1);
+
+		// collect the expected subgraphs before the cache is enabled
+		List<List<String>> expectedNodes = new ArrayList<>();
+		List<List<String>> expectedEdges = new ArrayList<>();
+		for (String m : matches) {
+			GraphSnapshot g = storage.subgraphSnapshot(corpusName, Util.nodeNamesFromMatch(m), 2, 2, Optional.empty());
+			expectedNodes.add(nodesWithType(g));
+			expectedEdges.add(edges(g));
+		}
+
+		DocumentGraphCache cache = new DocumentGraphCache();
+		storage.setDocumentGraphCache(cache);
+		for (int m = 0; m < matches.length; m++) {
+			GraphSnapshot g = storage.subgraphSnapshot(corpusName, Util.nodeNamesFromMatch(matches[m]), 2, 2, Optional.empty());
+			assertEquals(expectedNodes.get(m), nodesWithType(g));
+			assertEquals(expectedEdges.get(m), edges(g));
+		}
+		assertTrue(cache.getHits() > 0);
+		assertTrue(cache.size() > 0);
+
+		storage.unloadCorpus(corpusName);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testQueryCoalescing() throws Exception {
+		System.out.println("queryCoalescing");
+
+		String corpusName = "coalescingExample";
+
+		importSampleCorpus(corpusName);
+
+		assertTrue(storage.isQueryCoalescing());
+		String[] expected = storage.find(Arrays.asList(corpusName), "tok", QueryLanguage.AQL, 0, Optional.empty());
+
+		List<CompletableFuture<String[]>> results = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			results.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return storage.find(Arrays.asList(corpusName), "tok", QueryLanguage.AQL, 0, Optional.empty());
+				} catch (GraphANNISException ex) {
+					throw new RuntimeException(ex);
+				}
+			}));
+		}
+		for (CompletableFuture<String[]> r : results) {
+			String[] actual = r.get();
+			assertArrayEquals(expected, actual);
+			// each caller must get its own copy
+			actual[0] = null;
+		}
+
+		storage.setQueryCoalescing(false);
+		assertFalse(storage.isQueryCoalescing());
+		assertArrayEquals(expected,
+				storage.find(Arrays.asList(corpusName), "tok", QueryLanguage.AQL, 0, Optional.empty()));
+		storage.setQueryCoalescing(true);
+	}
+
+	@Test
+	public void testTimeout() throws GraphANNISException {
+		System.out.println("timeout");
+
+		String corpusName = "timeoutExample";
+
+		importSampleCorpus(corpusName);
+
+		List<String> corpora = Arrays.asList(corpusName);
+		long expected = storage.count(corpora, "tok", QueryLanguage.AQL);
+		assertEquals(expected, storage.count(corpora, "tok", QueryLanguage.AQL, Duration.ofMinutes(1)));
+
+		String query = "node & node & node";
+		storage.setTimeoutRejection(2, Duration.ofMinutes(1));
+		for (int t = 0; t < 2; t++) {
+			try {
+				storage.count(corpora, query, QueryLanguage.AQL, Duration.ZERO);
+				fail("Query should have timed out");
+			} catch (QueryTimeoutException ex) {
+				// expected
+			}
+		}
+		try {
+			storage.find(corpora, query, QueryLanguage.AQL, 0, Optional.of(10L), ResultOrder.Normal, Duration.ofMinutes(1));
+			fail("Query should have been rejected");
+		} catch (QueryRejectedException ex) {
+			// expected
+		}
+
+		List<String> match = Util.nodeNamesFromMatch(storage.find(corpora, "tok", QueryLanguage.AQL, 0, Optional.of(1L))[0]);
+		for (int t = 0; t < 2; t++) {
+			try {
+				storage.subgraph(corpusName, match, 2, 2, Optional.empty(), Duration.ZERO);
+				fail("Subgraph should have timed out");
+			} catch (QueryTimeoutException ex) {
+				// expected
+			}
+		}
+		try {
+			storage.subgraph(corpusName, match, 2, 2, Optional.empty(), Duration.ofMinutes(1));
+			fail("Subgraph should have been rejected");
+		} catch (QueryRejectedException ex) {
+			// expected
+		}
+
+		storage.setTimeoutRejection(0, Duration.ZERO);
+		storage.setMaxTimeoutWorkers(1);
+		try (Graph g = storage.subgraph(corpusName, match, 2, 2, Optional.empty(), Duration.ofMinutes(1))) {
+			assertTrue(g.getNodesByType("node").iterator().hasNext());
+		}
+	}
+
+	@Test
+	public void testProjectedNodeLabels() throws GraphANNISException {
+		System.out.println("projectedNodeLabels");
+
+		String corpusName = "projectionExample";
+
+		SaltProject p = importSampleCorpus(corpusName);
+
+		SDocumentGraph docOrig = p.getCorpusGraphs().get(0).getDocuments().get(0).getDocumentGraph();
+		try (Graph graph = storage.subcorpusGraph(corpusName, Arrays.asList(docOrig.getId()))) {
+			Map<String, Map<QName, String>> allLabels = new HashMap<>();
+			for (Node n : graph.getNodesByType("node")) {
+				// compare the lazy map with an eagerly decoded copy
+				Map<QName, String> copy = new LinkedHashMap<>(n.getLabels());
+				assertEquals(copy, n.getLabels());
+				allLabels.put(n.getName(), copy);
+			}
+			assertFalse(allLabels.isEmpty());
+
+			int numberOfTokens = 0;
+			for (Node n : graph.getNodesByType("node", Collections.singleton(Graph.TOK))) {
+				Map<QName, String> expected = allLabels.get(n.getName());
+				if (expected.containsKey(Graph.TOK)) {
+					assertEquals(1, n.getLabels().size());
+					assertEquals(expected.get(Graph.TOK), n.getLabels().get(Graph.TOK));
+					numberOfTokens++;
+				} else {
+					assertTrue(n.getLabels().isEmpty());
+				}
+				assertEquals(n, graph.getNodeForID(n.getId(), Collections.emptySet()));
+			}
+			assertEquals(docOrig.getTokens().size(), numberOfTokens);
+		}
+	}
+
+	@Test
+	public void testIngoingEdges() throws GraphANNISException {
+		System.out.println("ingoingEdges");
+
+		String corpusName = "ingoingExample";
+
+		SaltProject p = importSampleCorpus(corpusName);
+
+		SDocumentGraph docOrig = p.getCorpusGraphs().get(0).getDocuments().get(0).getDocumentGraph();
+		try (Graph graph = storage.subcorpusGraph(corpusName, Arrays.asList(docOrig.getId()))) {
+			Map<Node, List<Edge>> expected = new HashMap<>();
+			int numberOfEdges = 0;
+			for (Node n : graph.getNodesByType("node")) {
+				for (Edge e : graph.getOutgoingEdges(n, ComponentType.Coverage)) {
+					expected.computeIfAbsent(e.getTarget(), t -> new ArrayList<>()).add(e);
+					numberOfEdges++;
+				}
+			}
+			assertTrue(numberOfEdges > 0);
+
+			int numberOfIngoing = 0;
+			for (Node n : graph.getNodesByType("node")) {
+				List<Edge> ingoing = graph.getIngoingEdges(n, ComponentType.Coverage);
+				for (Edge e : ingoing) {
+					assertEquals(n.getId(), e.getTargetID());
+					assertTrue(expected.get(n).contains(e));
+				}
+				numberOfIngoing += ingoing.size();
+
+				for (Edge e : expected.getOrDefault(n, Collections.emptyList())) {
+					assertTrue(graph.getIngoingEdges(n, e.getComponent()).contains(e));
+				}
+			}
+			assertEquals(numberOfEdges, numberOfIngoing);
+		}
+	}
+
+	@Test
+	public void testTraversal() throws GraphANNISException {
+		System.out.println("traversal");
+
+		String corpusName = "traversalExample";
+
+		SaltProject p = importSampleCorpus(corpusName);
+
+		SDocumentGraph docOrig = p.getCorpusGraphs().get(0).getDocuments().get(0).getDocumentGraph();
+		Component ordering = new Component(ComponentType.Ordering, "annis", "");
+		try (Graph graph = storage.subcorpusGraph(corpusName, Arrays.asList(docOrig.getId()))) {
+			// the first token has no ingoing ordering edge
+			Node first = null;
+			for (Node n : graph.getNodesByType("node")) {
+				if (n.getLabels().containsKey(Graph.TOK) && graph.getIngoingEdges(n, ordering).isEmpty()) {
+					first = n;
+				}
+			}
+			assertNotNull(first);
+
+			List<String> text = new ArrayList<>();
+			graph.traverse(first, ordering, TraversalOrder.DepthFirst, false, Integer.MAX_VALUE, (id, distance) -> {
+				assertEquals(text.size(), distance);
+				text.add(graph.getNodeForID(id).getLabels().get(Graph.TOK));
+				return true;
+			});
+			List<String> expectedText = new ArrayList<>();
+			for (SToken t : docOrig.getSortedTokenByText()) {
+				expectedText.add(docOrig.getText(t));
+			}
+			assertEquals(expectedText, text);
+
+			int numberOfTokens = docOrig.getTokens().size();
+			assertEquals(numberOfTokens - 1, graph.getReachableNodeIDs(first, ordering, 1, Integer.MAX_VALUE).length);
+			Node last = graph.getNodeForID(graph.getReachableNodeIDs(first, ordering, numberOfTokens - 1,
+					numberOfTokens - 1)[0]);
+			assertEquals(numberOfTokens - 1, graph.getDistance(first, last, ordering));
+			assertTrue(graph.isConnected(first, last, ordering, 1, Integer.MAX_VALUE));
+			assertFalse(graph.isConnected(last, first, ordering, 1, Integer.MAX_VALUE));
+
+			// walk back from the last token
+			List<Integer> reverse = new ArrayList<>();
+			graph.traverse(last, ComponentType.Ordering, TraversalOrder.BreadthFirst, true, Integer.MAX_VALUE,
+					(id, distance) -> reverse.add(id));
+			assertEquals(numberOfTokens, reverse.size());
+			assertEquals(first.getId(), (int) reverse.get(reverse.size() - 1));
+		}
+	}
+
+	/**
+	 * Import the documents of the Salt sample project as a new corpus.
+	 */
+	private SaltProject importSampleCorpus(String corpusName) throws GraphANNISException {
+		SaltProject p = SampleGenerator.createSaltProject();
+		SaltImport i = new SaltImport();
+		for (SDocument d : p.getCorpusGraphs().get(0).getDocuments()) {
+			i.map(d.getDocumentGraph());
+		}
+		storage.applyUpdate(corpusName, i.finish());
+		return p;
+	}
+
+	/**
+	 * @return The type and name of all nodes of all types, sorted.
+	 */
+	private static List<String> nodesWithType(GraphSnapshot g) {
+		List<String> result = new ArrayList<>();
+		for (int n = 0; n < g.getNodeCount(); n++) {
+			result.add(g.getNodeType(n) + " " + g.getNodeName(n));
+		}
+		result.sort(null);
+		return result;
+	}
+
+	/**
+	 * @return The component, source and target name of all edges, sorted.
+	 */
+	private static List<String> edges(GraphSnapshot g) {
+		List<String> result = new ArrayList<>();
+		List<Component> components = g.getComponents();
+		for (int c = 0; c < components.size(); c++) {
+			Component component = components.get(c);
+			for (int n = 0; n < g.getNodeCount(); n++) {
+				for (int e = g.getOutgoingStart(c, n); e < g.getOutgoingEnd(c, n); e++) {
+					result.add(component.getType() + "/" + component.getLayer() + "/" + component.getName() + " "
+							+ g.getNodeName(n) + " -> " + g.getNodeName(g.getEdgeTarget(c, e)));
+				}
+			}
+		}
+		result.sort(null);
+		return result;
+	}
+
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corpus_tools.graphannis.capi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.corpus_tools.graphannis.errors.GraphANNISException;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class AnnisErrorListRefTest {
+
+	private static long allocatedErrorLists() {
+		NativeCleaner.Counters c = NativeCleaner.counters.get(AnnisErrorListRef.class);
+		return c == null ? 0 : c.allocated.get();
+	}
+
+	@Test
+	public void testNoRegistrationWithoutError() throws GraphANNISException {
+		long before = allocatedErrorLists();
+		for (int i = 0; i < 100; i++) {
+			AnnisErrorListRef err = new AnnisErrorListRef();
+			assertNull(err.getValue());
+			err.checkErrors();
+		}
+		System.gc();
+		assertEquals(before, allocatedErrorLists());
+	}
+
+	@Test
+	public void testDoubleClose() {
+		AnnisErrorListRef err = new AnnisErrorListRef();
+		err.close();
+		err.close();
+		assertNull(err.getValue());
+	}
+
+	@Test
+	public void testCleanerDisposal() throws InterruptedException {
+		CountDownLatch freed = new CountDownLatch(1);
+		Object owner = new Object();
+		NativeCleaner.register(owner, freed::countDown);
+		long reclaimedBefore = NativeCleaner.counters.get(Object.class).reclaimedByGC.get();
+
+		owner = null;
+		for (int i = 0; i < 50 && freed.getCount() > 0; i++) {
+			System.gc();
+			freed.await(100, TimeUnit.MILLISECONDS);
+		}
+		assertEquals(0, freed.getCount());
+		assertEquals(reclaimedBefore + 1, NativeCleaner.counters.get(Object.class).reclaimedByGC.get());
+	}
+
+	@Test
+	public void testCloseThenGC() throws InterruptedException {
+		AtomicInteger runs = new AtomicInteger();
+		Object owner = new Object();
+		NativeCleaner.Cleanable cleanable = NativeCleaner.register(owner, runs::incrementAndGet);
+		cleanable.clean();
+		cleanable.clean();
+		assertEquals(1, runs.get());
+
+		owner = null;
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		// the action must not be executed again once the owner has been collected
+		assertEquals(1, runs.get());
+		assertTrue(NativeCleaner.counters.get(Object.class).freedExplicitly.get() >= 1);
+	}
+}
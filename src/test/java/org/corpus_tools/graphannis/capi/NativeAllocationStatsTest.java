@@ -0,0 +1,78 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corpus_tools.graphannis.capi;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.corpus_tools.graphannis.capi.NativeAllocationStats.HandleStats;
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class NativeAllocationStatsTest {
+
+	/** A handle type which is only used by this test. */
+	private static class TestHandle {
+	}
+
+	private static HandleStats statsOf(NativeAllocationStats stats) {
+		HandleStats s = stats.getByType().get(TestHandle.class.getSimpleName());
+		return s == null ? new HandleStats(0, 0, 0) : s;
+	}
+
+	@Test
+	public void testCounters() throws InterruptedException {
+		HandleStats before = statsOf(NativeAllocationStats.current());
+
+		// one handle is freed explicitly
+		NativeCleaner.register(new TestHandle(), () -> {
+		}).clean();
+		// another one is dropped and has to be reclaimed after the garbage collection
+		CountDownLatch reclaimed = new CountDownLatch(1);
+		NativeCleaner.register(new TestHandle(), reclaimed::countDown);
+		for (int i = 0; i < 50 && reclaimed.getCount() > 0; i++) {
+			System.gc();
+			reclaimed.await(100, TimeUnit.MILLISECONDS);
+		}
+		assertEquals(0, reclaimed.getCount());
+
+		HandleStats after = statsOf(NativeAllocationStats.current());
+		assertEquals(before.getAllocated() + 2, after.getAllocated());
+		assertEquals(before.getFreedExplicitly() + 1, after.getFreedExplicitly());
+		assertEquals(before.getReclaimedByGC() + 1, after.getReclaimedByGC());
+		assertEquals(before.getLive(), after.getLive());
+	}
+
+	@Test
+	public void testErrorListsNotInTotal() {
+		NativeAllocationStats before = NativeAllocationStats.current();
+		HandleStats errorsBefore = before.getByType().get("AnnisErrorListRef");
+		long errorsAllocatedBefore = errorsBefore == null ? 0 : errorsBefore.getAllocated();
+
+		NativeCleaner.Cleanable c = NativeCleaner.register(new AnnisErrorListRef(), () -> {
+		});
+		NativeAllocationStats stats = NativeAllocationStats.current();
+		assertEquals(before.getTotal().getAllocated(), stats.getTotal().getAllocated());
+		assertEquals(errorsAllocatedBefore + 1,
+				stats.getByType().get("AnnisErrorListRef").getAllocated());
+		c.clean();
+	}
+}
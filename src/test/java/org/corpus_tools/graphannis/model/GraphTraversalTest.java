@@ -0,0 +1,128 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corpus_tools.graphannis.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class GraphTraversalTest {
+
+	/**
+	 * A small graph with the edges 1->2, 1->3, 2->4, 3->4, 4->5 and the cycle 5->6->5.
+	 */
+	private static GraphTraversal createTraversal() {
+		int[][] successors = new int[7][];
+		successors[0] = new int[0];
+		successors[1] = new int[] { 2, 3 };
+		successors[2] = new int[] { 4 };
+		successors[3] = new int[] { 4 };
+		successors[4] = new int[] { 5 };
+		successors[5] = new int[] { 6 };
+		successors[6] = new int[] { 5 };
+		return new GraphTraversal(new int[] { 0, 1, 2, 3, 4, 5, 6 }, (nodeID, result) -> {
+			for (int s : successors[nodeID]) {
+				result.add(s);
+			}
+		});
+	}
+
+	@Test
+	public void testBreadthFirst() throws Exception {
+		List<String> visited = new ArrayList<>();
+		createTraversal().traverse(1, TraversalOrder.BreadthFirst, Integer.MAX_VALUE, (node, distance) -> {
+			visited.add(node + "@" + distance);
+			return true;
+		});
+		assertEquals(Arrays.asList("1@0", "2@1", "3@1", "4@2", "5@3", "6@4"), visited);
+	}
+
+	@Test
+	public void testDepthFirst() throws Exception {
+		List<String> visited = new ArrayList<>();
+		createTraversal().traverse(1, TraversalOrder.DepthFirst, Integer.MAX_VALUE, (node, distance) -> {
+			visited.add(node + "@" + distance);
+			return true;
+		});
+		assertEquals(Arrays.asList("1@0", "2@1", "4@2", "5@3", "6@4", "3@1"), visited);
+	}
+
+	@Test
+	public void testDepthFirstShorterPath() throws Exception {
+		// the edges 1->2, 2->3, 3->4 and the shortcut 1->3
+		int[][] successors = { {}, { 2, 3 }, { 3 }, { 4 }, {} };
+		GraphTraversal t = new GraphTraversal(new int[] { 0, 1, 2, 3, 4 }, (nodeID, result) -> {
+			for (int s : successors[nodeID]) {
+				result.add(s);
+			}
+		});
+		List<String> visited = new ArrayList<>();
+		t.traverse(1, TraversalOrder.DepthFirst, 2, (node, distance) -> {
+			visited.add(node + "@" + distance);
+			return true;
+		});
+		// node 3 is first reached with distance 2, but expanded again with distance 1
+		assertEquals(Arrays.asList("1@0", "2@1", "3@2", "4@2"), visited);
+	}
+
+	@Test
+	public void testPruneAndMaxDistance() throws Exception {
+		List<Integer> visited = new ArrayList<>();
+		createTraversal().traverse(1, TraversalOrder.BreadthFirst, 2, (node, distance) -> {
+			visited.add(node);
+			// do not continue below node 3
+			return node != 3;
+		});
+		assertEquals(Arrays.asList(1, 2, 3, 4), visited);
+	}
+
+	@Test
+	public void testReachable() throws Exception {
+		GraphTraversal t = createTraversal();
+		assertArrayEquals(new int[] { 2, 3, 4, 5, 6 }, t.reachable(1, 1, Integer.MAX_VALUE));
+		assertArrayEquals(new int[] { 1, 2, 3 }, t.reachable(1, 0, 1));
+		assertArrayEquals(new int[] { 4 }, t.reachable(1, 2, 2));
+		// the cycle allows to reach node 5 with 3, 5, 7, ... edges
+		assertArrayEquals(new int[] { 5 }, t.reachable(1, 5, 5));
+		assertArrayEquals(new int[0], t.reachable(0, 1, Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testIsConnectedAndDistance() throws Exception {
+		GraphTraversal t = createTraversal();
+		assertTrue(t.isConnected(1, 4, 1, Integer.MAX_VALUE));
+		assertTrue(t.isConnected(1, 4, 2, 2));
+		assertFalse(t.isConnected(1, 4, 3, 10));
+		assertFalse(t.isConnected(4, 1, 1, Integer.MAX_VALUE));
+		assertTrue(t.isConnected(6, 6, 2, 2));
+
+		assertEquals(0, t.distance(1, 1));
+		assertEquals(2, t.distance(1, 4));
+		assertEquals(4, t.distance(1, 6));
+		assertEquals(-1, t.distance(4, 1));
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corpus_tools.graphannis.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.sun.jna.Native;
+
+/**
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class LazyLabelMapTest {
+
+	private static byte[] encode(String value) {
+		return value.getBytes(Charset.forName(Native.getDefaultStringEncoding()));
+	}
+
+	@Test
+	public void testDecodeOnAccess() {
+		QName pos = new QName("default_ns", "pos");
+		QName lemma = new QName("default_ns", "lemma");
+		LazyLabelMap labels = new LazyLabelMap(new QName[] {pos, lemma},
+				new byte[][] {encode("NN"), encode("street")});
+
+		Map<QName, String> expected = new LinkedHashMap<>();
+		expected.put(pos, "NN");
+		expected.put(lemma, "street");
+
+		assertEquals(2, labels.size());
+		assertTrue(labels.containsKey(lemma));
+		assertFalse(labels.containsKey(new QName("", "lemma")));
+		assertNull(labels.get(new QName("", "lemma")));
+		assertEquals("street", labels.get(lemma));
+		// the decoded value is reused
+		assertSame(labels.get(lemma), labels.get(lemma));
+		assertEquals(expected, labels);
+		assertEquals(expected, new LinkedHashMap<>(labels));
+	}
+
+	@Test
+	public void testEmptyValue() {
+		QName key = new QName("", "empty");
+		LazyLabelMap labels = new LazyLabelMap(new QName[] {key}, new byte[][] {new byte[0]});
+		assertEquals("", labels.get(key));
+	}
+}
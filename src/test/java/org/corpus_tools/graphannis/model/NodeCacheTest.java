@@ -0,0 +1,80 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corpus_tools.graphannis.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class NodeCacheTest {
+
+	private static Node node(int id) {
+		return new Node(id, "doc#n" + id, Collections.emptyMap());
+	}
+
+	@Test
+	public void testGetAndPut() {
+		NodeCache cache = new NodeCache(16);
+		assertNull(cache.get(0));
+
+		Node n0 = node(0);
+		Node n16 = node(16);
+		cache.put(0, n0);
+		cache.put(16, n16);
+		assertSame(n0, cache.get(0));
+		assertSame(n16, cache.get(16));
+		assertNull(cache.get(32));
+
+		Node replaced = node(0);
+		cache.put(0, replaced);
+		assertSame(replaced, cache.get(0));
+
+		assertEquals(3, cache.getHits());
+		assertEquals(2, cache.getMisses());
+
+		cache.clear();
+		assertNull(cache.get(0));
+	}
+
+	@Test
+	public void testBounded() {
+		NodeCache cache = new NodeCache(64);
+		for (int id = 0; id < 10000; id++) {
+			cache.put(id, node(id));
+		}
+		int cached = 0;
+		for (int id = 0; id < 10000; id++) {
+			Node n = cache.get(id);
+			if (n != null) {
+				assertEquals(id, n.getId());
+				cached++;
+			}
+		}
+		assertTrue(cached > 0);
+		assertTrue(cached <= 64);
+		// the most recently added node is always cached
+		assertEquals(9999, cache.get(9999).getId());
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2026 Thomas Krause.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.corpus_tools.graphannis.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Thomas Krause {@literal <krauseto@hu-berlin.de>}
+ */
+public class ReverseIndexTest {
+
+	@Test
+	public void testSourcesOf() {
+		IntBuffer sources = new IntBuffer();
+		IntBuffer targets = new IntBuffer();
+		int[][] edges = { { 5, 1 }, { 2, 1 }, { 3, 7 }, { 1, 2 }, { 9, 1 }, { 7, 2 } };
+		for (int[] e : edges) {
+			sources.add(e[0]);
+			targets.add(e[1]);
+		}
+		ReverseIndex index = new ReverseIndex(sources, targets);
+
+		assertEquals(6, index.size());
+		assertArrayEquals(new int[] { 2, 5, 9 }, index.sourcesOf(1));
+		assertArrayEquals(new int[] { 1, 7 }, index.sourcesOf(2));
+		assertArrayEquals(new int[] { 3 }, index.sourcesOf(7));
+		assertArrayEquals(new int[0], index.sourcesOf(3));
+		assertArrayEquals(new int[0], index.sourcesOf(100));
+	}
+
+	@Test
+	public void testEmpty() {
+		ReverseIndex index = new ReverseIndex(new IntBuffer(), new IntBuffer());
+		assertEquals(0, index.size());
+		assertArrayEquals(new int[0], index.sourcesOf(0));
+	}
+}